@@ -53,6 +53,20 @@ public final class AddOperation extends PathValueOperation
 
     @Override
     public JsonElement apply(final JsonElement node) throws JsonPatchException
+    {
+    	return applyOrThrow(node);
+    }
+
+    @Override
+    public JsonElement tryApply(final JsonElement node, final OperationFailure failure)
+    {
+    	return add(node, path, JsonUtil.deepCopy(value), failure);
+    }
+
+    /**
+     * Adds the value (without copying it) at the given path.
+     */
+    static JsonElement add(final JsonElement node, final JsonPointer path, final JsonElement value, final OperationFailure failure)
     {
         if (path.isEmpty())
             return value;	//replace entire contents with value
@@ -62,45 +76,46 @@ public final class AddOperation extends PathValueOperation
         
         final JsonElement parentNode = path.parent().resolve(node);
         if (parentNode == null)
-            throw new JsonPatchException("No such parent for path '" + path.toString() + "'");
+            return failure.fail(PatchErrorCode.NO_SUCH_PARENT, path);
         
         String token = path.getLastToken().getRaw();
         
         if (parentNode instanceof JsonObject) {
         	JsonObject obj = (JsonObject)parentNode;
-        	obj.add(token, JsonUtil.deepCopy(value));
+        	obj.add(token, value);
         }
         else if (parentNode instanceof JsonArray) {
-        	addToArray((JsonArray)parentNode, token, JsonUtil.deepCopy(value));
+        	if (!addToArray((JsonArray)parentNode, path, token, value, failure))
+        		return null;
         }
         else {
-        	throw new JsonPatchException("Parent element of path '" + path.toString() + "' is not a container.  Parent must be an object or array");
+        	return failure.fail(PatchErrorCode.PARENT_NOT_CONTAINER, path);
         }
         
         return node;
     }
 
-    private void addToArray(final JsonArray array, String token, JsonElement value) throws JsonPatchException
+    private static boolean addToArray(final JsonArray array, final JsonPointer path, String token, JsonElement value, final OperationFailure failure)
     {
         if (token.equals("-")) {
         	array.add(value);
-        	return;
+        	return true;
         }
         
         final int size = array.size();
-        final int index;
-        try {
-        	index = Integer.parseInt(token);
-        }
-        catch(NumberFormatException e) {
-        	throw new JsonPatchException("The last token of path '" + path.toString() + "' must indicate the element of an array.  '" + token + "' is an invalid value.");
+        final int index = JsonUtil.parseIndex(token);
+        if (index == JsonUtil.INVALID_INDEX) {
+        	failure.fail(PatchErrorCode.INVALID_INDEX, path);
+        	return false;
         }
 
-        if (index < 0 || index > size)
-            throw new JsonPatchException("The last token of path '" + path.toString() + "' indicates a value that is outside the bounds of the array.");
+        if (index > size) {
+        	failure.fail(PatchErrorCode.INDEX_OUT_OF_BOUNDS, path);
+        	return false;
+        }
 
         JsonUtil.add(array, value, index);
+        return true;
     }
 
 }
-    
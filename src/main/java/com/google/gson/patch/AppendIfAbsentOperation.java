@@ -0,0 +1,56 @@
+package com.google.gson.patch;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.JsonPointerException;
+
+/**
+ * Extension {@code append-if-absent} operation
+ *
+ * <p>Appends {@code value} to the array at {@code path} unless the array
+ * already holds an equal value, which makes the array behave like a set.  If
+ * there is no value at {@code path}, it is created as an array holding
+ * {@code value}.</p>
+ *
+ * <pre>
+ *     { "op": "append-if-absent", "path": "/tags", "value": "new" }
+ * </pre>
+ */
+public final class AppendIfAbsentOperation extends AtomicUpdateOperation
+{
+
+	// ------------------------------------------------------------ Constructors
+
+	public AppendIfAbsentOperation(final JsonPointer path, final JsonElement value) {
+		super(APPEND_IF_ABSENT, path, value);
+	}
+	public AppendIfAbsentOperation(final String path, final JsonElement value) throws JsonPointerException {
+		this(new JsonPointer(path), value);
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	@Override
+	protected JsonElement update(final JsonElement current, final OperationFailure failure)
+	{
+		if (current == null) {
+			JsonArray array = new JsonArray();
+			array.add(JsonUtil.deepCopy(value));
+			return array;
+		}
+
+		if (!current.isJsonArray())
+			return failure.fail(PatchErrorCode.NOT_AN_ARRAY, path);
+
+		JsonArray array = (JsonArray)current;
+		for (JsonElement element : array) {
+			if (JsonUtil.jsonEquals(value, element))
+				return current;
+		}
+
+		array.add(JsonUtil.deepCopy(value));
+		return current;
+	}
+
+}
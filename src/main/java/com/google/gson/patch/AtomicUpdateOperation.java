@@ -0,0 +1,114 @@
+package com.google.gson.patch;
+
+import java.math.BigDecimal;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.pointer.JsonPointer;
+
+/**
+ * Base class for extension operations that compute a new value from the
+ * current value at {@code path}
+ *
+ * <p>These operations read, check and write the target in a single step, so
+ * that clients do not need a {@code test} + {@code replace} round-trip (and
+ * the conflicts that come with it) for counters, appends and the like.</p>
+ *
+ * <p>If no value exists at {@code path}, the new value is created as it
+ * would be by {@code add}: the immediate parent must exist.  An existing
+ * object member keeps its position.</p>
+ */
+public abstract class AtomicUpdateOperation extends PathValueOperation
+{
+
+	// ------------------------------------------------------------ Constructors
+
+	protected AtomicUpdateOperation(final String op, final JsonPointer path, final JsonElement value) {
+		super(op, path, value);
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	/**
+	 * Computes the new value.
+	 *
+	 * @param current the current value at {@code path}, or {@code null} if
+	 *     there is none.  It may be modified in place, in which case it should
+	 *     be returned.
+	 * @return the new value, or {@code current} itself if the document needs
+	 *     no further change.  The return value is ignored if the failure was
+	 *     reported to {@code failure}.
+	 */
+	protected abstract JsonElement update(JsonElement current, OperationFailure failure);
+
+	@Override
+	public final JsonElement apply(final JsonElement node) throws JsonPatchException
+	{
+		return applyOrThrow(node);
+	}
+
+	@Override
+	public final JsonElement tryApply(final JsonElement node, final OperationFailure failure)
+	{
+		final JsonElement current = path.resolve(node);
+		final JsonElement updated = update(current, failure);
+		if (failure.isFailed())
+			return null;
+		if (current != null && updated == current)
+			return node;
+
+		if (path.isEmpty())
+			return updated;
+
+		final JsonElement parentNode = path.parent().resolve(node);
+		if (parentNode == null)
+			return failure.fail(PatchErrorCode.NO_SUCH_PARENT, path);
+
+		String token = path.getLastToken().getRaw();
+
+		if (parentNode instanceof JsonObject) {
+			((JsonObject)parentNode).add(token, updated);
+		}
+		else if (parentNode instanceof JsonArray) {
+			JsonArray array = (JsonArray)parentNode;
+			if (current != null)
+				array.set(JsonUtil.parseIndex(token), updated);
+			else if (token.equals("-") || JsonUtil.parseIndex(token) == array.size())
+				array.add(updated);
+			else
+				return failure.fail(PatchErrorCode.INDEX_OUT_OF_BOUNDS, path);
+		}
+		else {
+			return failure.fail(PatchErrorCode.PARENT_NOT_CONTAINER, path);
+		}
+
+		return node;
+	}
+
+	/**
+	 * Returns the numeric value of the element, or {@code null} (after
+	 * reporting the failure) if it is not a number.
+	 */
+	protected final BigDecimal toNumber(JsonElement element, OperationFailure failure) {
+		if (element instanceof JsonPrimitive && ((JsonPrimitive)element).isNumber())
+			return new BigDecimal(element.getAsString());
+
+		failure.fail(PatchErrorCode.NOT_A_NUMBER, path);
+		return null;
+	}
+
+	/**
+	 * Returns the numeric value of {@code value}, or {@code null} (after
+	 * reporting the failure) if it is not a number.
+	 */
+	protected final BigDecimal operand(OperationFailure failure) {
+		if (value instanceof JsonPrimitive && ((JsonPrimitive)value).isNumber())
+			return new BigDecimal(value.getAsString());
+
+		failure.fail(PatchErrorCode.INVALID_VALUE, path, "Value of '" + op + "' operation for path '" + path.toString() + "' must be a number");
+		return null;
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.google.gson.patch;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.JsonPointerException;
+
+/**
+ * Extension {@code set-if} operation
+ *
+ * <p>Sets {@code path} to {@code value} if the current value equals
+ * {@code expect}.  If {@code expect} is omitted, the value is only set if
+ * there is no value at {@code path} yet.  Otherwise the operation fails, like
+ * a failed {@code test}.</p>
+ *
+ * <pre>
+ *     { "op": "set-if", "path": "/state", "expect": "open", "value": "closed" }
+ * </pre>
+ *
+ * <p>This is the single-step equivalent of a {@code test} followed by a
+ * {@code replace} (or of an {@code add} that must not overwrite).</p>
+ */
+public final class ConditionalSetOperation extends AtomicUpdateOperation
+{
+
+	// -------------------------------------------------------------- Properties
+
+	private final JsonElement expect;
+
+	// ------------------------------------------------------------ Constructors
+
+	/**
+	 * @param expect the expected current value, or {@code null} if there must
+	 *     be no current value
+	 */
+	public ConditionalSetOperation(final JsonPointer path, final JsonElement expect, final JsonElement value) {
+		super(SET_IF, path, value);
+		this.expect = JsonUtil.deepCopy(expect);
+	}
+	public ConditionalSetOperation(final String path, final JsonElement expect, final JsonElement value) throws JsonPointerException {
+		this(new JsonPointer(path), expect, value);
+	}
+
+	// --------------------------------------------------------------- Accessors
+
+	public JsonElement getExpect() {
+		return expect;
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	@Override
+	protected JsonElement update(final JsonElement current, final OperationFailure failure)
+	{
+		if (expect == null) {
+			if (current != null)
+				return failure.fail(PatchErrorCode.VALUE_EXISTS, path);
+		}
+		else {
+			if (current == null)
+				return failure.fail(PatchErrorCode.NO_SUCH_PATH, path);
+			if (!JsonUtil.jsonEquals(expect, current))
+				return failure.fail(PatchErrorCode.TEST_FAILED, path);
+		}
+
+		return JsonUtil.deepCopy(value);
+	}
+
+	@Override
+	public JsonObject toJson() {
+		JsonObject obj = super.toJson();
+		if (expect != null)
+			obj.add("expect", expect);
+
+		return obj;
+	}
+
+}
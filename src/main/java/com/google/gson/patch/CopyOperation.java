@@ -31,12 +31,18 @@ public class CopyOperation extends DualPathOperation {
 
     @Override
     public JsonElement apply(final JsonElement node) throws JsonPatchException
+    {
+    	return applyOrThrow(node);
+    }
+
+    @Override
+    public JsonElement tryApply(final JsonElement node, final OperationFailure failure)
     {
     	JsonElement value = from.resolve(node);
     	if (value == null)
-    		throw new JsonPatchException("No such path '" + from.toString() + "'");
+    		return failure.fail(PatchErrorCode.NO_SUCH_PATH, from);
     	
-    	return new AddOperation(path, value).apply(node);
+    	return AddOperation.add(node, path, JsonUtil.deepCopy(value), failure);
     }
 	
 }
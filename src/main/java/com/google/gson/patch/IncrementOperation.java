@@ -0,0 +1,50 @@
+package com.google.gson.patch;
+
+import java.math.BigDecimal;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.JsonPointerException;
+
+/**
+ * Extension {@code increment} operation
+ *
+ * <p>Adds {@code value}, which must be a number, to the number at
+ * {@code path}.  If there is no value at {@code path}, it is created with
+ * {@code value}.  A negative {@code value} decrements.</p>
+ *
+ * <pre>
+ *     { "op": "increment", "path": "/count", "value": 1 }
+ * </pre>
+ *
+ * <p>The sum is computed exactly: {@code 0.1 + 0.2} gives {@code 0.3}.</p>
+ */
+public final class IncrementOperation extends AtomicUpdateOperation
+{
+
+	// ------------------------------------------------------------ Constructors
+
+	public IncrementOperation(final JsonPointer path, final JsonElement value) {
+		super(INCREMENT, path, value);
+	}
+	public IncrementOperation(final String path, final JsonElement value) throws JsonPointerException {
+		this(new JsonPointer(path), value);
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	@Override
+	protected JsonElement update(final JsonElement current, final OperationFailure failure)
+	{
+		BigDecimal delta = operand(failure);
+		if (delta == null)
+			return null;
+		if (current == null)
+			return value;
+
+		BigDecimal number = toNumber(current, failure);
+		return (number == null) ? null : new JsonPrimitive(number.add(delta));
+	}
+
+}
@@ -5,8 +5,8 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 
+import java.util.ArrayDeque;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * An {@link Equivalence} strategy for JSON Schema equality
@@ -35,6 +35,29 @@ public final class JsonEquals //extends Equivalence<JsonNode>
     }
 
     public boolean jsonEquals(final JsonElement a, final JsonElement b)
+    {
+    	if (!a.isJsonArray() && !a.isJsonObject())
+    		return shallowEquals(a, b, null);
+    	
+    	//containers are compared from an explicit stack of pairs, so that
+    	//deep values do not overflow the call stack:
+    	final ArrayDeque<JsonElement> pending = new ArrayDeque<>();
+    	pending.push(b);
+    	pending.push(a);
+    	while (!pending.isEmpty()) {
+    		if (!shallowEquals(pending.pop(), pending.pop(), pending))
+    			return false;
+    	}
+    	
+    	return true;
+    }
+    
+    /*
+     * Compares two values; the children of containers are pushed in pairs to
+     * be compared later
+     */
+    private static boolean shallowEquals(final JsonElement a, final JsonElement b,
+        final ArrayDeque<JsonElement> pending)
     {
     	//nulls:
     	if (a.isJsonNull())
@@ -51,7 +74,7 @@ public final class JsonEquals //extends Equivalence<JsonNode>
     	//arrays:
     	if (a instanceof JsonArray) {
     		if (b instanceof JsonArray)
-    			return arrayEquals((JsonArray)a, (JsonArray)b);
+    			return arrayEquals((JsonArray)a, (JsonArray)b, pending);
     		
     		return false;
     	}
@@ -59,7 +82,7 @@ public final class JsonEquals //extends Equivalence<JsonNode>
     	//objects:
     	if (a instanceof JsonObject) {
     		if (b instanceof JsonObject)
-    			return objectEquals((JsonObject)a, (JsonObject)b);
+    			return objectEquals((JsonObject)a, (JsonObject)b, pending);
     		
     		return false;
     	}
@@ -67,6 +90,16 @@ public final class JsonEquals //extends Equivalence<JsonNode>
     	throw new IllegalStateException("JsonElements are expected to be JsonObject, JsonArray, JsonPrimitive, or JsonNull");
     }
 
+    /**
+     * Returns a hash code consistent with {@link #jsonEquals}: equal values
+     * (including numbers of the same mathematical value, and objects with the
+     * same members in a different order) have the same hash.
+     */
+    public int hash(final JsonElement t)
+    {
+    	return doHash(t);
+    }
+
     protected int doHash(final JsonElement t)
     {
     	if (t.isJsonNull())
@@ -77,16 +110,21 @@ public final class JsonEquals //extends Equivalence<JsonNode>
     		JsonPrimitive p = (JsonPrimitive)t;
     		if (p.isString())
     			return p.getAsString().hashCode();
-    		if (p.isNumber())
-    			return Double.hashCode(p.getAsDouble());
+    		if (p.isNumber()) {
+    			double d = p.getAsDouble();
+    			//0.0 == -0.0, but their hashes differ:
+    			return (d == 0.0) ? 0 : Double.hashCode(d);
+    		}
+    		if (p.isBoolean())
+    			return Boolean.hashCode(p.getAsBoolean());
     		
-    		throw new IllegalStateException("JsonPrimitives are expected to be Strings, Numbers, or NULLs");
+    		throw new IllegalStateException("JsonPrimitives are expected to be Strings, Numbers, Booleans, or NULLs");
     	}
         
     	//arrays:
         if (t.isJsonArray()) {
         	JsonArray a = (JsonArray)t;
-        	int ret = 0;
+        	int ret = 1;
         	
         	for (final JsonElement element : a) {
         		ret = 31 * ret + doHash(element);
@@ -95,13 +133,13 @@ public final class JsonEquals //extends Equivalence<JsonNode>
             return ret;
         }
     	
-        //objects:
+        //objects (member order does not matter, so just add the members up):
         if (t.isJsonObject()) {
         	JsonObject obj = (JsonObject)t;
-        	int ret = 0;
+        	int ret = 2;
         	
         	for (Map.Entry<String, JsonElement> entry : obj.entrySet()) {
-        		ret = 31 * ret + (entry.getKey().hashCode() ^ doHash(entry.getValue()));
+        		ret += entry.getKey().hashCode() ^ doHash(entry.getValue());
         	}
         	
         	return ret;
@@ -136,41 +174,37 @@ public final class JsonEquals //extends Equivalence<JsonNode>
         throw new IllegalStateException("JsonPrimitives are expected to be Strings, Numbers, Booleans, or NULLs");
     }
 
-    private boolean arrayEquals(final JsonArray a, final JsonArray b)
+    private static boolean arrayEquals(final JsonArray a, final JsonArray b,
+        final ArrayDeque<JsonElement> pending)
     {
     	//check size:
     	int size = a.size();
     	if (size != b.size())
     		return false;
     	
-    	//check each component:
-    	for (int i=0; i<size; i++) {
-    		if (!jsonEquals(a.get(i), b.get(i)))
-    			return false;
+    	//check each component, first to last:
+    	for (int i=size-1; i>=0; i--) {
+    		pending.push(b.get(i));
+    		pending.push(a.get(i));
     	}
     	
     	return true;
     }
     
-    private boolean objectEquals(final JsonObject a, final JsonObject b)
+    private static boolean objectEquals(final JsonObject a, final JsonObject b,
+        final ArrayDeque<JsonElement> pending)
     {
-    	Map<String, JsonElement> aProps = JsonUtil.mapProperties(a);
-    	Map<String, JsonElement> bProps = JsonUtil.mapProperties(b);
-    	
-    	//check that keys are equal:
-    	Set<String> aKeys = aProps.keySet();
-    	Set<String> bKeys = bProps.keySet();
-    	
-    	if (!aKeys.equals(bKeys))
+    	//check size (names are unique, so this and the lookups below check the names):
+    	if (a.size() != b.size())
     		return false;
     	
     	//test each member individually:
-    	for (Map.Entry<String, JsonElement> aEntry : aProps.entrySet()) {
-    		String key = aEntry.getKey();
-    		JsonElement aElem = aEntry.getValue();
-    		JsonElement bElem = bProps.get(key);
-    		if (!jsonEquals(aElem, bElem))
+    	for (Map.Entry<String, JsonElement> aEntry : a.entrySet()) {
+    		JsonElement bElem = b.get(aEntry.getKey());
+    		if (bElem == null)
     			return false;
+    		pending.push(bElem);
+    		pending.push(aEntry.getValue());
     	}
     	
         return true;
@@ -2,6 +2,7 @@ package com.google.gson.patch;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.google.gson.JsonArray;
@@ -89,6 +90,14 @@ public class JsonPatch {
     public void add(JsonPatchOperation op) {
     	operations.add(op);
     }
+    
+    /**
+     * Returns the operations of this patch, in the order they are applied.
+     * The list can't be modified; use {@link #add(JsonPatchOperation)}.
+     */
+    public List<JsonPatchOperation> getOperations() {
+    	return Collections.unmodifiableList(operations);
+    }
 
     /**
      * Apply this patch to a JSON value
@@ -111,6 +120,34 @@ public class JsonPatch {
         return ret;
     }
     
+    /**
+     * Applies this patch like apply(), but returns the outcome instead of
+     * throwing.  Failing operations create no exception (unless they are
+     * custom operations that only implement apply()), which makes this the
+     * cheaper call when failures are expected, e.g. when test operations are
+     * used for optimistic concurrency.
+     *
+     * @param node the value to apply the patch to.  As with apply(), it is
+     *        modified in place, including by the operations that precede a
+     *        failing one.
+     */
+    public PatchResult tryApply(final JsonElement node)
+    {
+    	if (node == null)
+    		throw new IllegalArgumentException("Parameter to 'JsonPatch.tryApply()' cannot be NULL");
+    	
+    	final OperationFailure failure = new OperationFailure();
+    	
+    	JsonElement ret = node;
+    	for (int i=0; i<operations.size(); i++) {
+    		ret = operations.get(i).tryApply(ret, failure);
+    		if (failure.isFailed())
+    			return PatchResult.failure(i, failure);
+    	}
+    	
+    	return PatchResult.success(ret);
+    }
+    
     public static JsonPatch fromJson(JsonElement element) throws IOException {
     	if (!element.isJsonArray())
     		throw new IOException("JsonPatch objects can only be parsed from JsonArray");
@@ -1,6 +1,8 @@
 package com.google.gson.patch;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -21,6 +23,16 @@ import com.google.gson.pointer.JsonPointerException;
  * copy       from    DualPathJsonOperation
  * move       from
  * 
+ * Extension operations (see AtomicUpdateOperation):
+ * 
+ * increment          value
+ * min                value
+ * max                value
+ * append-if-absent   value
+ * set-if             value, expect
+ * 
+ * Further operations can be added with register().
+ * 
  * see: https://github.com/java-json-tools/json-patch/blob/master/src/main/java/com/github/fge/jsonpatch/JsonPatchOperation.java
  * @author dr21060
  *
@@ -35,6 +47,29 @@ public abstract class JsonPatchOperation {
 	public static final String COPY = "copy";
 	public static final String MOVE = "move";
 	
+	public static final String INCREMENT = "increment";
+	public static final String MIN = "min";
+	public static final String MAX = "max";
+	public static final String APPEND_IF_ABSENT = "append-if-absent";
+	public static final String SET_IF = "set-if";
+	
+	private static final Map<String, JsonPatchOperationFactory> FACTORIES = new ConcurrentHashMap<>();
+	
+	static {
+		register(ADD, obj -> new AddOperation(getPath(obj, "path"), obj.get("value")));
+		register(REMOVE, obj -> new RemoveOperation(getPath(obj, "path")));
+		register(REPLACE, obj -> new ReplaceOperation(getPath(obj, "path"), obj.get("value")));
+		register(MOVE, obj -> new MoveOperation(getPath(obj, "from"), getPath(obj, "path")));
+		register(COPY, obj -> new CopyOperation(getPath(obj, "from"), getPath(obj, "path")));
+		register(TEST, obj -> new TestOperation(getPath(obj, "path"), obj.get("value")));
+		
+		register(INCREMENT, obj -> new IncrementOperation(getPath(obj, "path"), obj.get("value")));
+		register(MIN, obj -> new MinOperation(getPath(obj, "path"), obj.get("value")));
+		register(MAX, obj -> new MaxOperation(getPath(obj, "path"), obj.get("value")));
+		register(APPEND_IF_ABSENT, obj -> new AppendIfAbsentOperation(getPath(obj, "path"), obj.get("value")));
+		register(SET_IF, obj -> new ConditionalSetOperation(getPath(obj, "path"), obj.get("expect"), obj.get("value")));
+	}
+	
 	// -------------------------------------------------------------- Properties
 	
 	protected String op;
@@ -80,6 +115,36 @@ public abstract class JsonPatchOperation {
 	 */
 	public abstract JsonElement apply(final JsonElement node) throws JsonPatchException;
 	
+	/**
+	 * Applies this operation like apply(), but reports failures to the given
+	 * OperationFailure instead of throwing.  On failure, the return value is
+	 * undefined and the node may have been partially modified.
+	 * 
+	 * The standard operations implement this without creating exceptions.
+	 * The default implementation calls apply() and reports any exception as
+	 * PatchErrorCode.OPERATION_FAILED.
+	 */
+	public JsonElement tryApply(final JsonElement node, final OperationFailure failure) {
+		try {
+			return apply(node);
+		}
+		catch(JsonPatchException e) {
+			return failure.fail(PatchErrorCode.OPERATION_FAILED, path, e.getMessage());
+		}
+	}
+	
+	/**
+	 * Implements apply() for operations that override tryApply().
+	 */
+	protected final JsonElement applyOrThrow(final JsonElement node) throws JsonPatchException {
+		OperationFailure failure = new OperationFailure();
+		JsonElement result = tryApply(node, failure);
+		if (failure.isFailed())
+			throw new JsonPatchException(failure.getMessage());
+		
+		return result;
+	}
+	
 	public JsonObject toJson() {
 		JsonObject obj = new JsonObject();
 		
@@ -96,12 +161,24 @@ public abstract class JsonPatchOperation {
 			obj.add("from", new JsonPrimitive(dp.from.toString()));
 		}
 		else {
-			throw new IllegalStateException("All JsonPatchOperations should be either PathValueOperation or DualPathOperation");
+			throw new IllegalStateException("JsonPatchOperations that are neither PathValueOperation nor DualPathOperation must override toJson()");
 		}
 		
 		return obj;
 	}
 	
+	/**
+	 * Registers the factory for an op name, replacing any factory already
+	 * registered for it.  Operations created by the factory are then parsed
+	 * by fromJson() wherever patches are read.
+	 */
+	public static void register(String op, JsonPatchOperationFactory factory) {
+		if (op == null || factory == null)
+			throw new IllegalArgumentException("op and factory may not be NULL");
+		
+		FACTORIES.put(op, factory);
+	}
+	
 	/**
 	 * Parses a JsonPatchOperation from a JsonElement.
 	 */
@@ -113,37 +190,18 @@ public abstract class JsonPatchOperation {
     	JsonObject obj = (JsonObject)element;
     	
     	JsonPrimitive op = obj.getAsJsonPrimitive("op");
-    	JsonPrimitive path = obj.getAsJsonPrimitive("path");
-    	JsonPrimitive from = obj.getAsJsonPrimitive("from");
-    	JsonElement value = obj.get("value");
     	
     	if (op == null)
     		throw new IOException("JsonPatchOperation is missing required property 'op'");
     	
     	String opText = op.getAsString();
     	
+    	JsonPatchOperationFactory factory = FACTORIES.get(opText);
+    	if (factory == null)
+    		throw new IOException("Invalid 'op' type: '" + opText + "'");
+    	
     	try {
-    		if (opText.equals(ADD)) {
-    			return new AddOperation(path.getAsString(), value);
-    		} 
-    		else if (opText.equals(REMOVE)) {
-    			return new RemoveOperation(path.getAsString());
-    		}
-    		else if (opText.equals(REPLACE)) {
-    			return new ReplaceOperation(path.getAsString(), value);
-    		}
-    		else if (opText.equals(MOVE)) {
-    			return new MoveOperation(from.getAsString(), path.getAsString());
-    		}
-    		else if (opText.equals(COPY)) {
-    			return new CopyOperation(from.getAsString(), path.getAsString());
-    		}
-    		else if (opText.equals(TEST)) {
-    			return new TestOperation(path.getAsString(), value);
-    		}
-    		else {
-    			throw new IOException("Invalid 'op' type: '" + opText + "'");
-    		}
+    		return factory.fromJson(obj);
     	}
     	catch(JsonPointerException e) {
     		throw new IOException(e.getMessage());
@@ -151,4 +209,12 @@ public abstract class JsonPatchOperation {
 		
 	}
 	
+	private static JsonPointer getPath(JsonObject obj, String name) throws IOException, JsonPointerException {
+		JsonPrimitive path = obj.getAsJsonPrimitive(name);
+		if (path == null)
+			throw new IOException("JsonPatchOperation is missing required property '" + name + "'");
+		
+		return new JsonPointer(path.getAsString());
+	}
+	
 }
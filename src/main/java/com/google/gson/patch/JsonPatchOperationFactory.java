@@ -0,0 +1,25 @@
+package com.google.gson.patch;
+
+import java.io.IOException;
+
+import com.google.gson.JsonObject;
+import com.google.gson.pointer.JsonPointerException;
+
+/**
+ * Creates a {@link JsonPatchOperation} from its JSON representation.
+ *
+ * <p>Factories are registered under an op name with
+ * {@link JsonPatchOperation#register(String, JsonPatchOperationFactory)}.
+ * The operation they create should write the same members back in its
+ * {@link JsonPatchOperation#toJson()}.</p>
+ */
+public interface JsonPatchOperationFactory
+{
+
+	/**
+	 * Creates the operation.  {@code obj} holds the whole operation,
+	 * including its "op" member.
+	 */
+	JsonPatchOperation fromJson(JsonObject obj) throws IOException, JsonPointerException;
+
+}
@@ -1,17 +1,26 @@
 package com.google.gson.patch;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 public class JsonUtil {
 	
+	/* Gson's own adapter for trees, which leaves the reader and writer settings alone */
+	private static final TypeAdapter<JsonElement> ELEMENT_ADAPTER = new Gson().getAdapter(JsonElement.class);
+	
 	/**
 	 * Performs a deep copy of the JsonElement.  This is done so that
 	 * changes on the new object will not affect the old object (and
@@ -26,32 +35,52 @@ public class JsonUtil {
 		if (element.isJsonPrimitive() || element.isJsonNull())
 			return element;
 		
-		//deep copy array:
-		if (element.isJsonArray()) {
-			JsonArray oldArray = (JsonArray)element;
-			int size = oldArray.size();
-			
-			JsonArray newArray = new JsonArray();
-			for (int i=0; i<size; i++)
-				newArray.add(deepCopy(oldArray.get(i)));
-			
-			return newArray;
-		}
-		
-		//deep copy object:
-		if (element.isJsonObject()) {
+		//containers are copied from an explicit stack of (old, new) pairs,
+		//so that deep values do not overflow the call stack:
+		ArrayDeque<JsonElement> pending = new ArrayDeque<>();
+		JsonElement copy = copyOf(element, pending);
+		while (!pending.isEmpty()) {
+			JsonElement oldElement = pending.pop();
+			JsonElement newElement = pending.pop();
 			
-			JsonObject oldObject = (JsonObject)element;
-			JsonObject newObject = new JsonObject();
-			
-			for (Map.Entry<String, JsonElement> entry : oldObject.entrySet()) {
-				newObject.add(entry.getKey(), deepCopy(entry.getValue()));
+			//deep copy array:
+			if (oldElement.isJsonArray()) {
+				JsonArray newArray = (JsonArray)newElement;
+				for (JsonElement child : (JsonArray)oldElement)
+					newArray.add(copyOf(child, pending));
 			}
 			
-			return newObject;
+			//deep copy object:
+			else {
+				JsonObject newObject = (JsonObject)newElement;
+				for (Map.Entry<String, JsonElement> entry : ((JsonObject)oldElement).entrySet())
+					newObject.add(entry.getKey(), copyOf(entry.getValue(), pending));
+			}
 		}
 		
-		throw new IllegalStateException("Object of type '" + element.getClass().getName() + "' not valid.");
+		return copy;
+	}
+	
+	/*
+	 * Returns the copy of the element, with no children yet: a container is
+	 * pushed to be filled by deepCopy()
+	 */
+	private static JsonElement copyOf(JsonElement element, ArrayDeque<JsonElement> pending) {
+		
+		if (element.isJsonPrimitive() || element.isJsonNull())
+			return element;
+		
+		JsonElement copy;
+		if (element.isJsonArray())
+			copy = new JsonArray();
+		else if (element.isJsonObject())
+			copy = new JsonObject();
+		else
+			throw new IllegalStateException("Object of type '" + element.getClass().getName() + "' not valid.");
+		
+		pending.push(copy);
+		pending.push(element);
+		return copy;
 	}
 	
 	/**
@@ -83,6 +112,32 @@ public class JsonUtil {
 		}
 	}
 	
+	/**
+	 * Returned by parseIndex() for tokens that are not array indexes.
+	 */
+	public static final int INVALID_INDEX = -1;
+	
+	/**
+	 * Parses an array index from a reference token.  Unlike
+	 * Integer.parseInt(), this does not throw: INVALID_INDEX is returned for
+	 * anything but a non-negative int.
+	 */
+	public static int parseIndex(String token) {
+		final int length = token.length();
+		if (length == 0 || length > 10)
+			return INVALID_INDEX;
+		
+		long index = 0;
+		for (int i=0; i<length; i++) {
+			char c = token.charAt(i);
+			if (c < '0' || c > '9')
+				return INVALID_INDEX;
+			index = index * 10 + (c - '0');
+		}
+		
+		return (index > Integer.MAX_VALUE) ? INVALID_INDEX : (int)index;
+	}
+	
 	/**
 	 * Tests equality between two JsonElements.  This delegates to JsonEquals
 	 */
@@ -91,6 +146,29 @@ public class JsonUtil {
 		return JsonEquals.INSTANCE.jsonEquals(e1, e2);
 	}
 	
+	/**
+	 * Returns a hash code for the JsonElement that is consistent with
+	 * jsonEquals().  This delegates to JsonEquals
+	 */
+	public static int jsonHash(JsonElement element) {
+		return JsonEquals.INSTANCE.hash(element);
+	}
+	
+	/**
+	 * Reads the next value of the reader as a JsonElement.  Numbers are kept
+	 * as they were written.
+	 */
+	public static JsonElement parse(JsonReader reader) throws IOException {
+		return ELEMENT_ADAPTER.read(reader);
+	}
+	
+	/**
+	 * Writes the JsonElement to the writer, with the writer's settings.
+	 */
+	public static void write(JsonElement element, JsonWriter writer) throws IOException {
+		ELEMENT_ADAPTER.write(writer, element);
+	}
+	
 	/**
 	 * Returns a Map<String, JsonElement> of properties for the object.
 	 * JsonObjects already can return their properties as a Set of
@@ -0,0 +1,50 @@
+package com.google.gson.patch;
+
+import java.math.BigDecimal;
+
+import com.google.gson.JsonElement;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.JsonPointerException;
+
+/**
+ * Extension {@code min} operation
+ *
+ * <p>Sets the number at {@code path} to {@code value} if {@code value} is
+ * smaller, and leaves it unchanged otherwise.  If there is no value at
+ * {@code path}, it is created with {@code value}.</p>
+ *
+ * <pre>
+ *     { "op": "min", "path": "/min", "value": 42 }
+ * </pre>
+ */
+public final class MinOperation extends AtomicUpdateOperation
+{
+
+	// ------------------------------------------------------------ Constructors
+
+	public MinOperation(final JsonPointer path, final JsonElement value) {
+		super(MIN, path, value);
+	}
+	public MinOperation(final String path, final JsonElement value) throws JsonPointerException {
+		this(new JsonPointer(path), value);
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	@Override
+	protected JsonElement update(final JsonElement current, final OperationFailure failure)
+	{
+		BigDecimal operand = operand(failure);
+		if (operand == null)
+			return null;
+		if (current == null)
+			return value;
+
+		BigDecimal number = toNumber(current, failure);
+		if (number == null)
+			return null;
+
+		return operand.compareTo(number) < 0 ? value : current;
+	}
+
+}
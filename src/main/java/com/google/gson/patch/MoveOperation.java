@@ -53,18 +53,26 @@ public class MoveOperation extends DualPathOperation {
 
     @Override
     public JsonElement apply(JsonElement node) throws JsonPatchException
+    {
+    	return applyOrThrow(node);
+    }
+
+    @Override
+    public JsonElement tryApply(JsonElement node, final OperationFailure failure)
     {
     	if (from.equals(path))
     		return node;
     	
     	JsonElement value = from.resolve(node);
     	if (value == null)
-    		throw new JsonPatchException("No such path '" + from.toString() + "'");
+    		return failure.fail(PatchErrorCode.NO_SUCH_PATH, from);
     	
-    	node = new RemoveOperation(from).apply(node);
-    	node = new AddOperation(path, value).apply(node);
+    	node = RemoveOperation.remove(node, from, failure);
+    	if (failure.isFailed())
+    		return null;
     	
-    	return node;
+    	//the value is detached from the document now, no need to copy it:
+    	return AddOperation.add(node, path, value, failure);
     }
 	
 }
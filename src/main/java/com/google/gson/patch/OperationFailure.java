@@ -0,0 +1,81 @@
+package com.google.gson.patch;
+
+import com.google.gson.JsonElement;
+import com.google.gson.pointer.JsonPointer;
+
+/**
+ * Receives the failure of a patch operation applied with
+ * {@link JsonPatchOperation#tryApply(JsonElement, OperationFailure)}.
+ *
+ * <p>Failing is cheap: no exception is created and the message is only built
+ * when asked for, so one instance can be reused for many operations (see
+ * {@link #reset()}).  Not thread-safe.</p>
+ */
+public final class OperationFailure
+{
+
+	// -------------------------------------------------------------- Properties
+
+	private PatchErrorCode code;
+	private JsonPointer pointer;
+	private String message;
+
+	// --------------------------------------------------------------- Accessors
+
+	public boolean isFailed() {
+		return code != null;
+	}
+
+	/**
+	 * Returns the error code, or {@code null} if nothing failed.
+	 */
+	public PatchErrorCode getCode() {
+		return code;
+	}
+
+	/**
+	 * Returns the pointer that caused the failure.  This is the {@code from}
+	 * of a {@code move} or {@code copy} whose source is missing.
+	 */
+	public JsonPointer getPointer() {
+		return pointer;
+	}
+
+	/**
+	 * Returns a description of the failure, or {@code null} if nothing
+	 * failed.
+	 */
+	public String getMessage() {
+		if (message != null)
+			return message;
+
+		return (code == null) ? null : code.getMessage(pointer);
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	/**
+	 * Records a failure.  Always returns {@code null}, so that operations can
+	 * {@code return failure.fail(...)}.
+	 */
+	public JsonElement fail(PatchErrorCode code, JsonPointer pointer) {
+		return fail(code, pointer, null);
+	}
+
+	/**
+	 * Records a failure with a specific message.
+	 */
+	public JsonElement fail(PatchErrorCode code, JsonPointer pointer, String message) {
+		this.code = code;
+		this.pointer = pointer;
+		this.message = message;
+		return null;
+	}
+
+	public void reset() {
+		code = null;
+		pointer = null;
+		message = null;
+	}
+
+}
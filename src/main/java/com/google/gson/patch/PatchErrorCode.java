@@ -0,0 +1,49 @@
+package com.google.gson.patch;
+
+import com.google.gson.pointer.JsonPointer;
+
+/**
+ * Reasons a patch operation can fail
+ *
+ * @see OperationFailure
+ * @see PatchResult
+ */
+public enum PatchErrorCode
+{
+	NO_SUCH_PATH("No such path: '%s'"),
+	NO_SUCH_PARENT("No such parent for path '%s'"),
+	PARENT_NOT_CONTAINER("Parent element of path '%s' is not a container.  Parent must be an object or array"),
+	INVALID_INDEX("The last token of path '%s' must indicate the element of an array"),
+	INDEX_OUT_OF_BOUNDS("The last token of path '%s' indicates a value that is outside the bounds of the array."),
+	TEST_FAILED("Test operation failed for path '%s'"),
+	VALUE_EXISTS("Value already exists at path '%s'"),
+	NOT_A_NUMBER("Value at path '%s' is not a number"),
+	NOT_AN_ARRAY("Value at path '%s' is not an array"),
+	INVALID_VALUE("Value of the operation for path '%s' is invalid"),
+
+	/**
+	 * An operation that does not report its own error codes threw a
+	 * {@link JsonPatchException}.
+	 */
+	OPERATION_FAILED("Operation failed for path '%s'");
+
+	// -------------------------------------------------------------- Properties
+
+	private final String format;
+
+	// ------------------------------------------------------------ Constructors
+
+	private PatchErrorCode(String format) {
+		this.format = format;
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	/**
+	 * Returns the default message for this error at the given pointer.
+	 */
+	public String getMessage(JsonPointer pointer) {
+		return String.format(format, pointer);
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.google.gson.patch;
+
+import com.google.gson.JsonElement;
+import com.google.gson.pointer.JsonPointer;
+
+/**
+ * Outcome of {@link JsonPatch#tryApply(JsonElement)}
+ *
+ * <p>On failure, the document passed to {@code tryApply()} has been modified
+ * by the operations before the failing one, exactly as with
+ * {@link JsonPatch#apply(JsonElement)}.</p>
+ */
+public final class PatchResult
+{
+
+	// -------------------------------------------------------------- Properties
+
+	private final JsonElement result;
+	private final int failedIndex;
+	private final PatchErrorCode code;
+	private final JsonPointer pointer;
+	private final String message;
+
+	// ------------------------------------------------------------ Constructors
+
+	private PatchResult(JsonElement result, int failedIndex, PatchErrorCode code, JsonPointer pointer, String message) {
+		this.result = result;
+		this.failedIndex = failedIndex;
+		this.code = code;
+		this.pointer = pointer;
+		this.message = message;
+	}
+
+	static PatchResult success(JsonElement result) {
+		return new PatchResult(result, -1, null, null, null);
+	}
+
+	static PatchResult failure(int index, OperationFailure failure) {
+		//only keep a message that differs from the code's default one:
+		String message = failure.getCode() == PatchErrorCode.OPERATION_FAILED ? failure.getMessage() : null;
+		return new PatchResult(null, index, failure.getCode(), failure.getPointer(), message);
+	}
+
+	// --------------------------------------------------------------- Accessors
+
+	public boolean isSuccess() {
+		return code == null;
+	}
+
+	/**
+	 * Returns the patched document, or {@code null} on failure.  Note that
+	 * removing the root also results in {@code null}.
+	 */
+	public JsonElement getResult() {
+		return result;
+	}
+
+	/**
+	 * Returns the index of the failing operation in the patch, or -1 on
+	 * success.
+	 */
+	public int getFailedIndex() {
+		return failedIndex;
+	}
+
+	public PatchErrorCode getErrorCode() {
+		return code;
+	}
+
+	/**
+	 * Returns the pointer that caused the failure, or {@code null} on success.
+	 */
+	public JsonPointer getPointer() {
+		return pointer;
+	}
+
+	/**
+	 * Returns a description of the failure, or {@code null} on success.  The
+	 * message is built by this call.
+	 */
+	public String getMessage() {
+		if (code == null)
+			return null;
+
+		return "Operation " + failedIndex + ": " + (message != null ? message : code.getMessage(pointer));
+	}
+
+	@Override
+	public String toString() {
+		return isSuccess() ? "success" : getMessage();
+	}
+
+}
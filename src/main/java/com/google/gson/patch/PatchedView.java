@@ -0,0 +1,462 @@
+package com.google.gson.patch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.ReferenceToken;
+
+/**
+ * A read-only view of what a document would look like after a patch
+ *
+ * <p>Operations modify the element they are applied to, so previewing the
+ * result of a patch normally means copying the whole document first.  This
+ * view instead leaves the base document untouched and records the patch as a
+ * sparse layer on top of it: only the objects and arrays on the paths written
+ * by the patch get a layer, and everything else is read straight from the
+ * base.  Building the view therefore costs about the size of the patch, plus
+ * the length of any array the patch modifies.</p>
+ *
+ * <p>Reads through {@link #get(JsonPointer)} return base values as they are,
+ * so they must not be modified.  {@link #materialize()} builds the complete
+ * patched document as a new tree.</p>
+ *
+ * <p>Operations other than the six standard ones and the
+ * {@link AtomicUpdateOperation}s are supported by materializing the view and
+ * applying them to the result.</p>
+ */
+public final class PatchedView
+{
+	/* The root: either a JsonElement (untouched, never modified) or a Layer */
+	private Object root;
+
+	private PatchedView(JsonElement base) {
+		this.root = base;
+	}
+
+	/**
+	 * Records the patch over the base document.  The base is not modified.
+	 *
+	 * @throws JsonPatchException the patch cannot be applied to the base
+	 */
+	public static PatchedView of(JsonElement base, JsonPatch patch) throws JsonPatchException {
+		if (base == null)
+			throw new IllegalArgumentException("base may not be NULL");
+
+		PatchedView view = new PatchedView(base);
+		for (JsonPatchOperation op : patch.getOperations())
+			view.apply(op);
+
+		return view;
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	/**
+	 * Returns the value at the given pointer in the patched document, or
+	 * {@code null} if there is none.
+	 */
+	public JsonElement get(JsonPointer pointer) {
+		Object node = resolve(pointer);
+		if (node instanceof Layer)
+			return ((Layer)node).build();
+
+		return (JsonElement)node;
+	}
+
+	/**
+	 * Builds the complete patched document.  The result shares nothing with
+	 * the base document.
+	 */
+	public JsonElement materialize() {
+		return build(root);
+	}
+
+	private void apply(JsonPatchOperation op) throws JsonPatchException {
+		final JsonPointer path = op.getPath();
+
+		if (op instanceof AddOperation) {
+			add(path, ((AddOperation)op).getValue());
+		}
+		else if (op instanceof RemoveOperation) {
+			remove(path);
+		}
+		else if (op instanceof ReplaceOperation) {
+			replace(path, ((ReplaceOperation)op).getValue());
+		}
+		else if (op instanceof TestOperation) {
+			JsonElement actual = get(path);
+			if (actual == null)
+				throw fail(PatchErrorCode.NO_SUCH_PATH, path);
+			if (!JsonUtil.jsonEquals(((TestOperation)op).getValue(), actual))
+				throw fail(PatchErrorCode.TEST_FAILED, path);
+		}
+		else if (op instanceof MoveOperation) {
+			JsonPointer from = ((MoveOperation)op).getFrom();
+			if (from.equals(path))
+				return;
+
+			Object node = resolve(from);
+			if (node == null)
+				throw fail(PatchErrorCode.NO_SUCH_PATH, from);
+
+			remove(from);
+			add(path, node);
+		}
+		else if (op instanceof CopyOperation) {
+			JsonPointer from = ((CopyOperation)op).getFrom();
+			Object node = resolve(from);
+			if (node == null)
+				throw fail(PatchErrorCode.NO_SUCH_PATH, from);
+
+			//a layer can't be in two places at once:
+			add(path, node instanceof Layer ? ((Layer)node).build() : node);
+		}
+		else if (op instanceof AtomicUpdateOperation) {
+			//the update may modify the current value in place, so give it a copy:
+			Object node = resolve(path);
+			JsonElement current = (node == null) ? null : build(node);
+			OperationFailure failure = new OperationFailure();
+			JsonElement updated = ((AtomicUpdateOperation)op).update(current, failure);
+			if (failure.isFailed())
+				throw new JsonPatchException(failure.getMessage());
+
+			if (node != null)
+				set(path, updated);
+			else
+				append(path, updated);
+		}
+		else {
+			root = op.apply(materialize());
+		}
+	}
+
+	private void add(JsonPointer path, Object value) throws JsonPatchException {
+		if (path.isEmpty()) {
+			root = value;
+			return;
+		}
+
+		final Layer parent = parentLayer(path);
+		final String token = path.getLastToken().getRaw();
+
+		if (parent instanceof ObjectLayer) {
+			((ObjectLayer)parent).put(token, value);
+		}
+		else {
+			List<Object> elements = ((ArrayLayer)parent).elements;
+			if (token.equals("-")) {
+				elements.add(value);
+				return;
+			}
+
+			int index = arrayIndex(path, token);
+			if (index > elements.size())
+				throw fail(PatchErrorCode.INDEX_OUT_OF_BOUNDS, path);
+			elements.add(index, value);
+		}
+	}
+
+	private void remove(JsonPointer path) throws JsonPatchException {
+		if (path.isEmpty()) {
+			root = null;
+			return;
+		}
+
+		final Layer parent = parentLayer(path);
+		final String token = path.getLastToken().getRaw();
+
+		if (parent instanceof ObjectLayer) {
+			if (!((ObjectLayer)parent).remove(token))
+				throw fail(PatchErrorCode.NO_SUCH_PATH, path);
+		}
+		else {
+			List<Object> elements = ((ArrayLayer)parent).elements;
+			int index = arrayIndex(path, token);
+			if (index >= elements.size())
+				throw fail(PatchErrorCode.NO_SUCH_PATH, path);
+			elements.remove(index);
+		}
+	}
+
+	private void replace(JsonPointer path, Object value) throws JsonPatchException {
+		if (path.isEmpty()) {
+			root = value;
+			return;
+		}
+
+		final Layer parent = parentLayer(path);
+		final String token = path.getLastToken().getRaw();
+
+		if (parent instanceof ObjectLayer) {
+			//like ReplaceOperation, this moves the member to the end:
+			ObjectLayer obj = (ObjectLayer)parent;
+			if (!obj.remove(token))
+				throw fail(PatchErrorCode.NO_SUCH_PATH, path);
+			obj.put(token, value);
+		}
+		else {
+			List<Object> elements = ((ArrayLayer)parent).elements;
+			int index = arrayIndex(path, token);
+			if (index >= elements.size())
+				throw fail(PatchErrorCode.INDEX_OUT_OF_BOUNDS, path);
+			elements.set(index, value);
+		}
+	}
+
+	/**
+	 * Adds the result of an update where there was no value, like
+	 * {@link AtomicUpdateOperation}: arrays only take it at their end.
+	 */
+	private void append(JsonPointer path, Object value) throws JsonPatchException {
+		if (!path.isEmpty()) {
+			final Layer parent = parentLayer(path);
+			final String token = path.getLastToken().getRaw();
+			if (parent instanceof ArrayLayer && !token.equals("-")
+					&& JsonUtil.parseIndex(token) != ((ArrayLayer)parent).elements.size())
+				throw fail(PatchErrorCode.INDEX_OUT_OF_BOUNDS, path);
+		}
+
+		add(path, value);
+	}
+
+	/**
+	 * Sets an existing value, keeping its position.
+	 */
+	private void set(JsonPointer path, Object value) throws JsonPatchException {
+		if (path.isEmpty()) {
+			root = value;
+			return;
+		}
+
+		parentLayer(path).set(path.getLastToken().getRaw(), value);
+	}
+
+	/**
+	 * Returns the layer of the parent of the given path, creating layers for
+	 * every container on the way.
+	 */
+	private Layer parentLayer(JsonPointer path) throws JsonPatchException {
+		final int depth = path.size() - 1;
+
+		Layer layer = touch(root);
+		if (layer == null)
+			throw rootNotContainer(path, depth);
+		root = layer;
+
+		for (int i=0; i<depth; i++) {
+			ReferenceToken token = path.getToken(i);
+			Object child = layer.get(token.getRaw());
+			if (child == null)
+				throw fail(PatchErrorCode.NO_SUCH_PARENT, path);
+
+			Layer childLayer = touch(child);
+			if (childLayer == null)
+				throw rootNotContainer(path, depth - i - 1);
+
+			if (childLayer != child)
+				layer.set(token.getRaw(), childLayer);
+			layer = childLayer;
+		}
+
+		return layer;
+	}
+
+	private static JsonPatchException rootNotContainer(JsonPointer path, int remainingDepth) {
+		return fail(remainingDepth == 0 ? PatchErrorCode.PARENT_NOT_CONTAINER : PatchErrorCode.NO_SUCH_PARENT, path);
+	}
+
+	/*
+	 * The exception the operations throw for the same failure
+	 */
+	private static JsonPatchException fail(PatchErrorCode code, JsonPointer pointer) {
+		return new JsonPatchException(code.getMessage(pointer));
+	}
+
+	private Object resolve(JsonPointer pointer) {
+		Object node = root;
+		for (ReferenceToken token : pointer) {
+			if (node == null)
+				return null;
+
+			if (node instanceof Layer)
+				node = ((Layer)node).get(token.getRaw());
+			else
+				node = child((JsonElement)node, token.getRaw());
+		}
+		return node;
+	}
+
+	/*
+	 * Reads a base value; array tokens are read like the operations write
+	 * them, so that the view finds what they find
+	 */
+	private static JsonElement child(JsonElement node, String token) {
+		if (node instanceof JsonObject)
+			return ((JsonObject)node).get(token);
+		if (node instanceof JsonArray) {
+			int index = JsonUtil.parseIndex(token);
+			JsonArray array = (JsonArray)node;
+			return (index != JsonUtil.INVALID_INDEX && index < array.size()) ? array.get(index) : null;
+		}
+
+		return null;
+	}
+
+	private static int arrayIndex(JsonPointer path, String token) throws JsonPatchException {
+		int index = JsonUtil.parseIndex(token);
+		if (index == JsonUtil.INVALID_INDEX)
+			throw fail(PatchErrorCode.INVALID_INDEX, path);
+
+		return index;
+	}
+
+	/**
+	 * Returns a layer for the node: the node itself if it already is one, a
+	 * new layer over it if it is an object or an array, {@code null}
+	 * otherwise.
+	 */
+	private static Layer touch(Object node) {
+		if (node instanceof Layer)
+			return (Layer)node;
+		if (node instanceof JsonObject)
+			return new ObjectLayer((JsonObject)node);
+		if (node instanceof JsonArray)
+			return new ArrayLayer((JsonArray)node);
+
+		return null;
+	}
+
+	private static JsonElement build(Object node) {
+		if (node instanceof Layer)
+			return ((Layer)node).build();
+
+		return JsonUtil.deepCopy((JsonElement)node);
+	}
+
+	// ------------------------------------------------------------------ Layers
+
+	private static abstract class Layer {
+		abstract Object get(String token);
+		abstract void set(String token, Object value);
+		abstract JsonElement build();
+	}
+
+	/**
+	 * Changes to an object.  Base members keep their position unless they are
+	 * removed; new members are kept in the order they were added, after the
+	 * base members (as they would be in a {@link JsonObject}).
+	 */
+	private static final class ObjectLayer extends Layer {
+		final JsonObject base;
+		final Set<String> removed = new HashSet<>();
+		final Map<String, Object> overrides = new HashMap<>();
+		final Map<String, Object> appended = new LinkedHashMap<>();
+
+		ObjectLayer(JsonObject base) {
+			this.base = base;
+		}
+
+		private boolean inBase(String key) {
+			return !removed.contains(key) && base.has(key);
+		}
+
+		@Override
+		Object get(String key) {
+			Object value = appended.get(key);
+			if (value != null)
+				return value;
+
+			value = overrides.get(key);
+			if (value != null)
+				return value;
+
+			return inBase(key) ? base.get(key) : null;
+		}
+
+		@Override
+		void set(String key, Object value) {
+			put(key, value);
+		}
+
+		void put(String key, Object value) {
+			if (!appended.containsKey(key) && inBase(key))
+				overrides.put(key, value);
+			else
+				appended.put(key, value);
+		}
+
+		boolean remove(String key) {
+			if (appended.remove(key) != null)
+				return true;
+
+			if (inBase(key)) {
+				removed.add(key);
+				overrides.remove(key);
+				return true;
+			}
+
+			return false;
+		}
+
+		@Override
+		JsonElement build() {
+			JsonObject obj = new JsonObject();
+			for (Map.Entry<String, JsonElement> entry : base.entrySet()) {
+				String key = entry.getKey();
+				if (removed.contains(key))
+					continue;
+
+				Object override = overrides.get(key);
+				obj.add(key, PatchedView.build(override != null ? override : entry.getValue()));
+			}
+			for (Map.Entry<String, Object> entry : appended.entrySet())
+				obj.add(entry.getKey(), PatchedView.build(entry.getValue()));
+
+			return obj;
+		}
+	}
+
+	/**
+	 * Changes to an array.  Index shifts make a sparse representation
+	 * awkward, so the element references are copied (but not the elements).
+	 */
+	private static final class ArrayLayer extends Layer {
+		final List<Object> elements;
+
+		ArrayLayer(JsonArray base) {
+			elements = new ArrayList<>(base.size() + 4);
+			for (JsonElement element : base)
+				elements.add(element);
+		}
+
+		@Override
+		Object get(String token) {
+			int index = JsonUtil.parseIndex(token);
+			return (index != JsonUtil.INVALID_INDEX && index < elements.size()) ? elements.get(index) : null;
+		}
+
+		@Override
+		void set(String token, Object value) {
+			elements.set(JsonUtil.parseIndex(token), value);
+		}
+
+		@Override
+		JsonElement build() {
+			JsonArray array = new JsonArray();
+			for (Object element : elements)
+				array.add(PatchedView.build(element));
+
+			return array;
+		}
+	}
+
+}
@@ -25,6 +25,10 @@ public abstract class PathValueOperation extends JsonPatchOperation
         this.value = JsonUtil.deepCopy(value);
     }
     
+    public JsonElement getValue() {
+    	return value;
+    }
+    
     /*
     @Override
     public final void serialize(final JsonGenerator jgen,
@@ -27,6 +27,17 @@ public final class RemoveOperation extends PathValueOperation
     
     @Override
     public JsonElement apply(final JsonElement node) throws JsonPatchException
+    {
+    	return applyOrThrow(node);
+    }
+
+    @Override
+    public JsonElement tryApply(final JsonElement node, final OperationFailure failure)
+    {
+    	return remove(node, path, failure);
+    }
+
+    static JsonElement remove(final JsonElement node, final JsonPointer path, final OperationFailure failure)
     {
     	//you want to remove the entire thing?  Well... OK
         if (path.isEmpty())
@@ -38,7 +49,7 @@ public final class RemoveOperation extends PathValueOperation
          */
         final JsonElement parentNode = path.parent().resolve(node);
         if (parentNode == null)
-            throw new JsonPatchException("No such parent for path '" + path.toString() + "'");
+            return failure.fail(PatchErrorCode.NO_SUCH_PARENT, path);
         
         String token = path.getLastToken().getRaw();
         
@@ -46,36 +57,23 @@ public final class RemoveOperation extends PathValueOperation
         	JsonObject obj = (JsonObject)parentNode;
         	JsonElement removed = obj.remove(token);
         	if (removed == null)
-        		throw new JsonPatchException("No such path: '" + path.toString() + "'");
+        		return failure.fail(PatchErrorCode.NO_SUCH_PATH, path);
         }
         else if (parentNode instanceof JsonArray) {
-        	JsonElement removed = removeFromArray((JsonArray)parentNode, token);
-        	if (removed == null)
-        		throw new JsonPatchException("No such path: '" + path.toString() + "'");
+        	JsonArray array = (JsonArray)parentNode;
+        	final int index = JsonUtil.parseIndex(token);
+        	if (index == JsonUtil.INVALID_INDEX)
+        		return failure.fail(PatchErrorCode.INVALID_INDEX, path);
+        	if (index >= array.size())
+        		return failure.fail(PatchErrorCode.NO_SUCH_PATH, path);
+
+        	array.remove(index);
         }
         else {
-        	throw new JsonPatchException("Parent element of path '" + path.toString() + "' is not a container.  Parent must be an object or array");
+        	return failure.fail(PatchErrorCode.PARENT_NOT_CONTAINER, path);
         }
         
         return node;
     }
 
-    private JsonElement removeFromArray(final JsonArray array, String token) throws JsonPatchException
-    {
-        final int size = array.size();
-        final int index;
-        try {
-        	index = Integer.parseInt(token);
-        }
-        catch(NumberFormatException e) {
-        	throw new JsonPatchException("The last token of path '" + path.toString() + "' must indicate the element of an array.  '" + token + "' is an invalid value.");
-        }
-
-        if (index < 0 || index > size)
-            throw new JsonPatchException("The last token of path '" + path.toString() + "' indicates a value that is outside the bounds of the array.");
-
-        return array.remove(index);
-    }
-
 }
-    
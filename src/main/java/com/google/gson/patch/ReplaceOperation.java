@@ -31,6 +31,12 @@ public final class ReplaceOperation extends PathValueOperation
     
     @Override
     public JsonElement apply(final JsonElement node) throws JsonPatchException
+    {
+    	return applyOrThrow(node);
+    }
+
+    @Override
+    public JsonElement tryApply(final JsonElement node, final OperationFailure failure)
     {
     	//replace entire document with new value:
     	if (path.isEmpty())
@@ -51,7 +57,7 @@ public final class ReplaceOperation extends PathValueOperation
          */
     	final JsonElement parentNode = path.parent().resolve(node);
         if (parentNode == null)
-            throw new JsonPatchException("No such parent for path '" + path.toString() + "'");
+            return failure.fail(PatchErrorCode.NO_SUCH_PARENT, path);
     	
         String token = path.getLastToken().getRaw();
         
@@ -59,7 +65,7 @@ public final class ReplaceOperation extends PathValueOperation
         	JsonObject obj = (JsonObject)parentNode;
         	JsonElement removed = obj.remove(token);
         	if (removed == null)
-        		throw new JsonPatchException("No such path '" + path.toString() + "'");
+        		return failure.fail(PatchErrorCode.NO_SUCH_PATH, path);
         	
         	obj.add(token, JsonUtil.deepCopy(value));
         }
@@ -67,26 +73,20 @@ public final class ReplaceOperation extends PathValueOperation
         	
         	JsonArray array = (JsonArray)parentNode;
         	
-        	final int size = array.size();
-            final int index;
-            try {
-            	index = Integer.parseInt(token);
-            }
-            catch(NumberFormatException e) {
-            	throw new JsonPatchException("The last token of path '" + path.toString() + "' must indicate the element of an array.  '" + token + "' is an invalid value.");
-            }
+            final int index = JsonUtil.parseIndex(token);
+            if (index == JsonUtil.INVALID_INDEX)
+            	return failure.fail(PatchErrorCode.INVALID_INDEX, path);
 
-            if (index < 0 || index > size)
-                throw new JsonPatchException("The last token of path '" + path.toString() + "' indicates a value that is outside the bounds of the array.");
+            if (index >= array.size())
+                return failure.fail(PatchErrorCode.INDEX_OUT_OF_BOUNDS, path);
 
             array.set(index, JsonUtil.deepCopy(value));
         }
         else {
-        	throw new JsonPatchException("Parent element of path '" + path.toString() + "' is not a container.  Parent must be an object or array");
+        	return failure.fail(PatchErrorCode.PARENT_NOT_CONTAINER, path);
         }
         
         return node;
     }
     
 }
-    
@@ -32,13 +32,19 @@ public final class TestOperation extends PathValueOperation
     
     @Override
     public JsonElement apply(final JsonElement node) throws JsonPatchException
+    {
+    	return applyOrThrow(node);
+    }
+
+    @Override
+    public JsonElement tryApply(final JsonElement node, final OperationFailure failure)
     {
     	JsonElement testValue = path.resolve(node);
     	if (testValue == null)
-    		throw new JsonPatchException("No such path: '" + path.toString() + "'");
+    		return failure.fail(PatchErrorCode.NO_SUCH_PATH, path);
     	
     	if (!JsonUtil.jsonEquals(value, testValue))
-    		throw new JsonPatchException("Test operation failed for path '" + path.toString() + "'");
+    		return failure.fail(PatchErrorCode.TEST_FAILED, path);
 
     	return node;
     }
@@ -0,0 +1,116 @@
+package com.google.gson.patch.binary;
+
+/**
+ * Constants of the binary JSON Patch encoding.
+ *
+ * <p>A stream starts with {@link #MAGIC} and {@link #VERSION}, followed by
+ * any number of patches.  Each patch is:</p>
+ *
+ * <pre>
+ *     varint  operation count
+ *     op*     operations
+ * </pre>
+ *
+ * <p>and each operation is:</p>
+ *
+ * <pre>
+ *     byte     op code (OP_*)
+ *     pointer  path
+ *     pointer  from           (move and copy only)
+ *     value    value          (add, replace and test only)
+ * </pre>
+ *
+ * <p>Any other operation is written with {@link #OP_EXTENSION}, its path, its
+ * op name as a string and an object value holding the remaining members of
+ * its JSON representation.  It is parsed back with
+ * {@link com.google.gson.patch.JsonPatchOperation#fromJson}, so the reader
+ * must have the same operations registered as the writer.</p>
+ *
+ * <p>Pointers are encoded against a dictionary that grows as the stream is
+ * written: the varint id of the longest prefix already seen (0 being the
+ * empty pointer), then the number of remaining tokens and the tokens
+ * themselves.  Every prefix that was not yet in the dictionary is then added
+ * to it, in order, by both the writer and the reader.  A token header is a
+ * varint holding {@code (n << 1) | 1} for a canonical array index {@code n},
+ * or {@code (length << 1)} for a string followed by its UTF-8 bytes.</p>
+ *
+ * <p>Values start with a one-byte tag (VALUE_*).  Integers are zig-zag
+ * varints, other numbers keep their original text, and object member names
+ * are interned in a second per-stream dictionary: a name header is
+ * {@code (id << 1) | 1} for a known name, or {@code (length << 1)} for a new
+ * one followed by its UTF-8 bytes.</p>
+ */
+final class BinaryFormat
+{
+	static final int MAGIC = 0x4A50;	// "JP"
+	static final int VERSION = 1;
+
+	static final int OP_ADD = 1;
+	static final int OP_REMOVE = 2;
+	static final int OP_REPLACE = 3;
+	static final int OP_TEST = 4;
+	static final int OP_MOVE = 5;
+	static final int OP_COPY = 6;
+	static final int OP_EXTENSION = 7;
+
+	static final int VALUE_ABSENT = 0;
+	static final int VALUE_NULL = 1;
+	static final int VALUE_FALSE = 2;
+	static final int VALUE_TRUE = 3;
+	static final int VALUE_INTEGER = 4;
+	static final int VALUE_NUMBER = 5;
+	static final int VALUE_STRING = 6;
+	static final int VALUE_ARRAY = 7;
+	static final int VALUE_OBJECT = 8;
+
+	/**
+	 * Maximum number of entries in each dictionary.  Once full, no new
+	 * entries are added and new pointers and names are written out in full.
+	 */
+	static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+	private BinaryFormat() {
+	}
+
+	/**
+	 * Returns the array index represented by a raw token, or -1 if the token
+	 * is not the canonical representation of a (non-negative) int.
+	 */
+	static int canonicalIndex(String raw) {
+		int length = raw.length();
+		if (length == 0 || length > 9)
+			return -1;
+		if (length > 1 && raw.charAt(0) == '0')
+			return -1;
+
+		int value = 0;
+		for (int i=0; i<length; i++) {
+			char c = raw.charAt(i);
+			if (c < '0' || c > '9')
+				return -1;
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * Tells whether the text is the canonical representation of a long, so
+	 * that it can be written as a varint and read back identically.
+	 */
+	static boolean isCanonicalLong(String text) {
+		int length = text.length();
+		int start = text.startsWith("-") ? 1 : 0;
+		if (length == start || length - start > 18)
+			return false;
+		if (text.charAt(start) == '0')
+			return length == 1;
+
+		for (int i=start; i<length; i++) {
+			char c = text.charAt(i);
+			if (c < '0' || c > '9')
+				return false;
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,268 @@
+package com.google.gson.patch.binary;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.patch.AddOperation;
+import com.google.gson.patch.CopyOperation;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchOperation;
+import com.google.gson.patch.JsonUtil;
+import com.google.gson.patch.MoveOperation;
+import com.google.gson.patch.RemoveOperation;
+import com.google.gson.patch.ReplaceOperation;
+import com.google.gson.patch.TestOperation;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.ReferenceToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import static com.google.gson.patch.binary.BinaryFormat.*;
+
+/**
+ * Reads {@link JsonPatch}es written by a {@link BinaryPatchWriter}.
+ *
+ * <p>Operations are built directly from the stream; no intermediate
+ * {@code JsonArray} or {@code JsonObject} is created for them.</p>
+ */
+public class BinaryPatchReader implements Closeable
+{
+	private final InputStream in;
+
+	private final List<JsonPointer> pointers = new ArrayList<>();
+	private final List<String> names = new ArrayList<>();
+
+	private boolean headerRead = false;
+
+	public BinaryPatchReader(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Reads the next patch.
+	 *
+	 * @return the patch, or {@code null} at the end of the stream
+	 */
+	public JsonPatch read() throws IOException {
+		if (!headerRead) {
+			int first = in.read();
+			if (first == -1)
+				return null;
+
+			int magic = (first << 8) | readByte();
+			if (magic != MAGIC)
+				throw new IOException("Not a binary JSON Patch stream");
+			int version = readByte();
+			if (version != VERSION)
+				throw new IOException("Unsupported binary JSON Patch version: " + version);
+
+			headerRead = true;
+		}
+
+		int first = in.read();
+		if (first == -1)
+			return null;
+
+		int count = (int)readVarint(first);
+		List<JsonPatchOperation> operations = new ArrayList<>(count);
+		for (int i=0; i<count; i++)
+			operations.add(readOperation());
+
+		return new JsonPatch(operations);
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	private JsonPatchOperation readOperation() throws IOException {
+		int code = readByte();
+		JsonPointer path = readPointer();
+
+		switch (code) {
+		case OP_ADD:
+			return new AddOperation(path, readValue());
+		case OP_REMOVE:
+			return new RemoveOperation(path);
+		case OP_REPLACE:
+			return new ReplaceOperation(path, readValue());
+		case OP_TEST:
+			return new TestOperation(path, readValue());
+		case OP_MOVE:
+			return new MoveOperation(readPointer(), path);
+		case OP_COPY:
+			return new CopyOperation(readPointer(), path);
+		case OP_EXTENSION:
+			return readExtension(path);
+		default:
+			throw new IOException("Invalid op code: " + code);
+		}
+	}
+
+	private JsonPatchOperation readExtension(JsonPointer path) throws IOException {
+		String op = readString();
+		JsonElement members = readValue();
+		if (!(members instanceof JsonObject))
+			throw new IOException("Invalid members for operation '" + op + "'");
+
+		JsonObject obj = new JsonObject();
+		obj.addProperty("op", op);
+		obj.addProperty("path", path.toString());
+		for (Map.Entry<String, JsonElement> entry : ((JsonObject)members).entrySet())
+			obj.add(entry.getKey(), entry.getValue());
+
+		return JsonPatchOperation.fromJson(obj);
+	}
+
+	private JsonPointer readPointer() throws IOException {
+		int id = (int)readVarint(readByte());
+		int added = (int)readVarint(readByte());
+
+		JsonPointer pointer;
+		if (id == 0)
+			pointer = JsonPointer.EMPTY;
+		else if (id <= pointers.size())
+			pointer = pointers.get(id - 1);
+		else
+			throw new IOException("Invalid pointer reference: " + id);
+
+		for (int i=0; i<added; i++) {
+			long header = readVarint(readByte());
+			ReferenceToken token = ((header & 1) != 0) ?
+					ReferenceToken.fromInt((int)(header >>> 1)) :
+					ReferenceToken.fromRaw(readUtf8((int)(header >>> 1)));
+
+			pointer = pointer.append(token);
+			if (pointers.size() < MAX_DICTIONARY_SIZE)
+				pointers.add(pointer);
+		}
+
+		return pointer;
+	}
+
+	private JsonElement readValue() throws IOException {
+		int tag = readByte();
+		switch (tag) {
+		case VALUE_ABSENT:
+			return null;
+		case VALUE_NULL:
+			return JsonNull.INSTANCE;
+		case VALUE_FALSE:
+			return new JsonPrimitive(Boolean.FALSE);
+		case VALUE_TRUE:
+			return new JsonPrimitive(Boolean.TRUE);
+		case VALUE_INTEGER: {
+			long zigzag = readVarint(readByte());
+			return new JsonPrimitive((zigzag >>> 1) ^ -(zigzag & 1));
+		}
+		case VALUE_NUMBER:
+			return readNumber();
+		case VALUE_STRING:
+			return new JsonPrimitive(readString());
+		case VALUE_ARRAY: {
+			int size = (int)readVarint(readByte());
+			JsonArray array = new JsonArray();
+			for (int i=0; i<size; i++)
+				array.add(readValue());
+			return array;
+		}
+		case VALUE_OBJECT: {
+			int size = (int)readVarint(readByte());
+			JsonObject obj = new JsonObject();
+			for (int i=0; i<size; i++) {
+				String name = readName();
+				obj.add(name, readValue());
+			}
+			return obj;
+		}
+		default:
+			throw new IOException("Invalid value tag: " + tag);
+		}
+	}
+
+	private String readName() throws IOException {
+		long header = readVarint(readByte());
+		if ((header & 1) != 0) {
+			int id = (int)(header >>> 1);
+			if (id >= names.size())
+				throw new IOException("Invalid name reference: " + id);
+			return names.get(id);
+		}
+
+		String name = readUtf8((int)(header >>> 1));
+		if (names.size() < MAX_DICTIONARY_SIZE)
+			names.add(name);
+		return name;
+	}
+
+	/*
+	 * Numbers are parsed like JSON text, so that they keep their text
+	 */
+	private JsonElement readNumber() throws IOException {
+		String text = readString();
+		JsonReader reader = new JsonReader(new StringReader(text));
+		//NaN and infinities are read as strings instead of failing
+		reader.setLenient(true);
+		JsonElement number = JsonUtil.parse(reader);
+		if (number.isJsonPrimitive() && ((JsonPrimitive)number).isNumber() && reader.peek() == JsonToken.END_DOCUMENT)
+			return number;
+
+		if (text.equals("NaN") || text.equals("Infinity") || text.equals("-Infinity"))
+			return new JsonPrimitive(Double.valueOf(text));
+		throw new IOException("Invalid number: " + text);
+	}
+
+	private String readString() throws IOException {
+		return readUtf8((int)(readVarint(readByte()) >>> 1));
+	}
+
+	private String readUtf8(int length) throws IOException {
+		byte [] bytes = new byte[length];
+		int offset = 0;
+		while (offset < length) {
+			int n = in.read(bytes, offset, length - offset);
+			if (n < 0)
+				throw new EOFException("Truncated binary JSON Patch stream");
+			offset += n;
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads a varint whose first byte has already been read.
+	 */
+	private long readVarint(int first) throws IOException {
+		long value = first & 0x7F;
+		int shift = 7;
+		int b = first;
+		while ((b & 0x80) != 0) {
+			b = readByte();
+			value |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		}
+		return value;
+	}
+
+	private int readByte() throws IOException {
+		int b = in.read();
+		if (b < 0)
+			throw new EOFException("Truncated binary JSON Patch stream");
+		return b;
+	}
+
+}
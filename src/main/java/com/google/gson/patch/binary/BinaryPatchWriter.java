@@ -0,0 +1,238 @@
+package com.google.gson.patch.binary;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.patch.AddOperation;
+import com.google.gson.patch.CopyOperation;
+import com.google.gson.patch.DualPathOperation;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchOperation;
+import com.google.gson.patch.MoveOperation;
+import com.google.gson.patch.PathValueOperation;
+import com.google.gson.patch.RemoveOperation;
+import com.google.gson.patch.ReplaceOperation;
+import com.google.gson.patch.TestOperation;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.ReferenceToken;
+
+import static com.google.gson.patch.binary.BinaryFormat.*;
+
+/**
+ * Writes {@link JsonPatch}es in the compact binary encoding described in
+ * {@link BinaryFormat}.
+ *
+ * <p>Pointer prefixes and member names are written once per stream and
+ * referred to by id afterwards, so a writer should be kept open for as long
+ * as the stream it writes to.  The stream must be read by a single
+ * {@link BinaryPatchReader}, from the start.</p>
+ */
+public class BinaryPatchWriter implements Closeable, Flushable
+{
+	private final OutputStream out;
+
+	private final Map<JsonPointer, Integer> pointers = new HashMap<>();
+	private final Map<String, Integer> names = new HashMap<>();
+
+	private boolean headerWritten = false;
+
+	public BinaryPatchWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes a complete patch.
+	 */
+	public void write(JsonPatch patch) throws IOException {
+		if (!headerWritten) {
+			out.write(MAGIC >>> 8);
+			out.write(MAGIC & 0xFF);
+			out.write(VERSION);
+			headerWritten = true;
+		}
+
+		writeVarint(patch.getOperations().size());
+		for (JsonPatchOperation op : patch.getOperations())
+			writeOperation(op);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	private void writeOperation(JsonPatchOperation op) throws IOException {
+		int code = opCode(op);
+		out.write(code);
+		writePointer(op.getPath());
+
+		if (code == OP_EXTENSION) {
+			JsonObject members = op.toJson();
+			members.remove("op");
+			members.remove("path");
+			writeString(op.getOp());
+			writeValue(members);
+		}
+		else if (op instanceof DualPathOperation) {
+			writePointer(((DualPathOperation)op).getFrom());
+		}
+		else if (!(op instanceof RemoveOperation)) {
+			JsonElement value = ((PathValueOperation)op).getValue();
+			if (value == null)
+				out.write(VALUE_ABSENT);
+			else
+				writeValue(value);
+		}
+	}
+
+	private static int opCode(JsonPatchOperation op) {
+		if (op instanceof AddOperation)
+			return OP_ADD;
+		if (op instanceof RemoveOperation)
+			return OP_REMOVE;
+		if (op instanceof ReplaceOperation)
+			return OP_REPLACE;
+		if (op instanceof TestOperation)
+			return OP_TEST;
+		if (op instanceof MoveOperation)
+			return OP_MOVE;
+		if (op instanceof CopyOperation)
+			return OP_COPY;
+
+		return OP_EXTENSION;
+	}
+
+	private void writePointer(JsonPointer pointer) throws IOException {
+		final int size = pointer.size();
+
+		//find the longest prefix already in the dictionary:
+		int known = size;
+		int id = 0;
+		for (JsonPointer prefix = pointer; known > 0; prefix = prefix.parent(), known--) {
+			Integer prefixId = pointers.get(prefix);
+			if (prefixId != null) {
+				id = prefixId;
+				break;
+			}
+		}
+
+		writeVarint(id);
+		writeVarint(size - known);
+
+		for (int i=known; i<size; i++) {
+			ReferenceToken token = pointer.getToken(i);
+			String raw = token.getRaw();
+			int index = canonicalIndex(raw);
+			if (index >= 0)
+				writeVarint(((long)index << 1) | 1);
+			else
+				writeString(raw);
+		}
+
+		//register the new prefixes, shortest first:
+		if (known < size) {
+			JsonPointer [] added = new JsonPointer[size - known];
+			JsonPointer current = pointer;
+			for (int i=added.length-1; i>=0; i--) {
+				added[i] = current;
+				current = current.parent();
+			}
+			for (JsonPointer newPrefix : added) {
+				if (pointers.size() >= MAX_DICTIONARY_SIZE)
+					break;
+				pointers.put(newPrefix, pointers.size() + 1);
+			}
+		}
+	}
+
+	private void writeValue(JsonElement value) throws IOException {
+		if (value.isJsonNull()) {
+			out.write(VALUE_NULL);
+		}
+		else if (value.isJsonPrimitive()) {
+			JsonPrimitive p = (JsonPrimitive)value;
+			if (p.isBoolean()) {
+				out.write(p.getAsBoolean() ? VALUE_TRUE : VALUE_FALSE);
+			}
+			else if (p.isNumber()) {
+				String text = p.getAsString();
+				if (isCanonicalLong(text)) {
+					out.write(VALUE_INTEGER);
+					long n = Long.parseLong(text);
+					writeVarint((n << 1) ^ (n >> 63));
+				}
+				else {
+					out.write(VALUE_NUMBER);
+					writeString(text);
+				}
+			}
+			else {
+				out.write(VALUE_STRING);
+				writeString(p.getAsString());
+			}
+		}
+		else if (value.isJsonArray()) {
+			JsonArray array = (JsonArray)value;
+			out.write(VALUE_ARRAY);
+			writeVarint(array.size());
+			for (JsonElement element : array)
+				writeValue(element);
+		}
+		else {
+			JsonObject obj = (JsonObject)value;
+			out.write(VALUE_OBJECT);
+			writeVarint(obj.size());
+			for (Map.Entry<String, JsonElement> entry : obj.entrySet()) {
+				writeName(entry.getKey());
+				writeValue(entry.getValue());
+			}
+		}
+	}
+
+	private void writeName(String name) throws IOException {
+		Integer id = names.get(name);
+		if (id != null) {
+			writeVarint(((long)id << 1) | 1);
+			return;
+		}
+
+		writeString(name);
+		if (names.size() < MAX_DICTIONARY_SIZE)
+			names.put(name, names.size());
+	}
+
+	/**
+	 * Writes a string as a varint header ({@code length << 1}) followed by
+	 * its UTF-8 bytes.
+	 */
+	private void writeString(String text) throws IOException {
+		byte [] bytes = text.getBytes(StandardCharsets.UTF_8);
+		writeVarint((long)bytes.length << 1);
+		out.write(bytes);
+	}
+
+	private void writeVarint(long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int)value);
+	}
+
+}
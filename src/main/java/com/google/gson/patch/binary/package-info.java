@@ -0,0 +1,10 @@
+/**
+ * Compact binary encoding of JSON Patches
+ *
+ * <p>{@link com.google.gson.patch.binary.BinaryPatchWriter} and {@link
+ * com.google.gson.patch.binary.BinaryPatchReader} encode a stream of patches
+ * with one-byte op codes, a per-stream dictionary of pointer prefixes and
+ * member names, and varint integers.  Decoding round-trips exactly to the
+ * patches that were written.</p>
+ */
+package com.google.gson.patch.binary;
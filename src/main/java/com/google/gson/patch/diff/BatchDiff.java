@@ -0,0 +1,211 @@
+package com.google.gson.patch.diff;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import com.google.gson.JsonElement;
+import com.google.gson.patch.JsonPatch;
+
+/**
+ * Diffs large collections of document pairs on an {@link Executor}
+ *
+ * <p>Pairs are pulled from an iterator or stream as tasks complete: at most
+ * {@link #getMaxPending()} pairs are in flight at any time, and every result
+ * is handed to a {@link Callback} as soon as it is computed, so nothing is
+ * buffered.  A batch keeps a pool of diff engines, one per pair being
+ * diffed at the same time, which it drops when it returns; an engine's
+ * structural hash memo is cleared between pairs, and only reallocated after
+ * a large pair.  Equal pairs are detected from their hashes before any
+ * other work.</p>
+ *
+ * <p>The options must not be modified while a batch is running.  An
+ * instance may run several batches, one after the other or concurrently;
+ * its counters add up over all of them.</p>
+ */
+public final class BatchDiff
+{
+
+	public static final int DEFAULT_MAX_PENDING = 1024;
+
+	/**
+	 * A pair of documents to diff, identified by a key of the caller's choice
+	 */
+	public static final class Pair<K>
+	{
+		private final K key;
+		private final JsonElement source;
+		private final JsonElement target;
+
+		public Pair(K key, JsonElement source, JsonElement target) {
+			if (source == null)
+				throw new IllegalArgumentException("source may not be NULL");
+			if (target == null)
+				throw new IllegalArgumentException("target may not be NULL");
+
+			this.key = key;
+			this.source = source;
+			this.target = target;
+		}
+
+		public K getKey() {
+			return key;
+		}
+		public JsonElement getSource() {
+			return source;
+		}
+		public JsonElement getTarget() {
+			return target;
+		}
+	}
+
+	/**
+	 * Receives the patch of each pair.  It is called from the executor's
+	 * threads, possibly concurrently, in no particular order.
+	 */
+	public interface Callback<K>
+	{
+		void diffed(K key, JsonPatch patch);
+	}
+
+	// -------------------------------------------------------------- Properties
+
+	private final Executor executor;
+	private final int maxPending;
+	private final DiffOptions options;
+
+	private final LongAdder pairsCompared = new LongAdder();
+	private final LongAdder pairsEqual = new LongAdder();
+	private final LongAdder operationsEmitted = new LongAdder();
+
+	// ------------------------------------------------------------ Constructors
+
+	public BatchDiff(DiffOptions options, Executor executor) {
+		this(options, executor, DEFAULT_MAX_PENDING);
+	}
+	public BatchDiff(DiffOptions options, Executor executor, int maxPending) {
+		if (options == null)
+			throw new IllegalArgumentException("options may not be NULL");
+		if (executor == null)
+			throw new IllegalArgumentException("executor may not be NULL");
+		if (maxPending < 1)
+			throw new IllegalArgumentException("maxPending must be positive");
+
+		this.executor = executor;
+		this.maxPending = maxPending;
+		this.options = options;
+	}
+
+	// --------------------------------------------------------------- Accessors
+
+	public int getMaxPending() {
+		return maxPending;
+	}
+
+	/**
+	 * Returns the number of pairs diffed so far, equal ones included
+	 */
+	public long getPairsCompared() {
+		return pairsCompared.sum();
+	}
+
+	/**
+	 * Returns the number of pairs found equal so far
+	 */
+	public long getPairsEqual() {
+		return pairsEqual.sum();
+	}
+
+	/**
+	 * Returns the total number of operations in the patches produced so far
+	 */
+	public long getOperationsEmitted() {
+		return operationsEmitted.sum();
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	public <K> void diff(Stream<? extends Pair<K>> pairs, Callback<? super K> callback)
+			throws InterruptedException
+	{
+		diff(pairs.iterator(), callback);
+	}
+
+	/**
+	 * Diffs every pair and returns once all the callbacks have returned.
+	 *
+	 * <p>If a diff or a callback throws, no further pair is submitted and the
+	 * exception is rethrown once the pairs in flight are done.  The same
+	 * applies if the executor rejects a task.</p>
+	 *
+	 * @throws InterruptedException if interrupted while waiting for a task
+	 *     to complete; pairs in flight keep running
+	 */
+	public <K> void diff(Iterator<? extends Pair<K>> pairs, Callback<? super K> callback)
+			throws InterruptedException
+	{
+		if (pairs == null)
+			throw new IllegalArgumentException("pairs may not be NULL");
+		if (callback == null)
+			throw new IllegalArgumentException("callback may not be NULL");
+
+		final Semaphore pending = new Semaphore(maxPending);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		// engines not in use; there are never more than the pairs in flight
+		final ConcurrentLinkedQueue<JsonDiff> engines = new ConcurrentLinkedQueue<>();
+
+		while (failure.get() == null && pairs.hasNext()) {
+			final Pair<K> pair = pairs.next();
+			pending.acquire();
+			try {
+				executor.execute(() -> {
+					try {
+						callback.diffed(pair.getKey(), diff(pair, engines));
+					}
+					catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+					finally {
+						pending.release();
+					}
+				});
+			}
+			catch (RuntimeException e) {
+				pending.release();
+				failure.compareAndSet(null, e);
+			}
+		}
+
+		//wait for the pairs in flight:
+		pending.acquire(maxPending);
+		pending.release(maxPending);
+
+		final Throwable e = failure.get();
+		if (e instanceof RuntimeException)
+			throw (RuntimeException)e;
+		if (e instanceof Error)
+			throw (Error)e;
+		if (e != null)
+			throw new IllegalStateException(e);
+	}
+
+	private JsonPatch diff(Pair<?> pair, ConcurrentLinkedQueue<JsonDiff> engines) {
+		JsonDiff engine = engines.poll();
+		if (engine == null)
+			engine = new JsonDiff(options);
+		final JsonPatch patch = engine.run(pair.getSource(), pair.getTarget());
+		engines.offer(engine);
+		final int operations = patch.getOperations().size();
+
+		pairsCompared.increment();
+		if (operations == 0)
+			pairsEqual.increment();
+		operationsEmitted.add(operations);
+		return patch;
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.google.gson.patch.diff;
+
+import com.google.gson.JsonElement;
+import com.google.gson.pointer.JsonPointer;
+
+/**
+ * Receives the changes found by {@link JsonDiff}, in the order they must be
+ * applied
+ *
+ * <p>{@link DiffProcessor} turns them into a patch; {@link DiffRecorder}
+ * records them so that parts of a document diffed in parallel can be
+ * replayed in order.</p>
+ */
+interface DiffEvents
+{
+
+    /**
+     * A value was replaced
+     */
+    void valueReplaced(JsonPointer pointer, JsonElement oldValue, JsonElement newValue);
+
+    /**
+     * A value was removed; the removal may become a move if an equal value is
+     * added later
+     */
+    void valueRemoved(JsonPointer pointer, JsonElement value);
+
+    /**
+     * An array element was removed; indexes are shifting, so the removal
+     * never becomes a move
+     */
+    void elementRemoved(JsonPointer pointer, JsonElement value);
+
+    /**
+     * A value was moved
+     */
+    void valueMoved(JsonPointer from, JsonPointer path, JsonElement value);
+
+    /**
+     * A value was added
+     */
+    void valueAdded(JsonPointer pointer, JsonElement value);
+
+}
@@ -0,0 +1,269 @@
+package com.google.gson.patch.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.JsonPointerException;
+import com.google.gson.pointer.JsonPointerPattern;
+
+/**
+ * Options of {@link JsonDiff#diff(com.google.gson.JsonElement, com.google.gson.JsonElement, DiffOptions)}
+ *
+ * <p>The default options produce the same patches as
+ * {@link JsonDiff#diff(com.google.gson.JsonElement, com.google.gson.JsonElement)}.</p>
+ */
+public final class DiffOptions
+{
+
+	/**
+	 * How arrays are compared
+	 */
+	public enum ArrayStrategy {
+
+		/**
+		 * Elements are compared index by index, and the extra elements of the
+		 * longer array are removed or added at the end.  Cheap, but inserting
+		 * one element at the front of an array replaces every element.
+		 */
+		INDEX,
+
+		/**
+		 * Arrays are compared as sequences (Myers' O(ND) algorithm), so that
+		 * only the elements actually inserted or removed are added or removed.
+		 * A removed and an inserted element that are equal become a
+		 * {@code move}; a removed and an inserted element at the same place
+		 * are diffed with each other.  Arrays that differ by more than
+		 * {@link DiffOptions#getSequenceEditLimit()} edits are replaced as a
+		 * whole.
+		 */
+		SEQUENCE
+	}
+
+	public static final int DEFAULT_SEQUENCE_EDIT_LIMIT = 1000;
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 256;
+	public static final long UNLIMITED = Long.MAX_VALUE;
+
+	// -------------------------------------------------------------- Properties
+
+	private ArrayStrategy arrayStrategy = ArrayStrategy.INDEX;
+	private int sequenceEditLimit = DEFAULT_SEQUENCE_EDIT_LIMIT;
+	private final Map<JsonPointerPattern, JsonPointer> arrayKeys = new LinkedHashMap<>();
+	private final List<JsonPointerPattern> ignored = new ArrayList<>();
+	private ForkJoinPool forkJoinPool;
+	private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+	private long timeBudgetMillis = UNLIMITED;
+	private long maxNodes = UNLIMITED;
+	private long maxOperations = UNLIMITED;
+
+	// --------------------------------------------------------------- Accessors
+
+	public ArrayStrategy getArrayStrategy() {
+		return arrayStrategy;
+	}
+	public void setArrayStrategy(ArrayStrategy arrayStrategy) {
+		if (arrayStrategy == null)
+			throw new IllegalArgumentException("arrayStrategy may not be NULL");
+
+		this.arrayStrategy = arrayStrategy;
+	}
+
+	/**
+	 * Returns the maximum number of element insertions and removals for which
+	 * the {@link ArrayStrategy#SEQUENCE} strategy looks for a minimal diff.
+	 * The work done for an array is proportional to its length times this
+	 * limit in the worst case, and memory to its square.
+	 */
+	public int getSequenceEditLimit() {
+		return sequenceEditLimit;
+	}
+	public void setSequenceEditLimit(int sequenceEditLimit) {
+		if (sequenceEditLimit < 0)
+			throw new IllegalArgumentException("sequenceEditLimit may not be negative");
+
+		this.sequenceEditLimit = sequenceEditLimit;
+	}
+
+	/**
+	 * Declares the arrays whose elements match {@code elements} as lists of
+	 * entities identified by the value at {@code key} (relative to each
+	 * element), for instance {@code /orders/*} keyed by {@code /id}.
+	 *
+	 * <p>The elements of such arrays are matched by key rather than by
+	 * position or value, whatever the {@link ArrayStrategy}: elements with
+	 * a key found in both arrays are moved where needed (the longest run of
+	 * elements already in order stays in place) and diffed field by field;
+	 * the others are removed or added.  Elements without a key, and the
+	 * later elements sharing a key, are never matched.  Matching takes time
+	 * linear in the length of the arrays, and moving the reordered elements
+	 * O(log n) per move.</p>
+	 *
+	 * <p>The patterns are tried in the order they were declared.</p>
+	 *
+	 * @param elements the pattern of the array elements; it must end with a
+	 *     {@link JsonPointerPattern#WILDCARD wildcard}
+	 * @param key the pointer to the key in each element; the empty pointer
+	 *     uses elements as their own key
+	 */
+	public void setArrayKey(JsonPointerPattern elements, JsonPointer key) {
+		if (elements == null)
+			throw new IllegalArgumentException("elements may not be NULL");
+		if (key == null)
+			throw new IllegalArgumentException("key may not be NULL");
+		JsonPointer pattern = elements.getPointer();
+		if (pattern.isEmpty() || !JsonPointerPattern.WILDCARD.equals(pattern.getLastToken().getRaw()))
+			throw new IllegalArgumentException("Pattern '" + elements + "' does not match array elements");
+
+		arrayKeys.put(elements, key);
+	}
+	public void setArrayKey(String elements, String key) throws JsonPointerException {
+		setArrayKey(new JsonPointerPattern(elements), new JsonPointer(key));
+	}
+
+	/**
+	 * Returns the key of the elements of the array at {@code array}, or
+	 * {@code null} if the array is not keyed.
+	 */
+	public JsonPointer getArrayKey(JsonPointer array) {
+		for (Map.Entry<JsonPointerPattern, JsonPointer> entry : arrayKeys.entrySet()) {
+			if (entry.getKey().matchesChildrenOf(array))
+				return entry.getValue();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the pool that diffs the children of large containers in
+	 * parallel, or {@code null} (the default) to diff sequentially.  The
+	 * patch is the same either way.
+	 */
+	public ForkJoinPool getForkJoinPool() {
+		return forkJoinPool;
+	}
+	public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+		this.forkJoinPool = forkJoinPool;
+	}
+
+	/**
+	 * Returns the number of children (object members present on both sides,
+	 * or array elements) from which a container is diffed in parallel, when
+	 * a {@link #getForkJoinPool() pool} is set.
+	 */
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+	public void setParallelThreshold(int parallelThreshold) {
+		if (parallelThreshold < 1)
+			throw new IllegalArgumentException("parallelThreshold must be positive");
+
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	/**
+	 * Returns the wall-clock time after which the containers that remain to
+	 * be diffed are replaced as a whole, or {@link #UNLIMITED}
+	 *
+	 * @see JsonDiff#diffResult(com.google.gson.JsonElement, com.google.gson.JsonElement, DiffOptions)
+	 */
+	public long getTimeBudgetMillis() {
+		return timeBudgetMillis;
+	}
+	public void setTimeBudgetMillis(long timeBudgetMillis) {
+		if (timeBudgetMillis < 0)
+			throw new IllegalArgumentException("timeBudgetMillis may not be negative");
+
+		this.timeBudgetMillis = timeBudgetMillis;
+	}
+
+	/**
+	 * Returns the number of containers that may be diffed; the following
+	 * ones are replaced as a whole.  {@link #UNLIMITED} by default.
+	 */
+	public long getMaxNodes() {
+		return maxNodes;
+	}
+	public void setMaxNodes(long maxNodes) {
+		if (maxNodes < 0)
+			throw new IllegalArgumentException("maxNodes may not be negative");
+
+		this.maxNodes = maxNodes;
+	}
+
+	/**
+	 * Returns the number of operations after which the containers that
+	 * remain to be diffed are replaced as a whole.  {@link #UNLIMITED} by
+	 * default.  The patch may exceed it by the number of replaced
+	 * containers.
+	 */
+	public long getMaxOperations() {
+		return maxOperations;
+	}
+	public void setMaxOperations(long maxOperations) {
+		if (maxOperations < 0)
+			throw new IllegalArgumentException("maxOperations may not be negative");
+
+		this.maxOperations = maxOperations;
+	}
+
+	/**
+	 * Excludes the values matching the pattern from the diff, for instance
+	 * {@code /meta/updatedAt} or {@code /audit/*}: they are neither compared,
+	 * hashed, nor used as sources of copies, and the patch never touches
+	 * them.  A container that contains an ignored value is compared member by
+	 * member rather than by hash.
+	 *
+	 * <p>Patterns naming array elements only skip the comparison of elements
+	 * found in both arrays: added and removed elements are still added and
+	 * removed, and {@link ArrayStrategy#SEQUENCE sequences} and keyed arrays
+	 * align their elements as a whole (ignored values inside aligned
+	 * elements are skipped when these are diffed).</p>
+	 */
+	public void addIgnored(JsonPointerPattern pattern) {
+		if (pattern == null)
+			throw new IllegalArgumentException("pattern may not be NULL");
+
+		ignored.add(pattern);
+	}
+	public void addIgnored(String pattern) throws JsonPointerException {
+		addIgnored(new JsonPointerPattern(pattern));
+	}
+
+	public List<JsonPointerPattern> getIgnored() {
+		return Collections.unmodifiableList(ignored);
+	}
+
+	/**
+	 * Tells whether the value at the pointer is ignored
+	 */
+	public boolean isIgnored(JsonPointer pointer) {
+		for (JsonPointerPattern pattern : ignored) {
+			if (pattern.matches(pointer))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Tells whether the value at the pointer may contain ignored values
+	 */
+	boolean containsIgnored(JsonPointer pointer) {
+		for (JsonPointerPattern pattern : ignored) {
+			if (pattern.matchesDescendantsOf(pointer))
+				return true;
+		}
+		return false;
+	}
+
+	boolean hasIgnored() {
+		return !ignored.isEmpty();
+	}
+
+	boolean hasArrayKeys() {
+		return !arrayKeys.isEmpty();
+	}
+
+}
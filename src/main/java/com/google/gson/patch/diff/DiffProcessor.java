@@ -1,7 +1,11 @@
 package com.google.gson.patch.diff;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 
 /*
  * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
@@ -24,76 +28,164 @@ import java.util.HashMap;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.google.gson.JsonElement;
-import com.google.gson.patch.JsonPatch;
-import com.google.gson.patch.JsonPatchOperation;
-import com.google.gson.patch.JsonUtil;
 import com.google.gson.pointer.JsonPointer;
 
 // TODO: cleanup
-final class DiffProcessor
+final class DiffProcessor implements DiffEvents
 {
    
-    private final Map<JsonPointer, JsonElement> unchanged;
+    /* Unchanged values by hash, each bucket in the iteration order of the map */
+    private final Map<Integer, List<Map.Entry<JsonPointer, JsonElement>>> unchanged;
 
+    /* Indexes (counted from the first operation) of the REMOVE operations not
+     * yet turned into moves, by hash */
+    private final Map<Integer, List<Integer>> removals = new HashMap<>();
+
+    /* Operations not sent yet, the first one being operation number 'sent';
+     * removals turned into moves are set to null */
     private final List<DiffOperation> diffs = new ArrayList<>();
+    private int sent;
+
+    /* Removals that may still become moves; they and the operations after
+     * them are held back */
+    private final Set<DiffOperation> held = Collections.newSetFromMap(new IdentityHashMap<DiffOperation, Boolean>());
+
+    /* Hashes of every value of the target, or null if unknown: the removal
+     * of a value whose hash is not there never becomes a move */
+    private final Set<Integer> targetHashes;
+
+    private final StructuralHashes hashes;
+    private final DiffSink sink;
 
-    DiffProcessor(final Map<JsonPointer, JsonElement> unchanged)
+    DiffProcessor(final Map<JsonPointer, JsonElement> unchanged, final StructuralHashes hashes,
+        final Set<Integer> targetHashes, final DiffSink sink)
     {
-        this.unchanged = new HashMap<>(unchanged);
+        this.hashes = hashes;
+        this.targetHashes = targetHashes;
+        this.sink = sink;
+        this.unchanged = new HashMap<>();
+        for (final Map.Entry<JsonPointer, JsonElement> entry : new HashMap<>(unchanged).entrySet())
+            bucket(this.unchanged, hashes.hash(entry.getValue())).add(entry);
     }
 
     /**
      * Add a DiffOperation indicating a value was replaced
      */
-    void valueReplaced(final JsonPointer pointer, final JsonElement oldValue,
+    @Override
+    public void valueReplaced(final JsonPointer pointer, final JsonElement oldValue,
         final JsonElement newValue)
     {
-        diffs.add(DiffOperation.replace(pointer, oldValue, newValue));
+        append(DiffOperation.replace(pointer, oldValue, newValue));
     }
 
     /**
      * Adds a DiffOperation indicating a value was removed
      */
-    void valueRemoved(final JsonPointer pointer, final JsonElement value)
+    @Override
+    public void valueRemoved(final JsonPointer pointer, final JsonElement value)
+    {
+        final int hash = hashes.hash(value);
+        final DiffOperation op = DiffOperation.remove(pointer, value);
+        if (targetHashes == null || targetHashes.contains(hash)) {
+            bucket(removals, hash).add(sent + diffs.size());
+            held.add(op);
+        }
+        append(op);
+    }
+
+    /**
+     * Adds a DiffOperation indicating an array element was removed.  Unlike
+     * valueRemoved(), the removal is never turned into a move later: the
+     * indexes of the array are shifting, so its pointer is only valid at
+     * this point of the patch.
+     */
+    @Override
+    public void elementRemoved(final JsonPointer pointer, final JsonElement value)
+    {
+        append(DiffOperation.remove(pointer, value));
+    }
+
+    /**
+     * Adds a DiffOperation indicating a value was moved
+     */
+    @Override
+    public void valueMoved(final JsonPointer from, final JsonPointer path, final JsonElement value)
     {
-        diffs.add(DiffOperation.remove(pointer, value));
+        append(DiffOperation.move(from, value, path, value));
     }
 
     /**
      * Adds a DiffOperation indicating a value was added
      */
-    void valueAdded(final JsonPointer pointer, final JsonElement value)
+    @Override
+    public void valueAdded(final JsonPointer pointer, final JsonElement value)
     {
-        final int removalIndex = findPreviouslyRemoved(value);
+        final int hash = hashes.hash(value);
+
+        final int removalIndex = findPreviouslyRemoved(hash, value);
         if (removalIndex != -1) {
-            final DiffOperation removed = diffs.get(removalIndex);
-            diffs.remove(removalIndex);
-            diffs.add(DiffOperation.move(removed.getFrom(),
+            final DiffOperation removed = diffs.get(removalIndex - sent);
+            diffs.set(removalIndex - sent, null);
+            held.remove(removed);
+            append(DiffOperation.move(removed.getFrom(),
                 value, pointer, value));
             return;
         }
-        final JsonPointer ptr = findUnchangedValue(value);
+        final JsonPointer ptr = findUnchangedValue(hash, value);
         final DiffOperation op = ptr != null
             ? DiffOperation.copy(ptr, pointer, value)
             : DiffOperation.add(pointer, value);
 
-        diffs.add(op);
+        append(op);
     }
 
     /**
-     * Returns a JsonPatch object, created from the DiffOperations stored 
-     * in this object.
+     * Sends the operations held back so far; no operation may be added
+     * afterwards.
+     *
+     * @throws UncheckedIOException if the sink fails
+     */
+    void finish()
+    {
+        held.clear();
+        removals.clear();
+        flush();
+    }
+
+    /*
+     * Adds an operation, and sends every operation that is not held back
      */
-    JsonPatch getPatch()
+    private void append(final DiffOperation op)
     {
-        final List<JsonPatchOperation> list = new ArrayList<>(diffs.size());
+        diffs.add(op);
+        flush();
+    }
 
-        for (final DiffOperation op: diffs)
-            list.add(op.asJsonPatchOperation());
+    private void flush()
+    {
+        int index = 0;
+        for (; index < diffs.size(); index++) {
+            final DiffOperation op = diffs.get(index);
+            if (op == null)
+                continue;
+            if (held.contains(op))
+                break;
+
+            try {
+                sink.operation(op.asJsonPatchOperation());
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
 
-        return new JsonPatch(list);
+        if (index > 0) {
+            diffs.subList(0, index).clear();
+            sent += index;
+        }
     }
 
     /**
@@ -101,11 +193,14 @@ final class DiffProcessor
      * with the given value.
      */
     //@Nullable
-    private JsonPointer findUnchangedValue(final JsonElement value)
+    private JsonPointer findUnchangedValue(final int hash, final JsonElement value)
     {
-        //final Predicate<JsonElement> predicate = EQUIVALENCE.equivalentTo(value);
-        for (final Map.Entry<JsonPointer, JsonElement> entry: unchanged.entrySet()) {
-            if (JsonUtil.jsonEquals(entry.getValue(), value))
+        final List<Map.Entry<JsonPointer, JsonElement>> candidates = unchanged.get(hash);
+        if (candidates == null)
+            return null;
+
+        for (final Map.Entry<JsonPointer, JsonElement> entry: candidates) {
+            if (hashes.equivalent(entry.getValue(), value))
                 return entry.getKey();
         }
         
@@ -114,18 +209,31 @@ final class DiffProcessor
 
     /**
      * Returns the index of a DiffOperation in the 'diffs' list for an entry
-     * with the given old value.
+     * with the given old value, and forgets it.
      */
-    private int findPreviouslyRemoved(final JsonElement value)
+    private int findPreviouslyRemoved(final int hash, final JsonElement value)
     {
-        DiffOperation op;
-
-        for (int i = 0; i < diffs.size(); i++) {
-            op = diffs.get(i);
-            if (op.getType() == DiffOperation.Type.REMOVE
-                && JsonUtil.jsonEquals(op.getOldValue(), value))
-                return i;
+        final List<Integer> candidates = removals.get(hash);
+        if (candidates == null)
+            return -1;
+
+        for (int i = 0; i < candidates.size(); i++) {
+            final int index = candidates.get(i);
+            if (hashes.equivalent(diffs.get(index - sent).getOldValue(), value)) {
+                candidates.remove(i);
+                return index;
+            }
         }
         return -1;
     }
-}
\ No newline at end of file
+
+    private static <T> List<T> bucket(final Map<Integer, List<T>> map, final int hash)
+    {
+        List<T> bucket = map.get(hash);
+        if (bucket == null) {
+            bucket = new ArrayList<>(1);
+            map.put(hash, bucket);
+        }
+        return bucket;
+    }
+}
@@ -0,0 +1,94 @@
+package com.google.gson.patch.diff;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.JsonElement;
+import com.google.gson.pointer.JsonPointer;
+
+/**
+ * Records {@link DiffEvents} to replay them later, in the same order
+ */
+final class DiffRecorder implements DiffEvents
+{
+
+    private enum Type { REPLACED, REMOVED, ELEMENT_REMOVED, MOVED, ADDED }
+
+    private static final class Event
+    {
+        final Type type;
+        final JsonPointer from;
+        final JsonPointer pointer;
+        final JsonElement oldValue;
+        final JsonElement value;
+
+        Event(final Type type, final JsonPointer from, final JsonPointer pointer,
+            final JsonElement oldValue, final JsonElement value)
+        {
+            this.type = type;
+            this.from = from;
+            this.pointer = pointer;
+            this.oldValue = oldValue;
+            this.value = value;
+        }
+    }
+
+    private final List<Event> events = new ArrayList<>();
+
+    @Override
+    public void valueReplaced(final JsonPointer pointer, final JsonElement oldValue,
+        final JsonElement newValue)
+    {
+        events.add(new Event(Type.REPLACED, null, pointer, oldValue, newValue));
+    }
+
+    @Override
+    public void valueRemoved(final JsonPointer pointer, final JsonElement value)
+    {
+        events.add(new Event(Type.REMOVED, null, pointer, null, value));
+    }
+
+    @Override
+    public void elementRemoved(final JsonPointer pointer, final JsonElement value)
+    {
+        events.add(new Event(Type.ELEMENT_REMOVED, null, pointer, null, value));
+    }
+
+    @Override
+    public void valueMoved(final JsonPointer from, final JsonPointer path, final JsonElement value)
+    {
+        events.add(new Event(Type.MOVED, from, path, null, value));
+    }
+
+    @Override
+    public void valueAdded(final JsonPointer pointer, final JsonElement value)
+    {
+        events.add(new Event(Type.ADDED, null, pointer, null, value));
+    }
+
+    /**
+     * Sends the recorded events to another receiver, in order
+     */
+    void replay(final DiffEvents target)
+    {
+        for (final Event event : events) {
+            switch (event.type) {
+                case REPLACED:
+                    target.valueReplaced(event.pointer, event.oldValue, event.value);
+                    break;
+                case REMOVED:
+                    target.valueRemoved(event.pointer, event.value);
+                    break;
+                case ELEMENT_REMOVED:
+                    target.elementRemoved(event.pointer, event.value);
+                    break;
+                case MOVED:
+                    target.valueMoved(event.from, event.pointer, event.value);
+                    break;
+                default:
+                    target.valueAdded(event.pointer, event.value);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.google.gson.patch.diff;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.pointer.JsonPointer;
+
+/**
+ * Result of {@link JsonDiff#diffResult(com.google.gson.JsonElement, com.google.gson.JsonElement, DiffOptions)}:
+ * the patch, and the subtrees replaced as a whole because the diff ran out
+ * of budget
+ */
+public final class DiffResult
+{
+
+	private final JsonPatch patch;
+	private final List<JsonPointer> degraded;
+
+	DiffResult(JsonPatch patch, List<JsonPointer> degraded) {
+		this.patch = patch;
+		this.degraded = Collections.unmodifiableList(degraded);
+	}
+
+	/**
+	 * Returns the patch; it is correct whether or not the diff was degraded
+	 */
+	public JsonPatch getPatch() {
+		return patch;
+	}
+
+	/**
+	 * Tells whether some subtrees were replaced instead of diffed
+	 */
+	public boolean isDegraded() {
+		return !degraded.isEmpty();
+	}
+
+	/**
+	 * Returns the pointers (in the patched document) of the subtrees that
+	 * were replaced instead of diffed.  With a fork/join pool, they are in no
+	 * particular order.
+	 */
+	public List<JsonPointer> getDegraded() {
+		return degraded;
+	}
+
+}
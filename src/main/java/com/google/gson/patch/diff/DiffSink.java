@@ -0,0 +1,16 @@
+package com.google.gson.patch.diff;
+
+import java.io.IOException;
+
+import com.google.gson.patch.JsonPatchOperation;
+
+/**
+ * Receives the operations of a diff one by one, in the order they must be
+ * applied, as soon as they are final
+ */
+public interface DiffSink
+{
+
+	void operation(JsonPatchOperation operation) throws IOException;
+
+}
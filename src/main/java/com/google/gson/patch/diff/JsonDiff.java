@@ -1,16 +1,31 @@
 package com.google.gson.patch.diff;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchOperation;
 import com.google.gson.patch.JsonUtil;
 import com.google.gson.pointer.JsonPointer;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * JSON "diff" implementation
@@ -24,20 +39,45 @@ import com.google.gson.pointer.JsonPointer;
  * the patch.</p>
  *
  * <p>This class always performs operations in the following order: removals,
- * additions and replacements. It then factors removal/addition pairs into
- * move operations, or copy operations if a common element exists, at the same
- * {@link JsonPointer pointer}, in both the source and destination.</p>
+ * additions and replacements, the members of an object in name order. It
+ * then factors removal/addition pairs into move operations, or copy
+ * operations if a common element exists, at the same {@link JsonPointer
+ * pointer}, in both the source and destination.</p>
  *
  * <p>You can obtain a diff either as a {@link JsonPatch} directly or, for
  * backwards compatibility, as a {@link JsonNode}.</p>
  *
+ * <p>Both values are hashed bottom-up once (see {@link StructuralHashes}), so
+ * that subtrees are only compared in full to confirm a hash match: diffing
+ * large, mostly unchanged documents takes linear time.  The documents are
+ * walked with an explicit stack rather than by recursion, so their depth is
+ * only limited by the heap.</p>
+ *
  * @since 1.2
  */
 public final class JsonDiff
 {
     
-    private JsonDiff()
+    private final DiffOptions options;
+    
+    /* Structural hashes of both documents, to prune equal subtrees cheaply */
+    private final StructuralHashes hashes = new StructuralHashes();
+
+    /* Budget of the current diff: nodes visited, operations emitted so far */
+    private final AtomicLong nodes = new AtomicLong();
+    private final AtomicLong operations = new AtomicLong();
+    private boolean budgeted;
+    private boolean ignoring;
+    private long deadline;
+    private List<JsonPointer> degraded;
+    
+    /*
+     * Engines can be reused for consecutive diffs (see BatchDiff), but not
+     * concurrently.
+     */
+    JsonDiff(final DiffOptions options)
     {
+    	this.options = options;
     }
 
     /**
@@ -52,25 +92,449 @@ public final class JsonDiff
      */
     public static JsonPatch diff(final JsonElement source, final JsonElement target)
     {
+    	return diff(source, target, new DiffOptions());
+    }
+
+    /**
+     * Generate a JSON patch for transforming the source node into the target
+     * node, with the given options
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @param options how to compare the nodes
+     * @return the patch as a {@link JsonPatch}
+     */
+    public static JsonPatch diff(final JsonElement source, final JsonElement target,
+    		final DiffOptions options)
+    {
+    	if (options == null)
+    		throw new IllegalArgumentException("options may not be NULL");
     	if (source == null)
     		throw new IllegalArgumentException("source may not be NULL");
     	if (target == null)
     		throw new IllegalArgumentException("target may not be NULL");
     	
-        final Map<JsonPointer, JsonElement> unchanged
-            = getUnchangedValues(source, target);
-        final DiffProcessor processor = new DiffProcessor(unchanged);
+        return new JsonDiff(options).run(source, target);
+    }
+
+    /**
+     * Generate a JSON patch for transforming the source node into the target
+     * node, within the budget set by the options
+     *
+     * <p>Once a {@link DiffOptions#getTimeBudgetMillis() time}, {@link
+     * DiffOptions#getMaxNodes() node} or {@link DiffOptions#getMaxOperations()
+     * operation} budget is spent, every container that remains to be diffed
+     * is replaced as a whole instead.  The patch is still correct; the
+     * result tells which subtrees were replaced that way.</p>
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @param options how to compare the nodes
+     * @return the patch, and the subtrees that were not diffed
+     */
+    public static DiffResult diffResult(final JsonElement source, final JsonElement target,
+    		final DiffOptions options)
+    {
+    	if (options == null)
+    		throw new IllegalArgumentException("options may not be NULL");
+    	if (source == null)
+    		throw new IllegalArgumentException("source may not be NULL");
+    	if (target == null)
+    		throw new IllegalArgumentException("target may not be NULL");
+
+        return new JsonDiff(options).execute(JsonPointer.EMPTY, source, target);
+    }
+
+    /**
+     * Generate a JSON patch for transforming the source node into the target
+     * node, sending each operation to the sink as soon as it is final
+     *
+     * <p>The operations are the same, in the same order, as those of {@link
+     * #diff(JsonElement, JsonElement, DiffOptions)}, but the patch is never
+     * built: only the removals that may still turn into moves are held back,
+     * with the operations after them.  The removal of a value that does not
+     * occur anywhere in the target is sent at once.</p>
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @param options how to compare the nodes
+     * @param sink receives the operations, from the calling thread or from
+     *     the fork/join pool of the options
+     * @throws IOException if the sink fails; the diff stops there
+     */
+    public static void diff(final JsonElement source, final JsonElement target,
+    		final DiffOptions options, final DiffSink sink) throws IOException
+    {
+    	if (options == null)
+    		throw new IllegalArgumentException("options may not be NULL");
+    	if (source == null)
+    		throw new IllegalArgumentException("source may not be NULL");
+    	if (target == null)
+    		throw new IllegalArgumentException("target may not be NULL");
+    	if (sink == null)
+    		throw new IllegalArgumentException("sink may not be NULL");
+
+        try {
+            new JsonDiff(options).execute(JsonPointer.EMPTY, source, target, sink, true);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes the JSON patch for transforming the source node into the target
+     * node as a JSON array, one operation at a time (see {@link
+     * #diff(JsonElement, JsonElement, DiffOptions, DiffSink)})
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @param options how to compare the nodes
+     * @param writer where to write the patch; it is neither flushed nor closed
+     * @throws IOException if writing fails
+     */
+    public static void diff(final JsonElement source, final JsonElement target,
+    		final DiffOptions options, final JsonWriter writer) throws IOException
+    {
+    	if (writer == null)
+    		throw new IllegalArgumentException("writer may not be NULL");
+
+        writer.beginArray();
+        diff(source, target, options, op -> JsonUtil.write(op.toJson(), writer));
+        writer.endArray();
+    }
+
+    /**
+     * Diffs two documents.  Equal documents are detected from their hashes
+     * before any other work.  The structural hashes are cleared afterwards,
+     * so that this engine can be reused without holding on to the documents.
+     */
+    JsonPatch run(final JsonElement source, final JsonElement target)
+    {
+        return run(JsonPointer.EMPTY, source, target);
+    }
+
+    /**
+     * Diffs two values found at {@code root} in larger documents; the
+     * operations are relative to the larger documents.
+     */
+    JsonPatch run(final JsonPointer root, final JsonElement source, final JsonElement target)
+    {
+        return execute(root, source, target).getPatch();
+    }
+
+    private DiffResult execute(final JsonPointer root, final JsonElement source, final JsonElement target)
+    {
+        final List<JsonPatchOperation> list = new ArrayList<>();
+        final List<JsonPointer> subtrees = execute(root, source, target, list::add, false);
+        return new DiffResult(new JsonPatch(list), subtrees);
+    }
+
+    /*
+     * Sends the operations to the sink; when streaming, removals that cannot
+     * become moves are not held back.  Returns the degraded subtrees.
+     */
+    private List<JsonPointer> execute(final JsonPointer root, final JsonElement source,
+        final JsonElement target, final DiffSink sink, final boolean streaming)
+    {
+        try {
+            // Hashes both documents up front, so that parallel tasks only
+            // read the hashes
+            ignoring = options.hasIgnored();
+            if (ignoring ? options.isIgnored(root) : hashes.equivalent(source, target))
+                return Collections.<JsonPointer>emptyList();
+            if (ignoring && options.getForkJoinPool() != null) {
+                prehash(root, source);
+                prehash(root, target);
+            }
+
+            startBudget();
+            final Map<JsonPointer, JsonElement> unchanged
+                = unchangedValues(root, source, target);
+            // with ignored values, a removal may be moved to an element that
+            // is not hashed as a whole
+            final Set<Integer> targetHashes = streaming && !ignoring
+                ? collectHashes(target) : null;
+            final DiffProcessor processor = new DiffProcessor(unchanged, hashes, targetHashes, sink);
+            final DiffEvents events = budgeted ? new CountedEvents(processor) : processor;
+
+            final ForkJoinPool pool = options.getForkJoinPool();
+            if (pool == null)
+                new Walk(events).run(root, source, target);
+            else
+                pool.invoke(ForkJoinTask.adapt(() -> new Walk(events).run(root, source, target)));
+            processor.finish();
+            return new ArrayList<>(degraded);
+        }
+        finally {
+            hashes.clear();
+            degraded = null;
+        }
+    }
+
+    private Set<Integer> collectHashes(final JsonElement root)
+    {
+        final Set<Integer> set = new HashSet<>();
+        final ArrayDeque<JsonElement> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            final JsonElement element = stack.pop();
+            set.add(hashes.hash(element));
+            if (element.isJsonObject()) {
+                for (final Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet())
+                    stack.push(entry.getValue());
+            }
+            else if (element.isJsonArray()) {
+                for (final JsonElement child : element.getAsJsonArray())
+                    stack.push(child);
+            }
+        }
+        return set;
+    }
+
+    /*
+     * Hashes what the diff may hash, without the ignored values when
+     * possible, so that parallel tasks only read the hashes
+     */
+    private void prehash(final JsonPointer pointer, final JsonElement element)
+    {
+        if (options.isIgnored(pointer))
+            return;
+        if (!options.containsIgnored(pointer)) {
+            hashes.hash(element);
+            return;
+        }
+
+        if (element.isJsonObject()) {
+            for (final Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet())
+                prehash(pointer.append(entry.getKey()), entry.getValue());
+        }
+        else if (element.isJsonArray()) {
+            // sequence and keyed diffs hash elements as a whole
+            for (final JsonElement child : element.getAsJsonArray())
+                hashes.hash(child);
+        }
+    }
+
+    /*
+     * Tells whether both values are equal, unless they may contain ignored
+     * values
+     */
+    private boolean unchanged(final JsonPointer pointer, final JsonElement source,
+        final JsonElement target)
+    {
+        if (ignoring && options.containsIgnored(pointer))
+            return false;
+        return hashes.equivalent(source, target);
+    }
+
+    private void startBudget()
+    {
+        budgeted = options.getMaxNodes() != DiffOptions.UNLIMITED
+            || options.getMaxOperations() != DiffOptions.UNLIMITED
+            || options.getTimeBudgetMillis() != DiffOptions.UNLIMITED;
+        nodes.set(0);
+        operations.set(0);
+        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getTimeBudgetMillis());
+        degraded = Collections.synchronizedList(new ArrayList<JsonPointer>());
+    }
 
-        generateDiffs(processor, JsonPointer.EMPTY, source, target);
-        return processor.getPatch();
+    /*
+     * Counts a container, and tells whether the budget is spent.  With a
+     * fork/join pool, operations are counted when the parallel parts are
+     * merged, so the operation budget is enforced less tightly.
+     */
+    private boolean overBudget()
+    {
+        return nodes.incrementAndGet() > options.getMaxNodes()
+            || operations.get() > options.getMaxOperations()
+            || (options.getTimeBudgetMillis() != DiffOptions.UNLIMITED
+                && System.nanoTime() - deadline > 0);
     }
 
-    private static void generateDiffs(
-    		final DiffProcessor processor,
+    /*
+     * Counts the operations sent to the processor
+     */
+    private final class CountedEvents implements DiffEvents
+    {
+        private final DiffEvents delegate;
+
+        CountedEvents(final DiffEvents delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void valueReplaced(final JsonPointer pointer, final JsonElement oldValue,
+            final JsonElement newValue)
+        {
+            operations.incrementAndGet();
+            delegate.valueReplaced(pointer, oldValue, newValue);
+        }
+
+        @Override
+        public void valueRemoved(final JsonPointer pointer, final JsonElement value)
+        {
+            operations.incrementAndGet();
+            delegate.valueRemoved(pointer, value);
+        }
+
+        @Override
+        public void elementRemoved(final JsonPointer pointer, final JsonElement value)
+        {
+            operations.incrementAndGet();
+            delegate.elementRemoved(pointer, value);
+        }
+
+        @Override
+        public void valueMoved(final JsonPointer from, final JsonPointer path, final JsonElement value)
+        {
+            operations.incrementAndGet();
+            delegate.valueMoved(from, path, value);
+        }
+
+        @Override
+        public void valueAdded(final JsonPointer pointer, final JsonElement value)
+        {
+            operations.incrementAndGet();
+            delegate.valueAdded(pointer, value);
+        }
+    }
+
+    /*
+     * Diffs without recursion: a container pushes a frame over the children
+     * it has to diff, and the walk always visits the next child of the
+     * topmost frame.  Children are thus diffed depth first, in the same
+     * order as by a recursive walk, however deep the documents are.  The
+     * changes go to 'events'; parallel tasks each run walks of their own.
+     */
+    private final class Walk
+    {
+        private final DiffEvents events;
+        private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+
+        Walk(final DiffEvents events)
+        {
+            this.events = events;
+        }
+
+        /* Diffs two values and everything below them */
+        void run(final JsonPointer pointer, final JsonElement source,
+            final JsonElement target)
+        {
+            generateDiffs(this, pointer, source, target);
+            drain();
+        }
+
+        private void drain()
+        {
+            while (!stack.isEmpty()) {
+                final Frame frame = stack.peek();
+                if (frame.index == frame.count)
+                    stack.pop();
+                else
+                    frame.children.visit(this, frame.index++);
+            }
+        }
+
+        /**
+         * Diffs the children of a container, in index order, once the
+         * operations of the container itself have been sent.
+         *
+         * <p>With a {@link DiffOptions#getForkJoinPool() fork/join pool} and
+         * at least {@link DiffOptions#getParallelThreshold()} children, the
+         * children are split in ranges diffed by parallel tasks, each
+         * recording its changes; the recordings are then replayed in range
+         * order.  The processor therefore sees the same changes in the same
+         * order as a sequential diff, and detects copies and moves across
+         * ranges the same way.  Tasks only read the documents, the options
+         * and the structural hashes, which are all computed before the diff
+         * starts.</p>
+         */
+        void children(final int count, final Children children)
+        {
+            final ForkJoinPool pool = options.getForkJoinPool();
+            if (pool == null || count < options.getParallelThreshold() || count < 2) {
+                if (count > 0)
+                    stack.push(new Frame(count, children));
+                return;
+            }
+
+            final int chunkSize = Math.max(1, (count + 4 * pool.getParallelism() - 1) / (4 * pool.getParallelism()));
+            final int chunks = (count + chunkSize - 1) / chunkSize;
+            final DiffRecorder[] recorders = new DiffRecorder[chunks];
+            final List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks);
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                final DiffRecorder recorder = new DiffRecorder();
+                final int from = chunk * chunkSize;
+                final int to = Math.min(count, from + chunkSize);
+                recorders[chunk] = recorder;
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    final Walk walk = new Walk(recorder);
+                    for (int index = from; index < to; index++) {
+                        children.visit(walk, index);
+                        walk.drain();
+                    }
+                }));
+            }
+
+            ForkJoinTask.invokeAll(tasks);
+            for (final DiffRecorder recorder : recorders)
+                recorder.replay(events);
+        }
+    }
+
+    /*
+     * Diffs one child of a container
+     */
+    private interface Children
+    {
+        void visit(Walk walk, int index);
+    }
+
+    /*
+     * The children of a container that remain to be diffed
+     */
+    private static final class Frame
+    {
+        final int count;
+        final Children children;
+        int index;
+
+        Frame(final int count, final Children children)
+        {
+            this.count = count;
+            this.children = children;
+        }
+    }
+
+    /*
+     * A member present in both objects, with different values
+     */
+    private static final class Member
+    {
+        final String name;
+        final JsonElement source;
+        final JsonElement target;
+
+        Member(final String name, final JsonElement source, final JsonElement target)
+        {
+            this.name = name;
+            this.source = source;
+            this.target = target;
+        }
+    }
+
+    private static final Comparator<Member> BY_NAME = (first, second) -> first.name.compareTo(second.name);
+
+    private void generateDiffs(
+    		final Walk walk,
     		final JsonPointer pointer, 
     		final JsonElement source, final JsonElement target)
     {
-        if (JsonUtil.jsonEquals(source, target))
+        if (ignoring && options.isIgnored(pointer))
+            return;
+        if (unchanged(pointer, source, target))
             return;
 
         final ElementType firstType = ElementType.of(source);
@@ -78,7 +542,7 @@ public final class JsonDiff
         
         //Node types differ: generate a replacement operation.
         if (firstType != secondType) {
-            processor.valueReplaced(pointer, source, target);
+            walk.events.valueReplaced(pointer, source, target);
             return;
         }
 
@@ -88,17 +552,24 @@ public final class JsonDiff
         
         // If this is not a container, generate a replace operation.
         if (source.isJsonPrimitive()) {
-            processor.valueReplaced(pointer, source, target);
+            walk.events.valueReplaced(pointer, source, target);
+            return;
+        }
+
+        // now we have either JsonObject or JsonArray; out of budget, it is
+        // replaced as a whole
+        if (budgeted && overBudget()) {
+            walk.events.valueReplaced(pointer, source, target);
+            degraded.add(pointer);
             return;
         }
 
-        // now we have either JsonObject or JsonArray
         if (firstType == ElementType.OBJECT) {
-            generateObjectDiffs(processor, pointer, 
+            generateObjectDiffs(walk, pointer, 
             		(JsonObject)source, (JsonObject)target);
         }
         else if (firstType == ElementType.ARRAY) {
-            generateArrayDiffs(processor, pointer, 
+            generateArrayDiffs(walk, pointer, 
             		(JsonArray)source, (JsonArray)target);
         } 
         else {
@@ -106,41 +577,92 @@ public final class JsonDiff
         }
     }
 
-    private static void generateObjectDiffs(final DiffProcessor processor,
+    /**
+     * Diffs objects in one pass over the source members, with one lookup
+     * each in the target; the target members are only scanned when some of
+     * them are not in the source.  Removed, added and changed members are
+     * each handled in name order.
+     */
+    private void generateObjectDiffs(final Walk walk,
         final JsonPointer pointer, final JsonObject source,
         final JsonObject target)
     {
-        final Set<String> firstFields = JsonUtil.propertyNames(source);
-        final Set<String> secondFields = JsonUtil.propertyNames(target);
-        
-        final Set<String> commonFields = new HashSet<>(firstFields.size());
-        
-        //remove common elements:
-        for (String field : new HashSet<String>(firstFields)) {
-        	if (secondFields.remove(field)) {
-        		firstFields.remove(field);
-        		commonFields.add(field);
-        	}
+        List<Map.Entry<String, JsonElement>> removed = null;
+        List<Member> changed = null;
+        int common = 0;
+        for (final Map.Entry<String, JsonElement> entry : source.entrySet()) {
+            final JsonElement value = target.get(entry.getKey());
+            if (value == null) {
+                if (!ignored(pointer, entry.getKey()))
+                    removed = add(removed, entry);
+                continue;
+            }
+
+            common++;
+            // with ignored values, equal hashes do not mean much
+            if (ignoring || !hashes.equivalent(entry.getValue(), value))
+                changed = add(changed, new Member(entry.getKey(), entry.getValue(), value));
         }
-        
+
+        List<Map.Entry<String, JsonElement>> added = null;
+        if (common < target.size()) {
+            for (final Map.Entry<String, JsonElement> entry : target.entrySet()) {
+                if (!source.has(entry.getKey()) && !ignored(pointer, entry.getKey()))
+                    added = add(added, entry);
+            }
+        }
+
         //in the source but not the target => removed
-        for (final String field: firstFields)
-            processor.valueRemoved(pointer.append(field), source.get(field));
+        if (removed != null) {
+            removed.sort(Map.Entry.comparingByKey());
+            for (final Map.Entry<String, JsonElement> entry : removed)
+                walk.events.valueRemoved(pointer.append(entry.getKey()), entry.getValue());
+        }
 
         //in the target but not the source => added
-        for (final String field: secondFields)
-            processor.valueAdded(pointer.append(field), target.get(field));
+        if (added != null) {
+            added.sort(Map.Entry.comparingByKey());
+            for (final Map.Entry<String, JsonElement> entry : added)
+                walk.events.valueAdded(pointer.append(entry.getKey()), entry.getValue());
+        }
 
         //in both => look for value changes
-        for (final String field: commonFields)
-            generateDiffs(processor, pointer.append(field), source.get(field),
-                target.get(field));
+        if (changed != null) {
+            changed.sort(BY_NAME);
+            final List<Member> members = changed;
+            walk.children(members.size(), (child, index) -> {
+                final Member member = members.get(index);
+                generateDiffs(child, pointer.append(member.name), member.source, member.target);
+            });
+        }
+    }
+
+    private boolean ignored(final JsonPointer pointer, final String field)
+    {
+        return ignoring && options.isIgnored(pointer.append(field));
+    }
+
+    private static <T> List<T> add(final List<T> list, final T item)
+    {
+        final List<T> ret = (list == null) ? new ArrayList<T>() : list;
+        ret.add(item);
+        return ret;
     }
 
-    private static void generateArrayDiffs(final DiffProcessor processor,
+    private void generateArrayDiffs(final Walk walk,
         final JsonPointer pointer, final JsonArray source,
         final JsonArray target)
     {
+        final JsonPointer key = arrayKey(pointer);
+        if (key != null) {
+            generateKeyedDiffs(walk, pointer, source, target, key);
+            return;
+        }
+        if (options.getArrayStrategy() == DiffOptions.ArrayStrategy.SEQUENCE) {
+            generateSequenceDiffs(walk, pointer, source, target);
+            return;
+        }
+
         final int firstSize = source.size();
         final int secondSize = target.size();
         final int size = Math.min(firstSize, secondSize);
@@ -148,32 +670,437 @@ public final class JsonDiff
         // Source array is larger; in this case, elements are removed from the
         // target; the index of removal is always the original arrays's length.
         for (int index = size; index < firstSize; index++)
-            processor.valueRemoved(pointer.append(size), source.get(index));
+            walk.events.valueRemoved(pointer.append(size), source.get(index));
+
+        // Common elements, then the destination array being larger...
+        walk.children(secondSize, (child, index) -> {
+            if (index >= size) {
+                child.events.valueAdded(pointer.append("-"), target.get(index));
+                return;
+            }
+            // equal elements are skipped before building their pointer
+            final JsonElement first = source.get(index);
+            final JsonElement second = target.get(index);
+            if (ignoring || !hashes.equivalent(first, second))
+                generateDiffs(child, pointer.append(index), first, second);
+        });
+    }
 
-        for (int index = 0; index < size; index++) {
-            generateDiffs(processor, pointer.append(index), source.get(index),
-                target.get(index));
+    //@Nullable
+    private JsonPointer arrayKey(final JsonPointer pointer)
+    {
+        return options.hasArrayKeys() ? options.getArrayKey(pointer) : null;
+    }
+
+    /**
+     * Diffs arrays as sequences: the longest common subsequence stays in
+     * place, other equal elements are moved, and the remaining removed and
+     * inserted elements between two common elements are diffed pairwise.
+     */
+    private void generateSequenceDiffs(final Walk walk,
+        final JsonPointer pointer, final JsonArray source,
+        final JsonArray target)
+    {
+        final int[] common = SequenceDiff.match(source, target, hashes,
+            options.getSequenceEditLimit());
+        if (common == null) {
+            walk.events.valueReplaced(pointer, source, target);
+            return;
         }
 
-        // Deal with the destination array being larger...
-        for (int index = size; index < secondSize; index++)
-            processor.valueAdded(pointer.append("-"), target.get(index));
+        final int sourceSize = source.size();
+        final int targetSize = target.size();
+
+        // For each source index, the target index it ends up at (-1: removed);
+        // for each target index, the source index it comes from (-1: added).
+        final int[] destinations = common.clone();
+        final int[] origins = new int[targetSize];
+        final boolean[] stable = new boolean[targetSize];
+        Arrays.fill(origins, -1);
+        for (int i = 0; i < sourceSize; i++) {
+            if (common[i] != -1) {
+                origins[common[i]] = i;
+                stable[common[i]] = true;
+            }
+        }
+
+        // Removed and inserted elements that are equal => moved
+        final Map<Integer, List<Integer>> removed = new HashMap<>();
+        for (int i = 0; i < sourceSize; i++) {
+            if (common[i] == -1)
+                removed.computeIfAbsent(hashes.hash(source.get(i)), h -> new ArrayList<>(1)).add(i);
+        }
+        for (int j = 0; j < targetSize && !removed.isEmpty(); j++) {
+            if (origins[j] != -1)
+                continue;
+
+            final List<Integer> candidates = removed.get(hashes.hash(target.get(j)));
+            if (candidates == null)
+                continue;
+
+            for (final Iterator<Integer> it = candidates.iterator(); it.hasNext();) {
+                final int i = it.next();
+                if (hashes.equivalent(source.get(i), target.get(j))) {
+                    it.remove();
+                    destinations[i] = j;
+                    origins[j] = i;
+                    break;
+                }
+            }
+        }
+
+        // Remaining removed and inserted elements between the same common
+        // elements => changed in place
+        final boolean[] changed = new boolean[targetSize];
+        int previousSource = -1;
+        int previousTarget = -1;
+        for (int i = 0; i <= sourceSize; i++) {
+            if (i < sourceSize && common[i] == -1)
+                continue;
+
+            final int nextTarget = (i < sourceSize) ? common[i] : targetSize;
+            int j = previousTarget + 1;
+            for (int k = previousSource + 1; k < i; k++) {
+                if (destinations[k] != -1)
+                    continue;
+                while (j < nextTarget && origins[j] != -1)
+                    j++;
+                if (j == nextTarget)
+                    break;
+
+                destinations[k] = j;
+                origins[j] = k;
+                stable[j] = true;
+                changed[j] = true;
+            }
+
+            previousSource = i;
+            previousTarget = nextTarget;
+        }
+
+        generateArrayEdits(walk, pointer, source, target, origins, stable, changed);
+    }
+
+    /**
+     * Diffs arrays of entities: elements are matched by the value at {@code
+     * key} through a hash map, the longest run of matched elements that are
+     * already in order stays in place, the other matched elements are moved,
+     * and every matched pair is diffed.
+     */
+    private void generateKeyedDiffs(final Walk walk,
+        final JsonPointer pointer, final JsonArray source,
+        final JsonArray target, final JsonPointer key)
+    {
+        final int sourceSize = source.size();
+        final int targetSize = target.size();
+
+        // The first element with a given key wins
+        final Map<ArrayKey, Integer> keys = new HashMap<>(sourceSize * 4 / 3 + 1);
+        for (int i = 0; i < sourceSize; i++) {
+            final JsonElement value = key.resolve(source.get(i));
+            if (value != null)
+                keys.putIfAbsent(new ArrayKey(value, hashes.hash(value)), i);
+        }
+
+        final int[] origins = new int[targetSize];
+        final boolean[] changed = new boolean[targetSize];
+        Arrays.fill(origins, -1);
+        for (int j = 0; j < targetSize && !keys.isEmpty(); j++) {
+            final JsonElement value = key.resolve(target.get(j));
+            if (value == null)
+                continue;
+
+            final Integer i = keys.remove(new ArrayKey(value, hashes.hash(value)));
+            if (i == null)
+                continue;
+
+            origins[j] = i;
+            changed[j] = !hashes.equivalent(source.get(i), target.get(j));
+        }
+
+        generateArrayEdits(walk, pointer, source, target, origins,
+            longestIncreasingRun(origins), changed);
+    }
+
+    /**
+     * Emits the operations turning one array into the other, given how their
+     * elements are matched.
+     *
+     * <p>All removals come first, in ascending order.  The moved and added
+     * elements are then placed in ascending target order, each right after
+     * its predecessor in the target; stable elements never move.  Matched
+     * pairs are diffed last, when every element is at its target index.
+     * The current index of an element is counted with a Fenwick tree over
+     * the places an element can occupy, so every placement takes O(log n)
+     * time.</p>
+     *
+     * @param origins for each target index, the source index of the element
+     *     it is matched with, or -1 if it is added
+     * @param stable for each target index, whether the matched element stays
+     *     in place; stable elements must be in the same order in both arrays
+     * @param changed for each target index, whether the matched elements
+     *     differ
+     */
+    private void generateArrayEdits(final Walk walk,
+        final JsonPointer pointer, final JsonArray source,
+        final JsonArray target, final int[] origins, final boolean[] stable,
+        final boolean[] changed)
+    {
+        final int sourceSize = source.size();
+        final int targetSize = target.size();
+
+        final int[] destinations = new int[sourceSize];
+        Arrays.fill(destinations, -1);
+        for (int j = 0; j < targetSize; j++) {
+            if (origins[j] != -1)
+                destinations[origins[j]] = j;
+        }
+
+        // Removals
+        int removedCount = 0;
+        for (int i = 0; i < sourceSize; i++) {
+            if (destinations[i] == -1) {
+                walk.events.elementRemoved(pointer.append(i - removedCount), source.get(i));
+                removedCount++;
+            }
+        }
+
+        // Until it is moved, an element stays before the next stable element
+        // in the source: its place is among the ones before that element's
+        // target index, in source order.
+        final int[] gaps = new int[sourceSize];
+        final int[] gapSizes = new int[targetSize + 1];
+        int nextStable = targetSize;
+        for (int i = sourceSize - 1; i >= 0; i--) {
+            final int j = destinations[i];
+            if (j == -1)
+                continue;
+            if (stable[j]) {
+                nextStable = j;
+            }
+            else {
+                gaps[i] = nextStable;
+                gapSizes[nextStable]++;
+            }
+        }
+
+        final int[] targetPlaces = new int[targetSize];
+        final int[] gapStarts = new int[targetSize + 1];
+        int place = 0;
+        for (int j = 0; j <= targetSize; j++) {
+            gapStarts[j] = place;
+            place += gapSizes[j];
+            if (j < targetSize)
+                targetPlaces[j] = place++;
+        }
+
+        final Positions positions = new Positions(place);
+        final int[] sourcePlaces = new int[sourceSize];
+        for (int i = 0; i < sourceSize; i++) {
+            final int j = destinations[i];
+            if (j == -1)
+                continue;
+            if (stable[j]) {
+                positions.add(targetPlaces[j]);
+            }
+            else {
+                sourcePlaces[i] = gapStarts[gaps[i]]++;
+                positions.add(sourcePlaces[i]);
+            }
+        }
+
+        // Moves and additions
+        for (int j = 0; j < targetSize; j++) {
+            if (stable[j])
+                continue;
+
+            final int i = origins[j];
+            if (i == -1) {
+                final int index = positions.before(targetPlaces[j]);
+                final JsonPointer path = (index == positions.size()) ? pointer.append("-") : pointer.append(index);
+                walk.events.valueAdded(path, target.get(j));
+            }
+            else {
+                final int from = positions.before(sourcePlaces[i]);
+                positions.remove(sourcePlaces[i]);
+                final int to = positions.before(targetPlaces[j]);
+                if (from != to)
+                    walk.events.valueMoved(pointer.append(from), pointer.append(to), source.get(i));
+            }
+            positions.add(targetPlaces[j]);
+        }
+
+        // Changes
+        walk.children(targetSize, (child, j) -> {
+            if (changed[j])
+                generateDiffs(child, pointer.append(j), source.get(origins[j]), target.get(j));
+        });
+    }
+
+    /**
+     * Marks the target indexes of the longest run of matched elements that
+     * appear in the same order in the source (patience sorting, O(n log n)).
+     */
+    private static boolean[] longestIncreasingRun(final int[] origins)
+    {
+        final int size = origins.length;
+        final int[] tails = new int[size];
+        final int[] previous = new int[size];
+        int length = 0;
+
+        for (int j = 0; j < size; j++) {
+            final int i = origins[j];
+            if (i == -1)
+                continue;
+
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (origins[tails[middle]] < i)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+
+            previous[j] = (low > 0) ? tails[low - 1] : -1;
+            tails[low] = j;
+            if (low == length)
+                length++;
+        }
+
+        final boolean[] stable = new boolean[size];
+        for (int j = (length > 0) ? tails[length - 1] : -1; j != -1; j = previous[j])
+            stable[j] = true;
+        return stable;
+    }
+
+    /*
+     * Key of an array element, compared structurally
+     */
+    static final class ArrayKey
+    {
+        private final JsonElement value;
+        private final int hash;
+
+        ArrayKey(final JsonElement value, final int hash)
+        {
+            this.value = value;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj)
+        {
+            if (!(obj instanceof ArrayKey))
+                return false;
+            final ArrayKey other = (ArrayKey)obj;
+            return hash == other.hash && JsonUtil.jsonEquals(value, other.value);
+        }
+    }
+
+    /*
+     * The places elements of an array occupy, in array order; counts the
+     * occupied places before a given one with a Fenwick tree
+     */
+    private static final class Positions
+    {
+        private final int[] tree;
+        private int size;
+
+        Positions(final int places)
+        {
+            tree = new int[places + 1];
+        }
+
+        int size()
+        {
+            return size;
+        }
+
+        void add(final int place)
+        {
+            update(place, 1);
+        }
+
+        void remove(final int place)
+        {
+            update(place, -1);
+        }
+
+        /* Number of occupied places before the given one */
+        int before(final int place)
+        {
+            int count = 0;
+            for (int k = place; k > 0; k -= k & -k)
+                count += tree[k];
+            return count;
+        }
+
+        private void update(final int place, final int delta)
+        {
+            size += delta;
+            for (int k = place + 1; k < tree.length; k += k & -k)
+                tree[k] += delta;
+        }
     }
 
 
     //@VisibleForTesting
     static Map<JsonPointer, JsonElement> getUnchangedValues(
     		final JsonElement source, final JsonElement target)
+    {
+        return new JsonDiff(new DiffOptions()).unchangedValues(JsonPointer.EMPTY, source, target);
+    }
+
+    /*
+     * Collects the values that are equal, at the same pointer, in both
+     * documents.  Containers that differ are kept on a stack until their
+     * children are compared.
+     */
+    private Map<JsonPointer, JsonElement> unchangedValues(final JsonPointer root,
+    		final JsonElement source, final JsonElement target)
     {
         final Map<JsonPointer, JsonElement> ret = new HashMap<>();
-        computeUnchanged(ret, JsonPointer.EMPTY, source, target);
+        final ArrayDeque<Pending> pending = new ArrayDeque<>();
+        computeUnchanged(ret, pending, root, source, target);
+
+        while (!pending.isEmpty()) {
+            final Pending pair = pending.pop();
+            if (pair.source.isJsonObject()) {
+                final JsonObject second = (JsonObject)pair.target;
+                for (final Map.Entry<String, JsonElement> entry : ((JsonObject)pair.source).entrySet()) {
+                    final JsonElement value = second.get(entry.getKey());
+                    if (value != null)
+                        computeUnchanged(ret, pending, pair.pointer.append(entry.getKey()),
+                            entry.getValue(), value);
+                }
+            }
+            else {
+                final JsonArray first = (JsonArray)pair.source;
+                final JsonArray second = (JsonArray)pair.target;
+                final int size = Math.min(first.size(), second.size());
+                for (int i = 0; i < size; i++)
+                    computeUnchanged(ret, pending, pair.pointer.append(i), first.get(i),
+                        second.get(i));
+            }
+        }
         return ret;
     }
 
-    private static void computeUnchanged(final Map<JsonPointer, JsonElement> ret,
-        final JsonPointer pointer, final JsonElement first, final JsonElement second)
+    private void computeUnchanged(final Map<JsonPointer, JsonElement> ret,
+        final ArrayDeque<Pending> pending, final JsonPointer pointer,
+        final JsonElement first, final JsonElement second)
     {
-        if (JsonUtil.jsonEquals(first, second)) {
+        if (ignoring && options.isIgnored(pointer))
+            return;
+        if (unchanged(pointer, first, second)) {
             ret.put(pointer, second);
             return;
         }
@@ -184,42 +1111,32 @@ public final class JsonDiff
         if (firstType != secondType)
             return; // nothing in common
 
-        // We know they are both the same type, so...
+        // Sequence and keyed diffs shift indexes, so pointers into the array
+        // would not be valid sources for copies:
+        if (firstType == ElementType.ARRAY
+                && (options.getArrayStrategy() == DiffOptions.ArrayStrategy.SEQUENCE
+                    || arrayKey(pointer) != null))
+            return;
 
-        switch (firstType) {
-            case OBJECT:
-                computeObject(ret, pointer, (JsonObject)first, (JsonObject)second);
-                break;
-            case ARRAY:
-                computeArray(ret, pointer, (JsonArray)first, (JsonArray)second);
-            default:
-                /* nothing */
-        }
+        if (firstType == ElementType.OBJECT || firstType == ElementType.ARRAY)
+            pending.push(new Pending(pointer, first, second));
     }
 
-    private static void computeObject(final Map<JsonPointer, JsonElement> ret,
-        final JsonPointer pointer, final JsonObject source,
-        final JsonObject target)
+    /*
+     * Containers at the same pointer in both documents, whose children
+     * remain to be compared
+     */
+    private static final class Pending
     {
-        final Set<String> firstFields = JsonUtil.propertyNames(source);
+        final JsonPointer pointer;
+        final JsonElement source;
+        final JsonElement target;
 
-        for (String name : firstFields) {
-            
-            if (!target.has(name))
-                continue;
-            
-            computeUnchanged(ret, pointer.append(name), source.get(name),
-                target.get(name));
+        Pending(final JsonPointer pointer, final JsonElement source, final JsonElement target)
+        {
+            this.pointer = pointer;
+            this.source = source;
+            this.target = target;
         }
     }
-
-    private static void computeArray(final Map<JsonPointer, JsonElement> ret,
-        final JsonPointer pointer, final JsonArray source, final JsonArray target)
-    {
-        final int size = Math.min(source.size(), target.size());
-
-        for (int i = 0; i < size; i++)
-            computeUnchanged(ret, pointer.append(i), source.get(i),
-                target.get(i));
-    }
 }
@@ -0,0 +1,163 @@
+package com.google.gson.patch.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.gson.JsonArray;
+
+/**
+ * Longest common subsequence of two arrays, using Myers' O(ND) algorithm
+ *
+ * <p>See E. Myers, "An O(ND) Difference Algorithm and Its Variations" (1986).
+ * Elements are compared through their {@link StructuralHashes structural
+ * hash} first.  The common prefix and suffix are matched before the
+ * algorithm runs.</p>
+ */
+final class SequenceDiff
+{
+
+	private final JsonArray source;
+	private final JsonArray target;
+	private final StructuralHashes hashes;
+
+	private final int start;
+	private final int[] sourceHashes;
+	private final int[] targetHashes;
+
+	private SequenceDiff(final JsonArray source, final JsonArray target, final StructuralHashes hashes,
+			final int start, final int sourceEnd, final int targetEnd)
+	{
+		this.source = source;
+		this.target = target;
+		this.hashes = hashes;
+		this.start = start;
+
+		sourceHashes = new int[sourceEnd - start];
+		for (int i = 0; i < sourceHashes.length; i++)
+			sourceHashes[i] = hashes.hash(source.get(start + i));
+
+		targetHashes = new int[targetEnd - start];
+		for (int i = 0; i < targetHashes.length; i++)
+			targetHashes[i] = hashes.hash(target.get(start + i));
+	}
+
+	/**
+	 * Matches the elements of both arrays.
+	 *
+	 * @return for each source index, the index of the equal target element it
+	 *     is matched with, or -1 if it is not part of the common subsequence;
+	 *     {@code null} if the arrays differ by more than {@code editLimit}
+	 *     insertions and removals
+	 */
+	static int[] match(final JsonArray source, final JsonArray target,
+			final StructuralHashes hashes, final int editLimit)
+	{
+		final int sourceSize = source.size();
+		final int targetSize = target.size();
+		final int[] matches = new int[sourceSize];
+		Arrays.fill(matches, -1);
+
+		//common prefix and suffix:
+		int prefix = 0;
+		while (prefix < sourceSize && prefix < targetSize
+				&& hashes.equivalent(source.get(prefix), target.get(prefix))) {
+			matches[prefix] = prefix;
+			prefix++;
+		}
+
+		int sourceEnd = sourceSize;
+		int targetEnd = targetSize;
+		while (sourceEnd > prefix && targetEnd > prefix
+				&& hashes.equivalent(source.get(sourceEnd - 1), target.get(targetEnd - 1))) {
+			sourceEnd--;
+			targetEnd--;
+			matches[sourceEnd] = targetEnd;
+		}
+
+		if (sourceEnd - prefix + targetEnd - prefix == 0)
+			return matches;
+
+		SequenceDiff diff = new SequenceDiff(source, target, hashes, prefix, sourceEnd, targetEnd);
+		return diff.run(matches, editLimit) ? matches : null;
+	}
+
+	private boolean equal(final int x, final int y)
+	{
+		return sourceHashes[x] == targetHashes[y]
+				&& hashes.equivalent(source.get(start + x), target.get(start + y));
+	}
+
+	private boolean run(final int[] matches, final int editLimit)
+	{
+		final int n = sourceHashes.length;
+		final int m = targetHashes.length;
+		final int max = Math.min(n + m, editLimit);
+
+		//v[offset + k] is the furthest x reached on diagonal k:
+		final int offset = max + 1;
+		final int[] v = new int[2 * max + 3];
+
+		//trace.get(d)[k + d] is v[offset + k] after step d:
+		final List<int[]> trace = new ArrayList<>();
+
+		for (int d = 0; d <= max; d++) {
+			for (int k = -d; k <= d; k += 2) {
+				int x;
+				if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]))
+					x = v[offset + k + 1];
+				else
+					x = v[offset + k - 1] + 1;
+
+				int y = x - k;
+				while (x < n && y < m && equal(x, y)) {
+					x++;
+					y++;
+				}
+				v[offset + k] = x;
+
+				if (x >= n && y >= m) {
+					trace.add(Arrays.copyOfRange(v, offset - d, offset + d + 1));
+					backtrack(trace, d, n, m, matches);
+					return true;
+				}
+			}
+			trace.add(Arrays.copyOfRange(v, offset - d, offset + d + 1));
+		}
+
+		return false;
+	}
+
+	private void backtrack(final List<int[]> trace, final int edits, int x, int y, final int[] matches)
+	{
+		for (int d = edits; d > 0; d--) {
+			final int[] previous = trace.get(d - 1);
+			final int k = x - y;
+
+			final int previousK;
+			if (k == -d || (k != d && previous[k - 1 + d - 1] < previous[k + 1 + d - 1]))
+				previousK = k + 1;
+			else
+				previousK = k - 1;
+
+			final int previousX = previous[previousK + d - 1];
+			final int previousY = previousX - previousK;
+
+			while (x > previousX && y > previousY) {
+				x--;
+				y--;
+				matches[start + x] = start + y;
+			}
+
+			x = previousX;
+			y = previousY;
+		}
+
+		while (x > 0 && y > 0) {
+			x--;
+			y--;
+			matches[start + x] = start + y;
+		}
+	}
+
+}
@@ -0,0 +1,442 @@
+package com.google.gson.patch.diff;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.AddOperation;
+import com.google.gson.patch.JsonPatchOperation;
+import com.google.gson.patch.JsonUtil;
+import com.google.gson.patch.RemoveOperation;
+import com.google.gson.patch.ReplaceOperation;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Diffs two documents read from {@link JsonReader}s in parallel, without
+ * building either of them as a tree
+ *
+ * <p>Both documents are walked in lockstep and operations are sent to a
+ * {@link DiffSink} as soon as they are known.  Only the following is held in
+ * memory:</p>
+ *
+ * <ul>
+ *     <li>the values of object members that come in a different order in
+ *     both documents, until the member is found on the other side;</li>
+ *     <li>a window of array elements on both sides, used to recognize
+ *     inserted and removed elements;</li>
+ *     <li>added and replacing values, which the operations carry anyway.</li>
+ * </ul>
+ *
+ * <p>The first two are bounded by {@link #getMaxBufferedNodes()} JSON
+ * values (plus the array element being read).  Beyond the cap, an object
+ * member whose counterpart is not known yet is removed, and added back
+ * with its target value if it shows up later; array elements are compared
+ * index by index.  Memory therefore depends on the depth of the documents
+ * and on the size of the changes, not on the size of the documents.</p>
+ *
+ * <p>Array elements are compared as trees (see {@link JsonDiff}), so very
+ * large elements should be avoided.  The patch is correct but usually
+ * larger than the one {@link JsonDiff} computes from both trees: copies and
+ * moves are not detected.</p>
+ */
+public final class StreamingJsonDiff
+{
+
+	public static final int DEFAULT_MAX_BUFFERED_NODES = 100000;
+	public static final int DEFAULT_ARRAY_WINDOW = 64;
+
+	// -------------------------------------------------------------- Properties
+
+	private int maxBufferedNodes = DEFAULT_MAX_BUFFERED_NODES;
+	private int arrayWindow = DEFAULT_ARRAY_WINDOW;
+
+	// --------------------------------------------------------------- Accessors
+
+	/**
+	 * Returns the number of JSON values (containers and primitives) that may
+	 * be buffered to align object members and array elements
+	 */
+	public int getMaxBufferedNodes() {
+		return maxBufferedNodes;
+	}
+	public void setMaxBufferedNodes(int maxBufferedNodes) {
+		if (maxBufferedNodes < 0)
+			throw new IllegalArgumentException("maxBufferedNodes may not be negative");
+
+		this.maxBufferedNodes = maxBufferedNodes;
+	}
+
+	/**
+	 * Returns how many elements ahead an inserted or removed array element is
+	 * looked for
+	 */
+	public int getArrayWindow() {
+		return arrayWindow;
+	}
+	public void setArrayWindow(int arrayWindow) {
+		if (arrayWindow < 1)
+			throw new IllegalArgumentException("arrayWindow must be positive");
+
+		this.arrayWindow = arrayWindow;
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	/**
+	 * Reads one value from each reader and sends the operations turning the
+	 * source value into the target value to the sink.
+	 */
+	public void diff(JsonReader source, JsonReader target, DiffSink sink) throws IOException {
+		if (source == null)
+			throw new IllegalArgumentException("source may not be NULL");
+		if (target == null)
+			throw new IllegalArgumentException("target may not be NULL");
+		if (sink == null)
+			throw new IllegalArgumentException("sink may not be NULL");
+
+		new Walk(sink).diffValue(JsonPointer.EMPTY, source, target);
+	}
+
+	/*
+	 * A buffered value and the number of nodes it holds
+	 */
+	private static final class Buffered
+	{
+		final JsonElement value;
+		final int nodes;
+
+		Buffered(JsonElement value, int nodes) {
+			this.value = value;
+			this.nodes = nodes;
+		}
+	}
+
+	/*
+	 * The state of one diff
+	 */
+	private final class Walk
+	{
+		private final DiffSink sink;
+		private int buffered;
+
+		Walk(DiffSink sink) {
+			this.sink = sink;
+		}
+
+		void diffValue(JsonPointer pointer, JsonReader source, JsonReader target) throws IOException {
+			final JsonToken sourceToken = source.peek();
+			final JsonToken targetToken = target.peek();
+
+			if (sourceToken == JsonToken.BEGIN_OBJECT && targetToken == JsonToken.BEGIN_OBJECT) {
+				diffObjects(pointer, source, target);
+			}
+			else if (sourceToken == JsonToken.BEGIN_ARRAY && targetToken == JsonToken.BEGIN_ARRAY) {
+				diffArrays(pointer, source, target);
+			}
+			else if (sourceToken == JsonToken.BEGIN_OBJECT || sourceToken == JsonToken.BEGIN_ARRAY) {
+				source.skipValue();
+				sink.operation(new ReplaceOperation(pointer, JsonUtil.parse(target)));
+			}
+			else {
+				final JsonElement sourceValue = JsonUtil.parse(source);
+				final JsonElement targetValue = JsonUtil.parse(target);
+				if (!JsonUtil.jsonEquals(sourceValue, targetValue))
+					sink.operation(new ReplaceOperation(pointer, targetValue));
+			}
+		}
+
+		// ----------------------------------------------------------- Objects
+
+		private void diffObjects(JsonPointer pointer, JsonReader source, JsonReader target) throws IOException {
+			final Map<String, Buffered> sourcePending = new LinkedHashMap<>();
+			final Map<String, Buffered> targetPending = new LinkedHashMap<>();
+			// members removed from the source / added from the target already:
+			final Set<String> removed = new HashSet<>();
+			final Set<String> added = new HashSet<>();
+
+			source.beginObject();
+			target.beginObject();
+			while (source.hasNext() || target.hasNext()) {
+				final String sourceName = source.hasNext() ? source.nextName() : null;
+				final String targetName = target.hasNext() ? target.nextName() : null;
+
+				if (sourceName != null && sourceName.equals(targetName)) {
+					diffValue(pointer.append(sourceName), source, target);
+					continue;
+				}
+
+				if (sourceName != null) {
+					final JsonPointer path = pointer.append(sourceName);
+					final Buffered other = targetPending.remove(sourceName);
+					if (other != null) {
+						release(other);
+						diffValue(path, source, reader(other.value));
+					}
+					else if (added.remove(sourceName)) {
+						source.skipValue();
+					}
+					else {
+						final Buffered value = readBounded(source);
+						if (value != null) {
+							sourcePending.put(sourceName, value);
+						}
+						else {
+							sink.operation(new RemoveOperation(path));
+							removed.add(sourceName);
+						}
+					}
+				}
+
+				if (targetName != null) {
+					final JsonPointer path = pointer.append(targetName);
+					final Buffered other = sourcePending.remove(targetName);
+					if (other != null) {
+						release(other);
+						diffValue(path, reader(other.value), target);
+					}
+					else {
+						final JsonElement value = JsonUtil.parse(target);
+						final int nodes = countNodes(value);
+						final boolean wasRemoved = removed.remove(targetName);
+						if (!wasRemoved && buffered + nodes <= maxBufferedNodes) {
+							buffered += nodes;
+							targetPending.put(targetName, new Buffered(value, nodes));
+						}
+						else {
+							sink.operation(new AddOperation(path, value));
+							if (!wasRemoved)
+								added.add(targetName);
+						}
+					}
+				}
+			}
+			source.endObject();
+			target.endObject();
+
+			for (Map.Entry<String, Buffered> entry : sourcePending.entrySet()) {
+				release(entry.getValue());
+				sink.operation(new RemoveOperation(pointer.append(entry.getKey())));
+			}
+			for (Map.Entry<String, Buffered> entry : targetPending.entrySet()) {
+				release(entry.getValue());
+				sink.operation(new AddOperation(pointer.append(entry.getKey()), entry.getValue().value));
+			}
+		}
+
+		// ------------------------------------------------------------ Arrays
+
+		/*
+		 * Elements are compared from the head of two windows.  When the heads
+		 * differ, the windows are filled: if the target head is found ahead
+		 * in the source, the source elements before it were removed; if the
+		 * source head is found ahead in the target, the target elements before
+		 * it were inserted; otherwise the heads are diffed with each other.
+		 */
+		private void diffArrays(JsonPointer pointer, JsonReader source, JsonReader target) throws IOException {
+			final Deque<Buffered> sourceWindow = new ArrayDeque<>();
+			final Deque<Buffered> targetWindow = new ArrayDeque<>();
+			int index = 0;
+
+			source.beginArray();
+			target.beginArray();
+			while (true) {
+				if (sourceWindow.isEmpty() && source.hasNext())
+					sourceWindow.add(read(source));
+				if (targetWindow.isEmpty() && target.hasNext())
+					targetWindow.add(read(target));
+
+				if (sourceWindow.isEmpty()) {
+					while (!targetWindow.isEmpty() || target.hasNext()) {
+						final Buffered element = targetWindow.isEmpty() ? read(target) : targetWindow.poll();
+						release(element);
+						sink.operation(new AddOperation(pointer.append("-"), element.value));
+					}
+					break;
+				}
+				if (targetWindow.isEmpty()) {
+					while (!sourceWindow.isEmpty()) {
+						release(sourceWindow.poll());
+						sink.operation(new RemoveOperation(pointer.append(index)));
+					}
+					while (source.hasNext()) {
+						source.skipValue();
+						sink.operation(new RemoveOperation(pointer.append(index)));
+					}
+					break;
+				}
+
+				final Buffered sourceHead = sourceWindow.peek();
+				final Buffered targetHead = targetWindow.peek();
+				if (JsonUtil.jsonEquals(sourceHead.value, targetHead.value)) {
+					release(sourceWindow.poll());
+					release(targetWindow.poll());
+					index++;
+					continue;
+				}
+
+				fill(sourceWindow, source);
+				fill(targetWindow, target);
+				final int removedCount = indexOf(sourceWindow, targetHead.value);
+				final int insertedCount = indexOf(targetWindow, sourceHead.value);
+
+				if (removedCount > 0 && (insertedCount < 0 || removedCount <= insertedCount)) {
+					for (int i = 0; i < removedCount; i++) {
+						release(sourceWindow.poll());
+						sink.operation(new RemoveOperation(pointer.append(index)));
+					}
+				}
+				else if (insertedCount > 0) {
+					for (int i = 0; i < insertedCount; i++) {
+						final Buffered element = targetWindow.poll();
+						release(element);
+						sink.operation(new AddOperation(pointer.append(index++), element.value));
+					}
+				}
+				else {
+					release(sourceWindow.poll());
+					release(targetWindow.poll());
+					final JsonPointer path = pointer.append(index++);
+					for (JsonPatchOperation op : new JsonDiff(new DiffOptions()).run(path, sourceHead.value, targetHead.value).getOperations())
+						sink.operation(op);
+				}
+			}
+			source.endArray();
+			target.endArray();
+		}
+
+		private void fill(Deque<Buffered> window, JsonReader reader) throws IOException {
+			while (window.size() < arrayWindow && buffered < maxBufferedNodes && reader.hasNext())
+				window.add(read(reader));
+		}
+
+		private int indexOf(Deque<Buffered> window, JsonElement value) {
+			int index = 0;
+			for (Iterator<Buffered> it = window.iterator(); it.hasNext(); index++) {
+				if (JsonUtil.jsonEquals(it.next().value, value))
+					return index;
+			}
+			return -1;
+		}
+
+		// ---------------------------------------------------------- Buffering
+
+		/*
+		 * Reads a value, whatever the cap
+		 */
+		private Buffered read(JsonReader reader) throws IOException {
+			final JsonElement value = JsonUtil.parse(reader);
+			final int nodes = countNodes(value);
+			buffered += nodes;
+			return new Buffered(value, nodes);
+		}
+
+		/*
+		 * Reads a value if it fits under the cap; otherwise skips it and
+		 * returns null
+		 */
+		private Buffered readBounded(JsonReader reader) throws IOException {
+			final int[] nodes = new int[1];
+			final JsonElement value = readBounded(reader, nodes, maxBufferedNodes - buffered);
+			if (value == null)
+				return null;
+
+			buffered += nodes[0];
+			return new Buffered(value, nodes[0]);
+		}
+
+		private JsonElement readBounded(JsonReader reader, int[] nodes, int limit) throws IOException {
+			if (++nodes[0] > limit) {
+				reader.skipValue();
+				return null;
+			}
+
+			switch (reader.peek()) {
+			case BEGIN_ARRAY:
+				final JsonArray array = new JsonArray();
+				reader.beginArray();
+				while (reader.hasNext()) {
+					final JsonElement element = readBounded(reader, nodes, limit);
+					if (element == null) {
+						while (reader.hasNext())
+							reader.skipValue();
+						reader.endArray();
+						return null;
+					}
+					array.add(element);
+				}
+				reader.endArray();
+				return array;
+			case BEGIN_OBJECT:
+				final JsonObject object = new JsonObject();
+				reader.beginObject();
+				while (reader.hasNext()) {
+					final String name = reader.nextName();
+					final JsonElement member = readBounded(reader, nodes, limit);
+					if (member == null) {
+						while (reader.hasNext()) {
+							reader.nextName();
+							reader.skipValue();
+						}
+						reader.endObject();
+						return null;
+					}
+					object.add(name, member);
+				}
+				reader.endObject();
+				return object;
+			default:
+				return JsonUtil.parse(reader);
+			}
+		}
+
+		private void release(Buffered value) {
+			buffered -= value.nodes;
+		}
+	}
+
+	/*
+	 * Reads a buffered value again, to diff it with a value being streamed
+	 */
+	private static JsonReader reader(JsonElement value) {
+		final JsonReader reader = new JsonReader(new StringReader(value.toString()));
+		// as written by toString(), which allows NaN and infinities
+		reader.setLenient(true);
+		return reader;
+	}
+
+	/*
+	 * Counts from an explicit stack, so that deep values can't overflow the
+	 * call stack
+	 */
+	private static int countNodes(JsonElement element) {
+		final Deque<JsonElement> pending = new ArrayDeque<>();
+		pending.push(element);
+
+		int count = 0;
+		while (!pending.isEmpty()) {
+			final JsonElement node = pending.pop();
+			count++;
+			if (node.isJsonArray()) {
+				for (JsonElement child : node.getAsJsonArray())
+					pending.push(child);
+			}
+			else if (node.isJsonObject()) {
+				for (Map.Entry<String, JsonElement> entry : node.getAsJsonObject().entrySet())
+					pending.push(entry.getValue());
+			}
+		}
+		return count;
+	}
+
+}
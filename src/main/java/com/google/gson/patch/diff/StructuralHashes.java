@@ -0,0 +1,173 @@
+package com.google.gson.patch.diff;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.JsonUtil;
+
+/**
+ * Structural hashes of the containers of the documents being diffed
+ *
+ * <p>The hash of a container is computed once, bottom-up, from the hashes of
+ * its children, and remembered by identity; it is the same value as
+ * {@link JsonUtil#jsonHash(JsonElement)}.  Two subtrees whose hashes differ
+ * are known to differ without looking at them, so the diff only has to
+ * compare subtrees in full to confirm a hash match.  As the diff prunes
+ * equal subtrees at the highest level where they match, every node is
+ * compared at most once.</p>
+ *
+ * <p>The documents must not be modified while an instance is in use.  Once
+ * both documents have been hashed, the instance is only read, so it may be
+ * shared by the tasks of a parallel diff.</p>
+ */
+final class StructuralHashes
+{
+
+	/* Above this many hashes, the memo is reallocated rather than cleared */
+	static final int MAX_RETAINED = 1 << 14;
+
+	private Map<JsonElement, Integer> hashes = new IdentityHashMap<>();
+
+	/**
+	 * Returns the structural hash of the element.  Containers not hashed yet
+	 * are hashed from an explicit stack, children first, so that the depth of
+	 * the documents does not matter.
+	 */
+	int hash(final JsonElement element)
+	{
+		if (element.isJsonPrimitive() || element.isJsonNull())
+			return JsonUtil.jsonHash(element);
+
+		final Integer known = hashes.get(element);
+		if (known != null)
+			return known;
+
+		// A container is hashed once none of its children is left to hash
+		final ArrayDeque<JsonElement> stack = new ArrayDeque<>();
+		stack.push(element);
+		while (!stack.isEmpty()) {
+			final JsonElement top = stack.peek();
+			boolean ready = true;
+			if (top.isJsonArray()) {
+				for (final JsonElement child : (JsonArray)top)
+					ready &= hashed(child, stack);
+			}
+			else {
+				for (final Map.Entry<String, JsonElement> entry : ((JsonObject)top).entrySet())
+					ready &= hashed(entry.getValue(), stack);
+			}
+			if (!ready)
+				continue;
+
+			stack.pop();
+			if (!hashes.containsKey(top))
+				hashes.put(top, combine(top));
+		}
+		return hashes.get(element);
+	}
+
+	/* Hash of a container whose children are all hashed */
+	private int combine(final JsonElement element)
+	{
+		int hash;
+		if (element.isJsonArray()) {
+			hash = 1;
+			for (final JsonElement child : (JsonArray)element)
+				hash = 31 * hash + known(child);
+		}
+		else {
+			hash = 2;
+			for (final Map.Entry<String, JsonElement> entry : ((JsonObject)element).entrySet())
+				hash += entry.getKey().hashCode() ^ known(entry.getValue());
+		}
+		return hash;
+	}
+
+	private int known(final JsonElement element)
+	{
+		if (element.isJsonPrimitive() || element.isJsonNull())
+			return JsonUtil.jsonHash(element);
+		return hashes.get(element);
+	}
+
+	/* Tells whether the element is hashed, and pushes it if it is not */
+	private boolean hashed(final JsonElement element, final ArrayDeque<JsonElement> stack)
+	{
+		if (element.isJsonPrimitive() || element.isJsonNull() || hashes.containsKey(element))
+			return true;
+		stack.push(element);
+		return false;
+	}
+
+	/**
+	 * Forgets every hash.  The memo keeps its capacity for the next documents,
+	 * unless it grew past {@link #MAX_RETAINED} hashes: clearing walks the
+	 * whole table, which small documents should not pay for after a large
+	 * one.
+	 */
+	void clear()
+	{
+		if (hashes.size() > MAX_RETAINED)
+			hashes = new IdentityHashMap<>();
+		else
+			hashes.clear();
+	}
+
+	/**
+	 * Tells whether both elements are equal, as defined by
+	 * {@link JsonUtil#jsonEquals}.  Elements with different hashes are not
+	 * compared, and neither are children with different hashes; containers
+	 * are compared from an explicit stack.
+	 */
+	boolean equivalent(final JsonElement first, final JsonElement second)
+	{
+		if (first == second)
+			return true;
+		if (hash(first) != hash(second))
+			return false;
+		if (!first.isJsonObject() && !first.isJsonArray())
+			return JsonUtil.jsonEquals(first, second);
+
+		final ArrayDeque<JsonElement> pending = new ArrayDeque<>();
+		pending.push(second);
+		pending.push(first);
+		while (!pending.isEmpty()) {
+			final JsonElement a = pending.pop();
+			final JsonElement b = pending.pop();
+			if (a == b)
+				continue;
+			if (known(a) != known(b))
+				return false;
+
+			if (a.isJsonArray()) {
+				if (!b.isJsonArray() || ((JsonArray)a).size() != ((JsonArray)b).size())
+					return false;
+				for (int i = 0; i < ((JsonArray)a).size(); i++) {
+					pending.push(((JsonArray)b).get(i));
+					pending.push(((JsonArray)a).get(i));
+				}
+			}
+			else if (a.isJsonObject()) {
+				// names are unique, so the sizes and the lookups check the names
+				if (!b.isJsonObject() || ((JsonObject)a).size() != ((JsonObject)b).size())
+					return false;
+				for (final Map.Entry<String, JsonElement> entry : ((JsonObject)a).entrySet()) {
+					final JsonElement value = ((JsonObject)b).get(entry.getKey());
+					if (value == null)
+						return false;
+					pending.push(value);
+					pending.push(entry.getValue());
+				}
+			}
+			else if (!JsonUtil.jsonEquals(a, b)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,354 @@
+package com.google.gson.patch.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.JsonUtil;
+import com.google.gson.pointer.JsonPointer;
+
+/**
+ * Three-way merge of two documents derived from a common base
+ *
+ * <p>The three documents are walked together, once.  A subtree that is
+ * equal in the base and on one side, as told by its {@link StructuralHashes
+ * structural hash}, is taken from the other side without looking into it.
+ * Objects are merged member by member.  Arrays are aligned by the key set
+ * with {@link DiffOptions#setArrayKey(com.google.gson.pointer.JsonPointerPattern, JsonPointer)},
+ * or else by the longest common subsequence of each side with the base;
+ * runs of elements changed on both sides are merged element by element when
+ * they have the same length.</p>
+ *
+ * <p>When both sides change the same value differently, "ours" wins and the
+ * pointer of the value in the merged document is recorded as a conflict.  A
+ * value changed on one side and removed on the other is kept, whichever
+ * side changed it, and recorded as a conflict too.</p>
+ *
+ * <p>The merged document shares no value with the inputs, which are left
+ * untouched.</p>
+ */
+public final class ThreeWayMerge
+{
+
+	/**
+	 * The merged document, and where both sides conflicted
+	 */
+	public static final class Result
+	{
+		private final JsonElement merged;
+		private final List<JsonPointer> conflicts;
+
+		Result(JsonElement merged, List<JsonPointer> conflicts) {
+			this.merged = merged;
+			this.conflicts = Collections.unmodifiableList(conflicts);
+		}
+
+		public JsonElement getMerged() {
+			return merged;
+		}
+
+		public boolean hasConflicts() {
+			return !conflicts.isEmpty();
+		}
+
+		/**
+		 * Returns the pointers, in the merged document, of the values both
+		 * sides changed differently, or one side changed and the other
+		 * removed.  A pointer may not resolve when the conflicting run of
+		 * array elements was removed by "ours".
+		 */
+		public List<JsonPointer> getConflicts() {
+			return conflicts;
+		}
+	}
+
+	// -------------------------------------------------------------- Properties
+
+	private final DiffOptions options;
+	private final StructuralHashes hashes = new StructuralHashes();
+	private final List<JsonPointer> conflicts = new ArrayList<>();
+
+	// ------------------------------------------------------------ Constructors
+
+	private ThreeWayMerge(DiffOptions options) {
+		this.options = options;
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	public static Result merge(JsonElement base, JsonElement ours, JsonElement theirs) {
+		return merge(base, ours, theirs, new DiffOptions());
+	}
+
+	/**
+	 * Merges the changes made to {@code base} in {@code ours} and in {@code
+	 * theirs}
+	 *
+	 * @param options the array keys and the {@link
+	 *     DiffOptions#getSequenceEditLimit() sequence edit limit} are used
+	 */
+	public static Result merge(JsonElement base, JsonElement ours, JsonElement theirs,
+			DiffOptions options)
+	{
+		if (base == null)
+			throw new IllegalArgumentException("base may not be NULL");
+		if (ours == null)
+			throw new IllegalArgumentException("ours may not be NULL");
+		if (theirs == null)
+			throw new IllegalArgumentException("theirs may not be NULL");
+		if (options == null)
+			throw new IllegalArgumentException("options may not be NULL");
+
+		ThreeWayMerge merge = new ThreeWayMerge(options);
+		JsonElement merged = merge.merge(JsonPointer.EMPTY, base, ours, theirs);
+		return new Result(merged, merge.conflicts);
+	}
+
+	private JsonElement merge(JsonPointer pointer, JsonElement base, JsonElement ours,
+			JsonElement theirs)
+	{
+		if (hashes.equivalent(base, ours))
+			return JsonUtil.deepCopy(theirs);
+		if (hashes.equivalent(base, theirs) || hashes.equivalent(ours, theirs))
+			return JsonUtil.deepCopy(ours);
+
+		if (base.isJsonObject() && ours.isJsonObject() && theirs.isJsonObject())
+			return mergeObjects(pointer, (JsonObject)base, (JsonObject)ours, (JsonObject)theirs);
+		if (base.isJsonArray() && ours.isJsonArray() && theirs.isJsonArray()) {
+			JsonPointer key = options.hasArrayKeys() ? options.getArrayKey(pointer) : null;
+			return key != null
+					? mergeKeyed(pointer, (JsonArray)base, (JsonArray)ours, (JsonArray)theirs, key)
+					: mergeSequences(pointer, (JsonArray)base, (JsonArray)ours, (JsonArray)theirs);
+		}
+
+		conflicts.add(pointer);
+		return JsonUtil.deepCopy(ours);
+	}
+
+	/*
+	 * Members keep the order of "ours", followed by those only "theirs" has
+	 */
+	private JsonObject mergeObjects(JsonPointer pointer, JsonObject base, JsonObject ours,
+			JsonObject theirs)
+	{
+		JsonObject merged = new JsonObject();
+		for (Map.Entry<String, JsonElement> entry : ours.entrySet()) {
+			String name = entry.getKey();
+			JsonElement ourValue = entry.getValue();
+			JsonElement baseValue = base.get(name);
+			JsonElement theirValue = theirs.get(name);
+			JsonPointer child = pointer.append(name);
+
+			if (baseValue == null) {
+				if (theirValue != null && !hashes.equivalent(ourValue, theirValue))
+					conflicts.add(child);
+				merged.add(name, JsonUtil.deepCopy(ourValue));
+			}
+			else if (theirValue == null) {
+				// removed by "theirs", unless changed by "ours"
+				if (!hashes.equivalent(baseValue, ourValue)) {
+					conflicts.add(child);
+					merged.add(name, JsonUtil.deepCopy(ourValue));
+				}
+			}
+			else
+				merged.add(name, merge(child, baseValue, ourValue, theirValue));
+		}
+
+		for (Map.Entry<String, JsonElement> entry : theirs.entrySet()) {
+			String name = entry.getKey();
+			if (ours.has(name))
+				continue;
+
+			// added by "theirs", or removed by "ours" unless changed by "theirs"
+			JsonElement baseValue = base.get(name);
+			if (baseValue != null && hashes.equivalent(baseValue, entry.getValue()))
+				continue;
+			if (baseValue != null)
+				conflicts.add(pointer.append(name));
+			merged.add(name, JsonUtil.deepCopy(entry.getValue()));
+		}
+		return merged;
+	}
+
+	/*
+	 * Elements keep the order of "ours"; each element only "theirs" added is
+	 * inserted right after the closest preceding element both sides have.
+	 * Elements without a key, and the later elements sharing a key, are
+	 * never matched: those of "ours" are kept, and those of "theirs" are
+	 * added unless the base has an equal element.
+	 */
+	private JsonArray mergeKeyed(JsonPointer pointer, JsonArray base, JsonArray ours,
+			JsonArray theirs, JsonPointer key)
+	{
+		Map<JsonDiff.ArrayKey, JsonElement> baseElements = new HashMap<>();
+		Set<JsonDiff.ArrayKey> unkeyedBase = new HashSet<>();
+		for (JsonElement element : base) {
+			JsonDiff.ArrayKey id = keyOf(element, key);
+			if (id == null || baseElements.putIfAbsent(id, element) != null)
+				unkeyedBase.add(new JsonDiff.ArrayKey(element, hashes.hash(element)));
+		}
+
+		Map<JsonDiff.ArrayKey, Integer> ourIndexes = new HashMap<>();
+		for (int i = 0; i < ours.size(); i++) {
+			JsonDiff.ArrayKey id = keyOf(ours.get(i), key);
+			if (id != null)
+				ourIndexes.putIfAbsent(id, i);
+		}
+
+		// "theirs" elements to insert before each element of "ours"
+		List<List<JsonElement>> insertions = new ArrayList<>(ours.size() + 1);
+		for (int i = 0; i <= ours.size(); i++)
+			insertions.add(Collections.<JsonElement>emptyList());
+		Map<JsonDiff.ArrayKey, JsonElement> theirElements = new HashMap<>();
+		// "theirs" elements changed by "theirs" and removed by "ours"
+		Map<JsonElement, Boolean> kept = new IdentityHashMap<>();
+		int next = 0;
+		for (JsonElement element : theirs) {
+			JsonDiff.ArrayKey id = keyOf(element, key);
+			if (id != null && theirElements.putIfAbsent(id, element) == null) {
+				Integer ourIndex = ourIndexes.get(id);
+				if (ourIndex != null) {
+					next = ourIndex + 1;
+					continue;
+				}
+				JsonElement baseElement = baseElements.get(id);
+				if (baseElement != null) {
+					// removed by "ours", unless changed by "theirs"
+					if (hashes.equivalent(baseElement, element))
+						continue;
+					kept.put(element, Boolean.TRUE);
+				}
+			}
+			else if (unkeyedBase.contains(new JsonDiff.ArrayKey(element, hashes.hash(element))))
+				continue;
+
+			if (insertions.get(next).isEmpty())
+				insertions.set(next, new ArrayList<JsonElement>());
+			insertions.get(next).add(element);
+		}
+
+		JsonArray merged = new JsonArray();
+		for (int i = 0; i <= ours.size(); i++) {
+			for (JsonElement element : insertions.get(i)) {
+				if (kept.containsKey(element))
+					conflicts.add(pointer.append(merged.size()));
+				merged.add(JsonUtil.deepCopy(element));
+			}
+			if (i == ours.size())
+				break;
+
+			JsonElement element = ours.get(i);
+			JsonDiff.ArrayKey id = keyOf(element, key);
+			JsonPointer child = pointer.append(merged.size());
+			if (id == null || ourIndexes.get(id) != i) {
+				merged.add(JsonUtil.deepCopy(element));
+				continue;
+			}
+
+			JsonElement baseElement = baseElements.get(id);
+			JsonElement theirElement = theirElements.get(id);
+			if (baseElement == null) {
+				if (theirElement != null && !hashes.equivalent(element, theirElement))
+					conflicts.add(child);
+				merged.add(JsonUtil.deepCopy(element));
+			}
+			else if (theirElement == null) {
+				// removed by "theirs", unless changed by "ours"
+				if (!hashes.equivalent(baseElement, element)) {
+					conflicts.add(child);
+					merged.add(JsonUtil.deepCopy(element));
+				}
+			}
+			else
+				merged.add(merge(child, baseElement, element, theirElement));
+		}
+		return merged;
+	}
+
+	//@Nullable
+	private JsonDiff.ArrayKey keyOf(JsonElement element, JsonPointer key) {
+		JsonElement value = key.resolve(element);
+		return value == null ? null : new JsonDiff.ArrayKey(value, hashes.hash(value));
+	}
+
+	/*
+	 * The base elements both sides kept in their common subsequences split
+	 * the arrays into runs, merged one at a time
+	 */
+	private JsonArray mergeSequences(JsonPointer pointer, JsonArray base, JsonArray ours,
+			JsonArray theirs)
+	{
+		int limit = options.getSequenceEditLimit();
+		int[] toOurs = SequenceDiff.match(base, ours, hashes, limit);
+		int[] toTheirs = toOurs == null ? null : SequenceDiff.match(base, theirs, hashes, limit);
+		boolean aligned = toTheirs != null;
+
+		JsonArray merged = new JsonArray();
+		int baseStart = 0;
+		int ourStart = 0;
+		int theirStart = 0;
+		for (int i = 0; i < base.size(); i++) {
+			if (!aligned || toOurs[i] == -1 || toTheirs[i] == -1)
+				continue;
+
+			mergeRuns(pointer, merged, base, baseStart, i, ours, ourStart, toOurs[i],
+					theirs, theirStart, toTheirs[i]);
+			merged.add(JsonUtil.deepCopy(ours.get(toOurs[i])));
+			baseStart = i + 1;
+			ourStart = toOurs[i] + 1;
+			theirStart = toTheirs[i] + 1;
+		}
+		mergeRuns(pointer, merged, base, baseStart, base.size(), ours, ourStart, ours.size(),
+				theirs, theirStart, theirs.size());
+		return merged;
+	}
+
+	private void mergeRuns(JsonPointer pointer, JsonArray merged,
+			JsonArray base, int baseStart, int baseEnd,
+			JsonArray ours, int ourStart, int ourEnd,
+			JsonArray theirs, int theirStart, int theirEnd)
+	{
+		int length = baseEnd - baseStart;
+		if (sameRun(base, baseStart, baseEnd, ours, ourStart, ourEnd))
+			addRun(merged, theirs, theirStart, theirEnd);
+		else if (sameRun(base, baseStart, baseEnd, theirs, theirStart, theirEnd)
+				|| sameRun(ours, ourStart, ourEnd, theirs, theirStart, theirEnd))
+			addRun(merged, ours, ourStart, ourEnd);
+		else if (ourEnd - ourStart == length && theirEnd - theirStart == length) {
+			for (int k = 0; k < length; k++)
+				merged.add(merge(pointer.append(merged.size()), base.get(baseStart + k),
+						ours.get(ourStart + k), theirs.get(theirStart + k)));
+		}
+		else {
+			conflicts.add(pointer.append(merged.size()));
+			addRun(merged, ours, ourStart, ourEnd);
+		}
+	}
+
+	private boolean sameRun(JsonArray first, int firstStart, int firstEnd,
+			JsonArray second, int secondStart, int secondEnd)
+	{
+		if (firstEnd - firstStart != secondEnd - secondStart)
+			return false;
+		for (int k = 0; firstStart + k < firstEnd; k++) {
+			if (!hashes.equivalent(first.get(firstStart + k), second.get(secondStart + k)))
+				return false;
+		}
+		return true;
+	}
+
+	private static void addRun(JsonArray merged, JsonArray array, int start, int end) {
+		for (int k = start; k < end; k++)
+			merged.add(JsonUtil.deepCopy(array.get(k)));
+	}
+
+}
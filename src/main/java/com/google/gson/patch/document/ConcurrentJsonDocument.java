@@ -0,0 +1,506 @@
+package com.google.gson.patch.document;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.AddOperation;
+import com.google.gson.patch.CopyOperation;
+import com.google.gson.patch.DualPathOperation;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchException;
+import com.google.gson.patch.JsonPatchOperation;
+import com.google.gson.patch.JsonUtil;
+import com.google.gson.patch.MoveOperation;
+import com.google.gson.patch.RemoveOperation;
+import com.google.gson.patch.ReplaceOperation;
+import com.google.gson.patch.TestOperation;
+import com.google.gson.patch.mergepatch.JsonMergePatch;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.ReferenceToken;
+
+/**
+ * A JSON document that can be patched and read by many threads at once.
+ *
+ * <p>GSON trees are not thread-safe, so the simplest way to share one is to
+ * guard it with a single lock.  This class instead stripes its locks by the
+ * first reference token of the {@link JsonPointer}s involved.  A patch that
+ * only touches {@code /orders/...} and a patch that only touches
+ * {@code /customers/...} hold different stripes and run in parallel.</p>
+ *
+ * <p>Locking is done in two levels:</p>
+ *
+ * <ul>
+ *     <li>a document lock, held for reading by every ordinary operation and
+ *     for writing by <i>structural</i> patches (those that add or remove
+ *     top-level members, or that touch the whole document);</li>
+ *     <li>a fixed number of stripe locks, selected by the hash of the
+ *     top-level member name, held for writing by patches and for reading by
+ *     pointer reads.</li>
+ * </ul>
+ *
+ * <p><b>Stripes are chosen by the first reference token only.</b>  Patches
+ * to {@code /orders/1} and {@code /orders/2} hold the same stripe and run
+ * one after the other, however far apart they are in the tree; a document
+ * with a single hot top-level member gets no parallelism from this class.
+ * Striping deeper would let two patches replace children of the same
+ * member in place while a reader holds that member, which breaks the
+ * guarantee below.</p>
+ *
+ * <p>Patches are applied copy-on-write, by path copying: before each
+ * operation, the containers on the path it writes to are replaced by
+ * shallow copies, and everything off those paths is shared with the
+ * document.  The copied members are swapped in only if every operation
+ * succeeded.  A patch therefore costs the length of its paths (and the
+ * size of the containers on them), not the size of the members it touches;
+ * a failed patch leaves the document untouched, and readers never see a
+ * half-applied patch.  It also means a value returned by
+ * {@link #get(JsonPointer)} is never modified by this class afterwards;
+ * callers must treat it as read-only (use
+ * {@link JsonUtil#deepCopy(JsonElement)} if you need to modify it).</p>
+ */
+public class ConcurrentJsonDocument {
+
+	public static final int DEFAULT_STRIPES = 64;
+
+	// -------------------------------------------------------------- Properties
+
+	private final ReentrantReadWriteLock documentLock = new ReentrantReadWriteLock();
+	private final ReentrantReadWriteLock [] stripes;
+	private final AtomicLong version = new AtomicLong();
+
+	/**
+	 * The document.  Replaced (never modified) under the document write lock;
+	 * its top-level members are replaced under their stripe write locks.
+	 */
+	private volatile JsonElement root;
+
+	// ------------------------------------------------------------ Constructors
+
+	public ConcurrentJsonDocument(JsonElement document) {
+		this(document, DEFAULT_STRIPES);
+	}
+	public ConcurrentJsonDocument(JsonElement document, int stripeCount) {
+		if (document == null)
+			throw new IllegalArgumentException("document may not be NULL");
+		if (stripeCount < 1)
+			throw new IllegalArgumentException("stripeCount must be positive");
+
+		//round up to a power of two so stripes can be selected with a mask:
+		int size = Integer.highestOneBit(stripeCount);
+		if (size < stripeCount)
+			size <<= 1;
+
+		this.stripes = new ReentrantReadWriteLock[size];
+		for (int i=0; i<size; i++)
+			stripes[i] = new ReentrantReadWriteLock();
+
+		this.root = JsonUtil.deepCopy(document);
+	}
+
+	// --------------------------------------------------------------- Accessors
+
+	/**
+	 * Returns the number of patches successfully applied to this document.
+	 * This can be used for optimistic checks by callers: two reads that
+	 * observe the same version observe the same document.
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * Returns a consistent snapshot of the whole document.
+	 */
+	public JsonElement get() {
+		return get(JsonPointer.EMPTY);
+	}
+
+	/**
+	 * Returns the value at the given pointer, or {@code null} if there is
+	 * no such value.  The returned value must not be modified.
+	 */
+	public JsonElement get(final JsonPointer pointer) {
+		documentLock.readLock().lock();
+		try {
+			if (pointer.isEmpty())
+				return snapshot();
+
+			ReentrantReadWriteLock lock = stripeFor(pointer.getToken(0).getRaw());
+			lock.readLock().lock();
+			try {
+				return pointer.resolve(root);
+			}
+			finally {
+				lock.readLock().unlock();
+			}
+		}
+		finally {
+			documentLock.readLock().unlock();
+		}
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	/**
+	 * Applies a patch atomically.  Either every operation is applied or, if
+	 * one of them fails, the document is left unchanged and the exception is
+	 * rethrown.
+	 */
+	public void apply(final JsonPatch patch) throws JsonPatchException {
+		final Set<String> members = new TreeSet<>();
+		boolean structural = false;
+
+		for (JsonPatchOperation op : patch.getOperations()) {
+			JsonPointer path = op.getPath();
+			structural |= isStructural(path, op instanceof TestOperation);
+			addMember(members, path);
+
+			if (op instanceof DualPathOperation) {
+				JsonPointer from = ((DualPathOperation)op).getFrom();
+				structural |= isStructural(from, op instanceof CopyOperation);
+				addMember(members, from);
+			}
+		}
+
+		if (!structural) {
+			documentLock.readLock().lock();
+			try {
+				if (root.isJsonObject()) {
+					applyToMembers(members, patch, null);
+					return;
+				}
+			}
+			finally {
+				documentLock.readLock().unlock();
+			}
+		}
+
+		applyToDocument(patch, null);
+	}
+
+	/**
+	 * Applies a merge patch atomically.
+	 */
+	public void apply(final JsonMergePatch patch) throws JsonPatchException {
+		final JsonElement patchElem = patch.toJson();
+
+		//only object-into-object merges can be done member by member:
+		boolean structural = !patchElem.isJsonObject();
+		final Set<String> members = new TreeSet<>();
+		if (!structural) {
+			for (Map.Entry<String, JsonElement> entry : patchElem.getAsJsonObject().entrySet()) {
+				members.add(entry.getKey());
+				structural |= !entry.getValue().isJsonObject();
+			}
+		}
+
+		if (!structural) {
+			documentLock.readLock().lock();
+			try {
+				if (root.isJsonObject() && membersAreObjects(members)) {
+					applyToMembers(members, null, patch);
+					return;
+				}
+			}
+			finally {
+				documentLock.readLock().unlock();
+			}
+		}
+
+		applyToDocument(null, patch);
+	}
+
+	/**
+	 * Applies a patch that only modifies the insides of existing top-level
+	 * members.  Must be called with the document read lock held.
+	 */
+	private void applyToMembers(Set<String> members, JsonPatch patch, JsonMergePatch mergePatch) throws JsonPatchException {
+		final ReentrantReadWriteLock [] locks = stripesFor(members);
+		for (ReentrantReadWriteLock lock : locks)
+			lock.writeLock().lock();
+
+		try {
+			final JsonObject rootObj = (JsonObject)root;
+
+			JsonObject shadow = new JsonObject();
+			for (String member : members) {
+				JsonElement value = rootObj.get(member);
+				if (value != null)
+					shadow.add(member, value);
+			}
+
+			PathCopy copy = new PathCopy(shadow);
+			shadow = (JsonObject)(patch != null ? copy.apply(patch) : copy.apply(mergePatch));
+
+			//replacing the value of an existing member does not change the
+			//structure of the root object, so readers of other stripes are
+			//not affected:
+			for (String member : members) {
+				JsonElement value = shadow.get(member);
+				if (value != null)
+					rootObj.add(member, value);
+			}
+
+			version.incrementAndGet();
+		}
+		finally {
+			for (int i=locks.length-1; i>=0; i--)
+				locks[i].writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Applies a patch that may change the structure of the root.  The root
+	 * and the containers on the written paths are copied; the rest is shared
+	 * with the previous root.
+	 */
+	private void applyToDocument(JsonPatch patch, JsonMergePatch mergePatch) throws JsonPatchException {
+		documentLock.writeLock().lock();
+		try {
+			PathCopy copy = new PathCopy(root);
+			JsonElement result = patch != null ?
+					copy.apply(patch) : copy.apply(mergePatch);
+
+			root = (result == null) ? JsonNull.INSTANCE : result;
+			version.incrementAndGet();
+		}
+		finally {
+			documentLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Tells whether the given pointer requires the whole document to be
+	 * locked: that is the case for the empty pointer, and for writes to a
+	 * top-level member (which change the structure of the root).
+	 */
+	private static boolean isStructural(JsonPointer pointer, boolean readOnly) {
+		return pointer.isEmpty() || (pointer.size() == 1 && !readOnly);
+	}
+
+	private static void addMember(Set<String> members, JsonPointer pointer) {
+		if (!pointer.isEmpty())
+			members.add(pointer.getToken(0).getRaw());
+	}
+
+	private boolean membersAreObjects(Set<String> members) {
+		JsonObject rootObj = (JsonObject)root;
+		for (String member : members) {
+			JsonElement value = rootObj.get(member);
+			if (value == null || !value.isJsonObject())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a shallow copy of the root taken with every stripe held for
+	 * reading.  Members are never modified in place, so sharing them is safe.
+	 * Must be called with the document read lock held.
+	 */
+	private JsonElement snapshot() {
+		for (ReentrantReadWriteLock lock : stripes)
+			lock.readLock().lock();
+
+		try {
+			final JsonElement current = root;
+			if (!current.isJsonObject())
+				return current;
+
+			JsonObject copy = new JsonObject();
+			for (Map.Entry<String, JsonElement> entry : current.getAsJsonObject().entrySet())
+				copy.add(entry.getKey(), entry.getValue());
+
+			return copy;
+		}
+		finally {
+			for (int i=stripes.length-1; i>=0; i--)
+				stripes[i].readLock().unlock();
+		}
+	}
+
+	private ReentrantReadWriteLock stripeFor(String member) {
+		return stripes[stripeIndex(member)];
+	}
+
+	private int stripeIndex(String member) {
+		int h = member.hashCode();
+		h ^= (h >>> 16);
+		return h & (stripes.length - 1);
+	}
+
+	/**
+	 * Returns the distinct stripes for the given members, in index order so
+	 * that locks are always acquired in the same order.
+	 */
+	private ReentrantReadWriteLock [] stripesFor(Set<String> members) {
+		int [] indices = new int[members.size()];
+		int count = 0;
+		for (String member : members)
+			indices[count++] = stripeIndex(member);
+
+		Arrays.sort(indices);
+
+		ReentrantReadWriteLock [] locks = new ReentrantReadWriteLock[indices.length];
+		int size = 0;
+		for (int i=0; i<indices.length; i++) {
+			if (i == 0 || indices[i] != indices[i-1])
+				locks[size++] = stripes[indices[i]];
+		}
+
+		return Arrays.copyOf(locks, size);
+	}
+
+	/**
+	 * Applies patches to a value without modifying the containers it shares
+	 * with the document.  Before each operation, the root and the containers
+	 * on the path the operation writes to are replaced by shallow copies,
+	 * unless they were copied for an earlier operation of the same patch.
+	 */
+	private static final class PathCopy
+	{
+		/* The containers copied so far, which may be modified in place */
+		private final Set<JsonElement> copies =
+				Collections.newSetFromMap(new IdentityHashMap<JsonElement, Boolean>());
+
+		private JsonElement root;
+
+		PathCopy(JsonElement root) {
+			this.root = root;
+		}
+
+		JsonElement apply(JsonPatch patch) throws JsonPatchException {
+			for (JsonPatchOperation op : patch.getOperations()) {
+				JsonPointer path = op.getPath();
+				//a move removes the value from the parent of 'from':
+				if (op instanceof MoveOperation) {
+					JsonPointer from = ((MoveOperation)op).getFrom();
+					copyPath(from, from.size() - 1);
+				}
+
+				if (writesParentOnly(op))
+					copyPath(path, path.size() - 1);
+				else if (!(op instanceof TestOperation))
+					copyPath(path, path.size());
+
+				root = op.apply(root);
+			}
+			return root;
+		}
+
+		JsonElement apply(JsonMergePatch patch) {
+			JsonElement patchElem = patch.toJson();
+			if (patchElem.isJsonObject() && root.isJsonObject()) {
+				root = copy(root);
+				copyMerged((JsonObject)root, (JsonObject)patchElem);
+			}
+			root = JsonMergePatch.apply(root, patchElem);
+			return root;
+		}
+
+		/*
+		 * The standard operations replace, add or remove the value at their
+		 * path, and leave the value itself alone; other operations may change
+		 * it in place.
+		 */
+		private static boolean writesParentOnly(JsonPatchOperation op) {
+			return op instanceof AddOperation || op instanceof RemoveOperation
+					|| op instanceof ReplaceOperation || op instanceof MoveOperation
+					|| op instanceof CopyOperation;
+		}
+
+		/*
+		 * Copies the root and the containers at the first 'length' tokens of
+		 * the path, as far as they exist
+		 */
+		private void copyPath(JsonPointer path, int length) {
+			if (length < 0)
+				return;
+
+			root = copy(root);
+			JsonElement node = root;
+			int depth = 0;
+			for (ReferenceToken token : path) {
+				if (depth++ == length)
+					return;
+
+				JsonElement child = token.resolve(node);
+				if (child == null || !(child.isJsonObject() || child.isJsonArray()))
+					return;
+
+				JsonElement copy = copy(child);
+				if (copy != child) {
+					if (node.isJsonObject())
+						((JsonObject)node).add(token.getRaw(), copy);
+					else
+						((JsonArray)node).set(Integer.parseInt(token.getRaw()), copy);
+				}
+				node = copy;
+			}
+		}
+
+		/*
+		 * Copies the objects a merge patch merges into
+		 */
+		private void copyMerged(JsonObject target, JsonObject patch) {
+			ArrayDeque<JsonObject> pending = new ArrayDeque<>();
+			pending.push(patch);
+			pending.push(target);
+			while (!pending.isEmpty()) {
+				JsonObject node = pending.pop();
+				JsonObject patchNode = pending.pop();
+				for (Map.Entry<String, JsonElement> entry : patchNode.entrySet()) {
+					JsonElement old = node.get(entry.getKey());
+					if (!entry.getValue().isJsonObject() || old == null || !old.isJsonObject())
+						continue;
+
+					JsonElement copy = copy(old);
+					if (copy != old)
+						node.add(entry.getKey(), copy);
+					pending.push((JsonObject)entry.getValue());
+					pending.push((JsonObject)copy);
+				}
+			}
+		}
+
+		/*
+		 * Returns a shallow copy of a container not copied yet; other values
+		 * are returned as they are
+		 */
+		private JsonElement copy(JsonElement value) {
+			if (copies.contains(value))
+				return value;
+
+			JsonElement ret;
+			if (value.isJsonObject()) {
+				JsonObject obj = new JsonObject();
+				for (Map.Entry<String, JsonElement> entry : value.getAsJsonObject().entrySet())
+					obj.add(entry.getKey(), entry.getValue());
+				ret = obj;
+			}
+			else if (value.isJsonArray()) {
+				JsonArray array = new JsonArray();
+				array.addAll(value.getAsJsonArray());
+				ret = array;
+			}
+			else {
+				return value;
+			}
+
+			copies.add(ret);
+			return ret;
+		}
+	}
+
+}
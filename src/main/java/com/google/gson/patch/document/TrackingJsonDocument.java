@@ -0,0 +1,446 @@
+package com.google.gson.patch.document;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.AddOperation;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchException;
+import com.google.gson.patch.JsonPatchOperation;
+import com.google.gson.patch.JsonUtil;
+import com.google.gson.patch.RemoveOperation;
+import com.google.gson.patch.ReplaceOperation;
+import com.google.gson.patch.mergepatch.JsonMergeDiff;
+import com.google.gson.patch.mergepatch.JsonMergePatch;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.ReferenceToken;
+
+/**
+ * A JSON document that remembers how it was modified since the last
+ * checkpoint.
+ *
+ * <p>The document is modified in place through {@link #set}, {@link #insert}
+ * and {@link #remove}, which record where each change happened rather than
+ * keeping a copy of the document: {@link #checkpoint()} then returns the
+ * changes as a coalesced {@link JsonPatch} (or {@link #checkpointMergePatch()}
+ * as a {@link JsonMergePatch}) in time proportional to the number of
+ * changes and to the size of the values they wrote.</p>
+ *
+ * <p>Changes are coalesced by object member: a member set several times is
+ * set once, a member added then removed is left alone, and changes below a
+ * value that is later replaced or removed are dropped.  Changes inside an
+ * array are kept as a list of operations, except that an element replaced
+ * (or inserted then replaced) several times in a row is replaced once.</p>
+ *
+ * <p>Changes made to the tree other than through this class are not tracked;
+ * values returned by {@link #get(JsonPointer)} must be treated as read-only.
+ * This class is not thread-safe.</p>
+ */
+public class TrackingJsonDocument {
+
+	/*
+	 * How the value at a path changed since the checkpoint.  A path crossing
+	 * a changed value or an array is tracked by that value or array; object
+	 * members are tracked by their own changes.
+	 */
+	private static final class Change {
+		Kind kind = Kind.MEMBERS;
+
+		/* whether there was a value at the checkpoint (SET, REMOVED) */
+		boolean existed;
+
+		/* the value at the checkpoint, if known (SET, REMOVED); arrays
+		 * changed element by element are not known */
+		JsonElement previous;
+
+		/* the members of previous that are unknown arrays, and left out */
+		List<JsonPointer> unknown;
+
+		/* the members that changed (MEMBERS) */
+		Map<String, Change> members;
+
+		/* the operations applied to the array, in order (ARRAY) */
+		List<JsonPatchOperation> operations;
+	}
+
+	private enum Kind {
+		/* some members of the object changed */
+		MEMBERS,
+		/* the value was set as a whole */
+		SET,
+		/* the value was removed */
+		REMOVED,
+		/* elements of the array were changed */
+		ARRAY
+	}
+
+	// -------------------------------------------------------------- Properties
+
+	private JsonElement root;
+	private Change changes = new Change();
+
+	// ------------------------------------------------------------ Constructors
+
+	/**
+	 * Tracks the changes made to the document from now on; the document is
+	 * neither copied nor modified until a change is made.
+	 */
+	public TrackingJsonDocument(JsonElement document) {
+		if (document == null)
+			throw new IllegalArgumentException("document may not be NULL");
+
+		this.root = document;
+	}
+
+	// --------------------------------------------------------------- Accessors
+
+	/**
+	 * Returns the whole document.  It must not be modified.
+	 */
+	public JsonElement get() {
+		return root;
+	}
+
+	/**
+	 * Returns the value at the given pointer, or {@code null} if there is
+	 * no such value.  The returned value must not be modified.
+	 */
+	public JsonElement get(JsonPointer pointer) {
+		return pointer.resolve(root);
+	}
+
+	/**
+	 * Tells whether the document was changed since the last checkpoint.
+	 */
+	public boolean isDirty() {
+		return changes.kind != Kind.MEMBERS
+				|| (changes.members != null && !changes.members.isEmpty());
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	/**
+	 * Sets the value at the given pointer: adds or replaces an object member,
+	 * replaces an array element, or replaces the whole document.  The value
+	 * is copied.
+	 *
+	 * @throws JsonPatchException if there is no such parent, or no such
+	 *     array element; the document is left unchanged
+	 */
+	public void set(JsonPointer path, JsonElement value) throws JsonPatchException {
+		if (path == null)
+			throw new IllegalArgumentException("path may not be NULL");
+		if (value == null)
+			throw new IllegalArgumentException("value may not be NULL");
+
+		JsonElement parent = path.isEmpty() ? null : path.parent().resolve(root);
+		JsonElement previous = path.resolve(root);
+		JsonPatchOperation op = parent != null && parent.isJsonArray()
+				? new ReplaceOperation(path, value)
+				: new AddOperation(path, value);
+		root = op.apply(root);
+		track(path, op, previous);
+	}
+
+	/**
+	 * Inserts a value into an array, before the element at the given index
+	 * or at the end for {@code -}.  The value is copied.
+	 *
+	 * @throws JsonPatchException if the parent is not an array, or the index
+	 *     is invalid; the document is left unchanged
+	 */
+	public void insert(JsonPointer path, JsonElement value) throws JsonPatchException {
+		if (path == null)
+			throw new IllegalArgumentException("path may not be NULL");
+		if (value == null)
+			throw new IllegalArgumentException("value may not be NULL");
+
+		JsonElement parent = path.isEmpty() ? null : path.parent().resolve(root);
+		if (parent == null || !parent.isJsonArray())
+			throw new JsonPatchException("Cannot insert at '" + path + "': parent is not an array");
+
+		JsonPatchOperation op = new AddOperation(path, value);
+		root = op.apply(root);
+		track(path, op, null);
+	}
+
+	/**
+	 * Removes an object member or an array element.
+	 *
+	 * @throws JsonPatchException if there is no such value; the document is
+	 *     left unchanged
+	 */
+	public void remove(JsonPointer path) throws JsonPatchException {
+		if (path == null)
+			throw new IllegalArgumentException("path may not be NULL");
+		if (path.isEmpty())
+			throw new IllegalArgumentException("the document itself cannot be removed");
+
+		JsonElement previous = path.resolve(root);
+		JsonPatchOperation op = new RemoveOperation(path);
+		root = op.apply(root);
+		track(path, op, previous);
+	}
+
+	/**
+	 * Returns the changes since the last checkpoint as a JSON Patch, and
+	 * starts tracking from here.  Applying the patch to the document as it
+	 * was at the last checkpoint yields the current document.
+	 */
+	public JsonPatch checkpoint() {
+		List<JsonPatchOperation> operations = new ArrayList<>();
+		collect(operations, JsonPointer.EMPTY, changes, root);
+		changes = new Change();
+		return new JsonPatch(operations);
+	}
+
+	/**
+	 * Returns the changes since the last checkpoint as a JSON Merge Patch,
+	 * and starts tracking from here.  Changed arrays are replaced as a whole,
+	 * and so is the document if it is not an object.
+	 *
+	 * <p>As with {@link JsonMergeDiff}, a merge patch cannot set a member to
+	 * {@code null}: such members are removed when the patch is applied.</p>
+	 */
+	public JsonMergePatch checkpointMergePatch() {
+		// only objects can be patched in place
+		JsonElement patch = root.isJsonObject() ? mergePatch(changes, root) : JsonUtil.deepCopy(root);
+		changes = new Change();
+		return JsonMergePatch.fromJson(patch == null ? new JsonObject() : patch);
+	}
+
+	/*
+	 * Records an operation just applied; previous is the value it replaced
+	 * or removed, if any
+	 */
+	private void track(JsonPointer path, JsonPatchOperation op, JsonElement previous) {
+		Change change = changes;
+		JsonElement container = root;
+		Change parent = null;
+		String name = null;
+		for (int i = 0; i < path.size(); i++) {
+			if (change.kind == Kind.SET)
+				return; // the whole value is set at the checkpoint anyway
+			if (change.kind == Kind.ARRAY || container.isJsonArray()) {
+				log(change, op, path.size() == i + 1);
+				return;
+			}
+
+			parent = change;
+			name = path.getToken(i).getRaw();
+			if (change.members == null)
+				change.members = new LinkedHashMap<>();
+			change = change.members.get(name);
+			if (change == null) {
+				change = new Change();
+				parent.members.put(name, change);
+			}
+			container = ((JsonObject)container).get(name);
+		}
+
+		if (change.kind == Kind.SET) {
+			if (op instanceof RemoveOperation) {
+				if (change.existed)
+					change.kind = Kind.REMOVED;
+				else
+					parent.members.remove(name); // added since the checkpoint
+			}
+			return;
+		}
+
+		JsonElement original = null;
+		boolean existed = true;
+		List<JsonPointer> unknown = null;
+		if (change.kind == Kind.REMOVED) {
+			original = change.previous;
+			unknown = change.unknown;
+		}
+		else if (change.kind == Kind.MEMBERS) {
+			existed = previous != null;
+			if (change.members == null)
+				original = previous;
+			else {
+				unknown = new ArrayList<>();
+				original = checkpointValue(previous, change, JsonPointer.EMPTY, unknown);
+			}
+		}
+		// else an array whose value at the checkpoint is unknown
+
+		change.kind = op instanceof RemoveOperation ? Kind.REMOVED : Kind.SET;
+		change.existed = existed;
+		change.previous = original;
+		change.unknown = unknown;
+		change.members = null;
+		change.operations = null;
+	}
+
+	/*
+	 * Appends an array operation, coalescing it with the previous one when
+	 * both write the same element of the array (an element operation)
+	 */
+	private static void log(Change change, JsonPatchOperation op, boolean element) {
+		if (change.kind != Kind.ARRAY) {
+			change.kind = Kind.ARRAY;
+			change.operations = new ArrayList<>();
+		}
+
+		List<JsonPatchOperation> operations = change.operations;
+		JsonPatchOperation last = operations.isEmpty() ? null : operations.get(operations.size() - 1);
+		if (element && last != null && !(last instanceof RemoveOperation) && last.getPath().equals(op.getPath())
+				&& !"-".equals(op.getPath().getLastToken().getRaw())) {
+			if (op instanceof RemoveOperation) {
+				operations.remove(operations.size() - 1);
+				if (last instanceof ReplaceOperation)
+					operations.add(op);
+				return;
+			}
+			if (op instanceof ReplaceOperation) {
+				JsonElement value = ((ReplaceOperation)op).getValue();
+				operations.set(operations.size() - 1, last instanceof AddOperation
+						? new AddOperation(op.getPath(), JsonUtil.deepCopy(value))
+						: new ReplaceOperation(op.getPath(), JsonUtil.deepCopy(value)));
+				return;
+			}
+		}
+		operations.add(copy(op));
+	}
+
+	/*
+	 * The operation with its own copy of the value, which the document may
+	 * change afterwards
+	 */
+	private static JsonPatchOperation copy(JsonPatchOperation op) {
+		if (op instanceof AddOperation)
+			return new AddOperation(op.getPath(), JsonUtil.deepCopy(((AddOperation)op).getValue()));
+		if (op instanceof ReplaceOperation)
+			return new ReplaceOperation(op.getPath(), JsonUtil.deepCopy(((ReplaceOperation)op).getValue()));
+		return op;
+	}
+
+	/*
+	 * Rebuilds the value an object had at the checkpoint from its current
+	 * value and the changes made to its members, as far as a merge patch
+	 * needs it; unchanged members are shared.  Members that were arrays
+	 * changed element by element are left out, and their pointers added to
+	 * unknown.
+	 */
+	private static JsonElement checkpointValue(JsonElement current, Change change,
+			JsonPointer pointer, List<JsonPointer> unknown)
+	{
+		JsonObject value = new JsonObject();
+		for (Map.Entry<String, JsonElement> entry : current.getAsJsonObject().entrySet()) {
+			if (!change.members.containsKey(entry.getKey()))
+				value.add(entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<String, Change> entry : change.members.entrySet()) {
+			String name = entry.getKey();
+			Change member = entry.getValue();
+			JsonPointer child = pointer.append(name);
+			if (member.kind == Kind.MEMBERS)
+				value.add(name, checkpointValue(current.getAsJsonObject().get(name), member, child, unknown));
+			else if (member.kind == Kind.ARRAY || (member.previous == null && member.existed))
+				unknown.add(child);
+			else if (member.previous != null) {
+				value.add(name, member.previous);
+				if (member.unknown != null) {
+					for (JsonPointer inner : member.unknown) {
+						JsonPointer path = child;
+						for (ReferenceToken token : inner)
+							path = path.append(token);
+						unknown.add(path);
+					}
+				}
+			}
+		}
+		return value;
+	}
+
+	/*
+	 * Sets the members that were unknown arrays in the merge patch of a
+	 * replaced object, unless the patch already replaces one of their parents
+	 */
+	private static void setUnknown(JsonObject patch, JsonElement current, JsonPointer pointer) {
+		for (int i = 0; i < pointer.size() - 1; i++) {
+			String name = pointer.getToken(i).getRaw();
+			current = current.getAsJsonObject().get(name);
+			if (current == null || !current.isJsonObject())
+				return;
+
+			JsonElement member = patch.get(name);
+			if (member == null) {
+				member = new JsonObject();
+				patch.add(name, member);
+			}
+			else if (!member.isJsonObject())
+				return;
+			patch = (JsonObject)member;
+		}
+
+		JsonElement value = current.getAsJsonObject().get(pointer.getLastToken().getRaw());
+		patch.add(pointer.getLastToken().getRaw(), value == null ? JsonNull.INSTANCE : JsonUtil.deepCopy(value));
+	}
+
+	private static void collect(List<JsonPatchOperation> operations, JsonPointer path,
+			Change change, JsonElement current)
+	{
+		switch (change.kind) {
+		case SET:
+			operations.add(change.existed
+					? new ReplaceOperation(path, JsonUtil.deepCopy(current))
+					: new AddOperation(path, JsonUtil.deepCopy(current)));
+			break;
+		case REMOVED:
+			operations.add(new RemoveOperation(path));
+			break;
+		case ARRAY:
+			operations.addAll(change.operations);
+			break;
+		default:
+			if (change.members == null)
+				break;
+			for (Map.Entry<String, Change> entry : change.members.entrySet()) {
+				String name = entry.getKey();
+				collect(operations, path.append(name), entry.getValue(),
+						current.getAsJsonObject().get(name));
+			}
+		}
+	}
+
+	//@Nullable
+	private static JsonElement mergePatch(Change change, JsonElement current) {
+		switch (change.kind) {
+		case SET:
+			// an unknown previous value was an array: anything replaces it
+			if (change.previous == null)
+				return JsonUtil.deepCopy(current);
+			JsonElement patch = JsonMergeDiff.diff(change.previous, current).getPatch().toJson();
+			if (change.unknown != null && patch.isJsonObject() && current.isJsonObject()) {
+				for (JsonPointer pointer : change.unknown)
+					setUnknown((JsonObject)patch, current, pointer);
+			}
+			return patch;
+		case REMOVED:
+			return JsonNull.INSTANCE;
+		case ARRAY:
+			return JsonUtil.deepCopy(current);
+		default:
+			if (change.members == null)
+				return null;
+			JsonObject members = new JsonObject();
+			for (Map.Entry<String, Change> entry : change.members.entrySet()) {
+				String name = entry.getKey();
+				JsonElement member = mergePatch(entry.getValue(), current.getAsJsonObject().get(name));
+				if (member != null)
+					members.add(name, member);
+			}
+			return members;
+		}
+	}
+
+}
@@ -0,0 +1,11 @@
+/**
+ * Documents that wrap a GSON tree
+ *
+ * <p>The classes in this package own a JSON value and control how it is
+ * modified, for instance {@link
+ * com.google.gson.patch.document.ConcurrentJsonDocument}, which lets many
+ * threads apply patches to the same document, and {@link
+ * com.google.gson.patch.document.TrackingJsonDocument}, which turns the
+ * changes made to a document into patches.</p>
+ */
+package com.google.gson.patch.document;
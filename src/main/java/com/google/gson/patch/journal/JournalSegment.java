@@ -0,0 +1,297 @@
+package com.google.gson.patch.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * One memory-mapped file of a {@link PatchJournal}.
+ *
+ * <p>A segment is a pre-allocated (and therefore zero-filled) file holding a
+ * sequence of records.  Each record is laid out as:</p>
+ *
+ * <pre>
+ *     int   length      length of the payload in bytes (never 0)
+ *     int   checksum    CRC32 of the sequence number and the payload
+ *     long  sequence    sequence number of the record
+ *     byte  payload[length]
+ * </pre>
+ *
+ * <p>A length of 0 marks the end of the records.  A record whose checksum
+ * does not match, or whose sequence number does not follow the previous one,
+ * is a torn write and also marks the end of the records.</p>
+ *
+ * <p>A segment is unmapped by {@link #close()}; it may not be used
+ * afterwards.</p>
+ */
+final class JournalSegment
+{
+	static final int HEADER_SIZE = 16;
+
+	private static final String SUFFIX = ".log";
+
+	/* Pages of the tail are checked, and zeroed if needed, this many bytes at a time */
+	private static final int CLEAR_CHUNK = 4096;
+
+	/* sun.misc.Unsafe and its invokeCleaner(ByteBuffer) method (Java 9+), or nulls */
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+		}
+		catch(ReflectiveOperationException | RuntimeException e) {
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	private final File file;
+	private final long firstSequence;
+	private final MappedByteBuffer buffer;
+
+	private long lastSequence;
+
+	private JournalSegment(File file, long firstSequence, MappedByteBuffer buffer) {
+		this.file = file;
+		this.firstSequence = firstSequence;
+		this.buffer = buffer;
+		this.lastSequence = firstSequence - 1;
+	}
+
+	/**
+	 * Creates a new, empty segment whose first record will have the given
+	 * sequence number.  The directory is synced, so that the segment is still
+	 * there after a crash.
+	 */
+	static JournalSegment create(File directory, long firstSequence, int size) throws IOException {
+		File file = new File(directory, fileName(firstSequence));
+		MappedByteBuffer buffer;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(size);
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+		syncDirectory(directory);
+		return new JournalSegment(file, firstSequence, buffer);
+	}
+
+	/**
+	 * Forces the entries of a directory, that is the files created, renamed
+	 * or deleted in it, to the storage device.
+	 */
+	static void syncDirectory(File directory) throws IOException {
+		try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Opens an existing segment.  A writable segment is positioned after its
+	 * last valid record, ready for appends; a read-only one is meant to be
+	 * passed to {@link #scan(RecordVisitor)}.
+	 */
+	static JournalSegment open(File file, boolean writable) throws IOException {
+		long firstSequence = parseFirstSequence(file);
+		try (RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r")) {
+			MappedByteBuffer buffer = raf.getChannel().map(
+					writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+					0, raf.length());
+
+			JournalSegment segment = new JournalSegment(file, firstSequence, buffer);
+			if (writable) {
+				segment.scan(null);
+				segment.clearTail();
+			}
+			return segment;
+		}
+	}
+
+	static boolean isSegment(File file) {
+		return file.getName().endsWith(SUFFIX);
+	}
+
+	static String fileName(long firstSequence) {
+		return String.format("%020d%s", firstSequence, SUFFIX);
+	}
+
+	static long parseFirstSequence(File file) throws IOException {
+		String name = file.getName();
+		try {
+			return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+		}
+		catch(NumberFormatException e) {
+			throw new IOException("Invalid journal segment name: '" + name + "'");
+		}
+	}
+
+	// --------------------------------------------------------------- Accessors
+
+	File getFile() {
+		return file;
+	}
+
+	long getFirstSequence() {
+		return firstSequence;
+	}
+
+	long getLastSequence() {
+		return lastSequence;
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	/**
+	 * Tells whether a record with the given payload size fits in the
+	 * remaining space.
+	 */
+	boolean hasRoom(int payloadSize) {
+		return buffer.remaining() >= HEADER_SIZE + payloadSize;
+	}
+
+	/**
+	 * Appends a record.  The payload is written before the header so that a
+	 * crash in the middle of the write never leaves a record that looks
+	 * complete.
+	 */
+	long append(byte [] payload) {
+		long sequence = lastSequence + 1;
+		int position = buffer.position();
+
+		buffer.position(position + HEADER_SIZE);
+		buffer.put(payload);
+		int end = buffer.position();
+
+		buffer.position(position + 4);
+		buffer.putInt(checksum(sequence, payload, 0, payload.length));
+		buffer.putLong(sequence);
+		buffer.putInt(position, payload.length);
+
+		buffer.position(end);
+		lastSequence = sequence;
+		return sequence;
+	}
+
+	/**
+	 * Forces the contents of this segment to the storage device.
+	 */
+	void force() {
+		buffer.force();
+	}
+
+	/**
+	 * Reads the valid records of this segment, from the beginning, passing
+	 * them to the visitor (if any).  Leaves the buffer positioned after the
+	 * last valid record.
+	 */
+	void scan(RecordVisitor visitor) throws IOException {
+		buffer.position(0);
+		long expected = firstSequence;
+
+		while (buffer.remaining() >= HEADER_SIZE) {
+			int position = buffer.position();
+			int length = buffer.getInt(position);
+			if (length <= 0 || length > buffer.remaining() - HEADER_SIZE)
+				break;
+
+			int checksum = buffer.getInt(position + 4);
+			long sequence = buffer.getLong(position + 8);
+			if (sequence != expected)
+				break;
+
+			byte [] payload = new byte[length];
+			buffer.position(position + HEADER_SIZE);
+			buffer.get(payload);
+
+			if (checksum(sequence, payload, 0, length) != checksum) {
+				buffer.position(position);
+				break;
+			}
+
+			if (visitor != null)
+				visitor.visit(sequence, payload);
+
+			expected++;
+		}
+
+		lastSequence = expected - 1;
+	}
+
+	/**
+	 * Unmaps the segment now, rather than when the buffer is garbage
+	 * collected, so that closed segments do not hold on to memory and file
+	 * handles.  Java has no public API for this: Unsafe.invokeCleaner() is
+	 * used on Java 9 and later, and the cleaner of the buffer on Java 8; if
+	 * neither is available, the buffer is left to the garbage collector.
+	 */
+	void close() {
+		try {
+			if (INVOKE_CLEANER != null) {
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+			}
+			else {
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null)
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		}
+		catch(ReflectiveOperationException | RuntimeException e) {
+			//left to the garbage collector
+		}
+	}
+
+	/**
+	 * Zeroes anything left after the last valid record by a torn write, so
+	 * that later appends are not followed by stale bytes.  The tail is read
+	 * a chunk at a time, and only chunks holding stale bytes are written, so
+	 * that the clean pages of the file are not dirtied.
+	 */
+	private void clearTail() {
+		ByteBuffer tail = buffer.duplicate();
+		byte [] chunk = new byte[CLEAR_CHUNK];
+		byte [] zeros = new byte[CLEAR_CHUNK];
+		while (tail.hasRemaining()) {
+			int position = tail.position();
+			int length = Math.min(CLEAR_CHUNK, tail.remaining());
+			tail.get(chunk, 0, length);
+			for (int i=0; i<length; i++) {
+				if (chunk[i] != 0) {
+					tail.position(position);
+					tail.put(zeros, 0, length);
+					break;
+				}
+			}
+		}
+	}
+
+	private static int checksum(long sequence, byte [] payload, int offset, int length) {
+		CRC32 crc = new CRC32();
+		for (int i=0; i<8; i++)
+			crc.update((int)(sequence >>> (56 - 8*i)));
+		crc.update(payload, offset, length);
+		return (int)crc.getValue();
+	}
+
+	/**
+	 * Receives the records read by {@link JournalSegment#scan(RecordVisitor)}.
+	 */
+	interface RecordVisitor {
+		void visit(long sequence, byte [] payload) throws IOException;
+	}
+
+}
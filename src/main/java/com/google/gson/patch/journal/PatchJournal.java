@@ -0,0 +1,446 @@
+package com.google.gson.patch.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParser;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchException;
+import com.google.gson.patch.JsonUtil;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Write-ahead journal of {@link JsonPatch}es applied to a set of documents
+ *
+ * <p>The journal lives in a directory holding:</p>
+ *
+ * <ul>
+ *     <li>at most one <i>snapshot</i> ({@code <sequence>.snapshot}), a JSON
+ *     object mapping each document id to its value as of that sequence
+ *     number;</li>
+ *     <li>a series of memory-mapped <i>segments</i> ({@code <sequence>.log})
+ *     holding the checksummed patch records appended since (see
+ *     {@link JournalSegment} for the record layout).</li>
+ * </ul>
+ *
+ * <p>Patches should be appended once they have been successfully applied to
+ * the in-memory document.  {@link #append(String, JsonPatch)} only copies the
+ * record into the mapped segment, so it is cheap; durability is obtained by
+ * calling {@link #sync(long)}.  Syncs are grouped: a single {@code force()}
+ * makes every record appended before it durable, so threads that append
+ * concurrently and then sync share the cost of one flush.</p>
+ *
+ * <p>After a crash, {@link #recover()} loads the snapshot and replays the
+ * records appended after it.  A torn record at the end of the last segment
+ * (one whose checksum does not match) ends the replay and is overwritten by
+ * the next append.  {@link #compact()} squashes the records into a new
+ * snapshot and deletes the segments it covers; call it periodically to bound
+ * recovery time.</p>
+ */
+public class PatchJournal implements Closeable {
+
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+	// -------------------------------------------------------------- Properties
+
+	private final File directory;
+	private final int segmentSize;
+
+	private final Object syncLock = new Object();
+	private final Object compactLock = new Object();
+
+	/* guarded by 'this'; current is null once closed */
+	private JournalSegment current;
+	private long lastSequence;
+	private boolean closed;
+	/* segments rolled but not unmapped yet, guarded by 'this' */
+	private final List<JournalSegment> rolled = new ArrayList<>();
+
+	private volatile long durableSequence;
+	private volatile long snapshotSequence;
+
+	// ------------------------------------------------------------ Constructors
+
+	public PatchJournal(File directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_SIZE);
+	}
+	public PatchJournal(File directory, int segmentSize) throws IOException {
+		if (segmentSize <= JournalSegment.HEADER_SIZE)
+			throw new IllegalArgumentException("segmentSize is too small: " + segmentSize);
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Unable to create journal directory '" + directory + "'");
+
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+
+		File snapshot = latestSnapshot();
+		this.snapshotSequence = (snapshot == null) ? 0 : parseSnapshotSequence(snapshot);
+
+		List<File> segments = listSegments();
+		if (segments.isEmpty())
+			current = JournalSegment.create(directory, snapshotSequence + 1, segmentSize);
+		else
+			current = JournalSegment.open(segments.get(segments.size()-1), true);
+
+		this.lastSequence = Math.max(current.getLastSequence(), snapshotSequence);
+		this.durableSequence = lastSequence;
+	}
+
+	// --------------------------------------------------------------- Accessors
+
+	/**
+	 * Returns the sequence number of the last record appended.
+	 */
+	public synchronized long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * Returns the sequence number up to which records are known to be on the
+	 * storage device.
+	 */
+	public long getDurableSequence() {
+		return durableSequence;
+	}
+
+	/**
+	 * Returns the sequence number covered by the current snapshot (0 if there
+	 * is none).
+	 */
+	public long getSnapshotSequence() {
+		return snapshotSequence;
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	/**
+	 * Appends a patch applied to the given document.  The record is not
+	 * durable until {@link #sync(long)} is called with the returned sequence
+	 * number (or a later one).
+	 *
+	 * @return the sequence number of the record
+	 */
+	public long append(String documentId, JsonPatch patch) throws IOException {
+		final byte [] payload = encode(documentId, patch);
+
+		synchronized (this) {
+			if (closed)
+				throw new IOException("Journal is closed");
+
+			if (!current.hasRoom(payload.length))
+				roll(payload.length);
+
+			lastSequence = current.append(payload);
+			return lastSequence;
+		}
+	}
+
+	/**
+	 * Makes every record up to the given sequence number durable.  If another
+	 * thread's sync already covered it, this returns without flushing.
+	 */
+	public void sync(long sequence) throws IOException {
+		if (durableSequence >= sequence)
+			return;
+
+		synchronized (syncLock) {
+			if (durableSequence >= sequence)
+				return;
+
+			final long target;
+			final JournalSegment segment;
+			synchronized (this) {
+				if (current == null)
+					throw new IOException("Journal is closed");
+				target = lastSequence;
+				segment = current;
+			}
+
+			//older segments were forced when they were rolled
+			segment.force();
+			durableSequence = target;
+			releaseRolled();
+		}
+	}
+
+	/**
+	 * Makes every record appended so far durable.
+	 */
+	public void sync() throws IOException {
+		sync(getLastSequence());
+	}
+
+	/**
+	 * Rebuilds the documents from the snapshot and the records appended since.
+	 *
+	 * @return the documents by id, in the order they were first seen
+	 */
+	public Map<String, JsonElement> recover() throws IOException {
+		synchronized (compactLock) {
+			return replay(getLastSequence());
+		}
+	}
+
+	/**
+	 * Writes a new snapshot covering every record appended so far, then
+	 * deletes the segments and the snapshot it replaces.  Appends may continue
+	 * while this runs; they go to a new segment that is kept.
+	 */
+	public void compact() throws IOException {
+		synchronized (compactLock) {
+			final long upTo;
+			synchronized (this) {
+				if (closed)
+					throw new IOException("Journal is closed");
+				upTo = lastSequence;
+				if (current.getLastSequence() >= current.getFirstSequence())
+					roll(0);
+			}
+
+			if (upTo == snapshotSequence)
+				return;
+
+			final Map<String, JsonElement> documents = replay(upTo);
+			final File previous = latestSnapshot();
+			writeSnapshot(upTo, documents);
+			snapshotSequence = upTo;
+
+			releaseRolled();
+			for (File segment : listSegments()) {
+				if (JournalSegment.parseFirstSequence(segment) <= upTo)
+					Files.delete(segment.toPath());
+			}
+			if (previous != null)
+				Files.delete(previous.toPath());
+			JournalSegment.syncDirectory(directory);
+		}
+	}
+
+	/**
+	 * Syncs the journal and unmaps its segments.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+		}
+		sync();
+
+		synchronized (syncLock) {
+			releaseRolled();
+			synchronized (this) {
+				current.close();
+				current = null;
+			}
+		}
+	}
+
+	/**
+	 * Closes the current segment and starts a new one large enough for a
+	 * payload of the given size.  Must be called while holding 'this'.
+	 */
+	private void roll(int payloadSize) throws IOException {
+		current.force();
+		int size = Math.max(segmentSize, JournalSegment.HEADER_SIZE + payloadSize);
+		JournalSegment next = JournalSegment.create(directory, lastSequence + 1, size);
+		rolled.add(current);
+		current = next;
+	}
+
+	/**
+	 * Unmaps the segments rolled so far.  Outside of 'this', segments are
+	 * only used by sync(), so holding the sync lock makes this safe.
+	 */
+	private void releaseRolled() {
+		synchronized (syncLock) {
+			final List<JournalSegment> segments;
+			synchronized (this) {
+				segments = new ArrayList<>(rolled);
+				rolled.clear();
+			}
+			for (JournalSegment segment : segments)
+				segment.close();
+		}
+	}
+
+	/**
+	 * Loads the snapshot and applies the records after it, up to and
+	 * including the given sequence number.
+	 */
+	private Map<String, JsonElement> replay(final long upTo) throws IOException {
+		final Map<String, JsonElement> documents = readSnapshot();
+		final long from = snapshotSequence;
+		final JsonParser parser = new JsonParser();
+
+		final List<File> segments = listSegments();
+		for (int i=0; i<segments.size(); i++) {
+			long first = JournalSegment.parseFirstSequence(segments.get(i));
+			if (first > upTo)
+				break;
+
+			//skip segments whose records all precede the snapshot
+			if (i+1 < segments.size() && JournalSegment.parseFirstSequence(segments.get(i+1)) <= from + 1)
+				continue;
+
+			JournalSegment segment = JournalSegment.open(segments.get(i), false);
+			try {
+				segment.scan(new JournalSegment.RecordVisitor() {
+					public void visit(long sequence, byte [] payload) throws IOException {
+						if (sequence <= from || sequence > upTo)
+							return;
+						applyRecord(documents, parser, sequence, payload);
+					}
+				});
+			}
+			finally {
+				segment.close();
+			}
+		}
+
+		return documents;
+	}
+
+	private static void applyRecord(Map<String, JsonElement> documents, JsonParser parser,
+			long sequence, byte [] payload) throws IOException {
+
+		final ByteBuffer buffer = ByteBuffer.wrap(payload);
+		final int idLength = buffer.getInt();
+		final String id = new String(payload, 4, idLength, StandardCharsets.UTF_8);
+		final String json = new String(payload, 4 + idLength, payload.length - 4 - idLength, StandardCharsets.UTF_8);
+
+		JsonElement document = documents.get(id);
+		if (document == null)
+			document = JsonNull.INSTANCE;
+
+		try {
+			JsonElement result = JsonPatch.fromJson(parser.parse(json)).apply(document);
+			if (result == null)
+				documents.remove(id);
+			else
+				documents.put(id, result);
+		}
+		catch(JsonPatchException e) {
+			throw new IOException("Unable to replay journal record " + sequence + " for document '" + id + "'", e);
+		}
+	}
+
+	private static byte [] encode(String documentId, JsonPatch patch) {
+		final byte [] id = documentId.getBytes(StandardCharsets.UTF_8);
+		final byte [] json = patch.toJson().toString().getBytes(StandardCharsets.UTF_8);
+
+		ByteBuffer buffer = ByteBuffer.allocate(4 + id.length + json.length);
+		buffer.putInt(id.length);
+		buffer.put(id);
+		buffer.put(json);
+		return buffer.array();
+	}
+
+	// --------------------------------------------------------------- Snapshots
+
+	private Map<String, JsonElement> readSnapshot() throws IOException {
+		final Map<String, JsonElement> documents = new LinkedHashMap<>();
+
+		final File file = latestSnapshot();
+		if (file == null)
+			return documents;
+
+		try (Reader in = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+			JsonReader reader = new JsonReader(in);
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String id = reader.nextName();
+				documents.put(id, JsonUtil.parse(reader));
+			}
+			reader.endObject();
+		}
+
+		return documents;
+	}
+
+	/**
+	 * Writes the snapshot to a temporary file and renames it, so that a crash
+	 * never leaves a partial snapshot behind.  The directory is synced after
+	 * the rename, before the segments the snapshot covers are deleted.
+	 */
+	private void writeSnapshot(long sequence, Map<String, JsonElement> documents) throws IOException {
+		final File file = new File(directory, String.format("%020d%s", sequence, SNAPSHOT_SUFFIX));
+		final File temp = new File(directory, file.getName() + ".tmp");
+
+		try (FileOutputStream out = new FileOutputStream(temp)) {
+			Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+			JsonWriter jsonWriter = new JsonWriter(writer);
+			jsonWriter.setSerializeNulls(true);
+			jsonWriter.beginObject();
+			for (Map.Entry<String, JsonElement> entry : documents.entrySet()) {
+				jsonWriter.name(entry.getKey());
+				JsonUtil.write(entry.getValue(), jsonWriter);
+			}
+			jsonWriter.endObject();
+			jsonWriter.flush();
+			out.getFD().sync();
+		}
+
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		JournalSegment.syncDirectory(directory);
+	}
+
+	private File latestSnapshot() {
+		File [] files = directory.listFiles();
+		File latest = null;
+		if (files != null) {
+			for (File file : files) {
+				if (file.getName().endsWith(SNAPSHOT_SUFFIX)
+						&& (latest == null || file.getName().compareTo(latest.getName()) > 0))
+					latest = file;
+			}
+		}
+		return latest;
+	}
+
+	private List<File> listSegments() {
+		File [] files = directory.listFiles();
+		List<File> segments = new ArrayList<>();
+		if (files != null) {
+			Arrays.sort(files);
+			for (File file : files) {
+				if (JournalSegment.isSegment(file))
+					segments.add(file);
+			}
+		}
+		return segments;
+	}
+
+	private static long parseSnapshotSequence(File file) throws IOException {
+		String name = file.getName();
+		try {
+			return Long.parseLong(name.substring(0, name.length() - SNAPSHOT_SUFFIX.length()));
+		}
+		catch(NumberFormatException e) {
+			throw new IOException("Invalid journal snapshot name: '" + name + "'");
+		}
+	}
+
+}
@@ -0,0 +1,8 @@
+/**
+ * Write-ahead journal of JSON Patches
+ *
+ * <p>{@link com.google.gson.patch.journal.PatchJournal} persists documents as
+ * a snapshot plus the patches applied since, and rebuilds them after a
+ * restart.</p>
+ */
+package com.google.gson.patch.journal;
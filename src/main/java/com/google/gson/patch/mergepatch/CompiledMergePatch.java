@@ -0,0 +1,130 @@
+package com.google.gson.patch.mergepatch;
+
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.JsonUtil;
+
+/**
+ * A {@link JsonMergePatch} prepared to be applied to many values
+ *
+ * <p>Compiling walks the patch once and turns each of its objects into a
+ * list of actions: remove a member, set a member, or merge into a member.
+ * Set values, and the objects merged into a member that is missing or not
+ * an object, are prepared once, without their null members.  Applying the
+ * plan then takes one lookup per merged member and none for the others; a
+ * member is set in place, so replaced members keep their position.  The
+ * patched value shares nothing with the plan.</p>
+ *
+ * <p>A plan is immutable: it may be applied concurrently to different
+ * values.</p>
+ */
+public final class CompiledMergePatch
+{
+
+	// -------------------------------------------------------------- Properties
+
+	/* The plan of an object patch, or null */
+	private final Node root;
+
+	/* The value of a patch that is not an object */
+	private final JsonElement value;
+
+	// ------------------------------------------------------------ Constructors
+
+	private CompiledMergePatch(Node root, JsonElement value) {
+		this.root = root;
+		this.value = value;
+	}
+
+	/**
+	 * Compiles a merge patch; later changes to the patch do not affect the
+	 * plan.
+	 */
+	public static CompiledMergePatch compile(JsonElement patch) {
+		if (patch == null)
+			throw new IllegalArgumentException("patch may not be NULL");
+
+		if (patch.isJsonObject())
+			return new CompiledMergePatch(new Node((JsonObject)patch), null);
+		return new CompiledMergePatch(null, JsonUtil.deepCopy(patch));
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	/**
+	 * Applies the plan to a value, like {@link JsonMergePatch#apply(
+	 * JsonElement)}; an object is patched in place.
+	 *
+	 * @param input the value to patch
+	 * @return the patched value
+	 */
+	public JsonElement apply(JsonElement input) {
+		if (input == null)
+			throw new IllegalArgumentException("input may not be NULL");
+
+		if (root == null)
+			return JsonUtil.deepCopy(value);
+		if (!input.isJsonObject())
+			return JsonUtil.deepCopy(root.replacement);
+
+		root.apply((JsonObject)input);
+		return input;
+	}
+
+	/*
+	 * The actions of an object patch, in patch order
+	 */
+	private static final class Node
+	{
+		final String[] names;
+		/* For each member: the value to set, or null to remove it... */
+		final JsonElement[] values;
+		/* ...unless it is merged into with a child plan */
+		final Node[] children;
+		/* The result of the patch on a missing member or a non-object */
+		final JsonObject replacement = new JsonObject();
+
+		Node(JsonObject patch) {
+			int size = patch.size();
+			names = new String[size];
+			values = new JsonElement[size];
+			children = new Node[size];
+
+			int i = 0;
+			for (Map.Entry<String, JsonElement> entry : patch.entrySet()) {
+				JsonElement member = entry.getValue();
+				names[i] = entry.getKey();
+				if (member.isJsonObject()) {
+					children[i] = new Node((JsonObject)member);
+					replacement.add(names[i], children[i].replacement);
+				}
+				else if (!member.isJsonNull()) {
+					values[i] = JsonUtil.deepCopy(member);
+					replacement.add(names[i], values[i]);
+				}
+				i++;
+			}
+		}
+
+		void apply(JsonObject target) {
+			for (int i = 0; i < names.length; i++) {
+				if (children[i] != null) {
+					JsonElement old = target.get(names[i]);
+					if (old != null && old.isJsonObject())
+						children[i].apply((JsonObject)old);
+					else
+						target.add(names[i], JsonUtil.deepCopy(children[i].replacement));
+				}
+				else if (values[i] == null) {
+					target.remove(names[i]);
+				}
+				else {
+					target.add(names[i], JsonUtil.deepCopy(values[i]));
+				}
+			}
+		}
+	}
+
+}
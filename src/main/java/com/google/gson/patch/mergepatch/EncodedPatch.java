@@ -0,0 +1,141 @@
+package com.google.gson.patch.mergepatch;
+
+import java.io.IOException;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchException;
+
+/**
+ * A patch together with its encoding, either a {@link JsonPatch} or a
+ * {@link JsonMergePatch}, so that a receiver knows how to apply it
+ *
+ * <p>As JSON, it is an object with the media type of the encoding and the
+ * patch:</p>
+ *
+ * <pre>
+ *     { "encoding": "application/merge-patch+json", "patch": { "a": 1 } }
+ * </pre>
+ *
+ * @see PatchEncodingChooser
+ */
+public final class EncodedPatch
+{
+
+	/**
+	 * How a patch is encoded
+	 */
+	public enum Encoding {
+		/* RFC 6902 */
+		JSON_PATCH("application/json-patch+json"),
+		/* RFC 7386 */
+		MERGE_PATCH("application/merge-patch+json");
+
+		private final String mediaType;
+
+		Encoding(String mediaType) {
+			this.mediaType = mediaType;
+		}
+
+		public String getMediaType() {
+			return mediaType;
+		}
+
+		/**
+		 * Returns the encoding with the given media type, or null
+		 */
+		public static Encoding fromMediaType(String mediaType) {
+			for (Encoding encoding : values()) {
+				if (encoding.mediaType.equals(mediaType))
+					return encoding;
+			}
+			return null;
+		}
+	}
+
+	// -------------------------------------------------------------- Properties
+
+	private final JsonPatch jsonPatch;
+	private final JsonMergePatch mergePatch;
+
+	// ------------------------------------------------------------ Constructors
+
+	public EncodedPatch(JsonPatch patch) {
+		if (patch == null)
+			throw new IllegalArgumentException("patch may not be NULL");
+
+		this.jsonPatch = patch;
+		this.mergePatch = null;
+	}
+
+	public EncodedPatch(JsonMergePatch patch) {
+		if (patch == null)
+			throw new IllegalArgumentException("patch may not be NULL");
+
+		this.jsonPatch = null;
+		this.mergePatch = patch;
+	}
+
+	// --------------------------------------------------------------- Accessors
+
+	public Encoding getEncoding() {
+		return jsonPatch != null ? Encoding.JSON_PATCH : Encoding.MERGE_PATCH;
+	}
+
+	/**
+	 * Returns the JSON Patch, or null if the patch is a merge patch
+	 */
+	public JsonPatch getJsonPatch() {
+		return jsonPatch;
+	}
+
+	/**
+	 * Returns the merge patch, or null if the patch is a JSON Patch
+	 */
+	public JsonMergePatch getMergePatch() {
+		return mergePatch;
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	/**
+	 * Applies the patch, according to its encoding.
+	 *
+	 * @param input the value to patch; it may be modified in place
+	 * @return the patched value
+	 * @throws JsonPatchException a JSON Patch failed to apply
+	 */
+	public JsonElement apply(JsonElement input) throws JsonPatchException {
+		if (jsonPatch != null)
+			return jsonPatch.apply(input);
+		return mergePatch.apply(input);
+	}
+
+	public JsonObject toJson() {
+		JsonObject ret = new JsonObject();
+		ret.addProperty("encoding", getEncoding().getMediaType());
+		ret.add("patch", jsonPatch != null ? jsonPatch.toJson() : mergePatch.toJson());
+		return ret;
+	}
+
+	public static EncodedPatch fromJson(JsonElement element) throws IOException {
+		if (!element.isJsonObject())
+			throw new IOException("EncodedPatch objects can only be parsed from JsonObject");
+
+		JsonObject obj = (JsonObject)element;
+		JsonElement encoding = obj.get("encoding");
+		JsonElement patch = obj.get("patch");
+		if (encoding == null || !encoding.isJsonPrimitive() || patch == null)
+			throw new IOException("EncodedPatch objects need an 'encoding' and a 'patch'");
+
+		Encoding type = Encoding.fromMediaType(encoding.getAsString());
+		if (type == null)
+			throw new IOException("Unknown patch encoding: " + encoding.getAsString());
+
+		if (type == Encoding.JSON_PATCH)
+			return new EncodedPatch(JsonPatch.fromJson(patch));
+		return new EncodedPatch(JsonMergePatch.fromJson(patch));
+	}
+
+}
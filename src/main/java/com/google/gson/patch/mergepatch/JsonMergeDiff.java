@@ -0,0 +1,148 @@
+package com.google.gson.patch.mergepatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.JsonUtil;
+import com.google.gson.pointer.JsonPointer;
+
+/**
+ * Generates a {@link JsonMergePatch} turning one value into another
+ *
+ * <p>Both values are walked once, together.  Members missing from the
+ * target become {@code null}s, objects present on both sides are diffed
+ * recursively, and any other changed value is replaced as a whole.</p>
+ *
+ * <p>A merge patch cannot set a member to {@code null}: a {@code null}
+ * member in the target (or in an object added by the patch) is removed when
+ * the patch is applied.  Such members are reported in the result; the patch
+ * is exact only when there are none.</p>
+ */
+public final class JsonMergeDiff
+{
+
+	/**
+	 * Result of a merge diff: the patch, and the members it cannot set to
+	 * {@code null}
+	 */
+	public static final class Result
+	{
+		private final JsonMergePatch patch;
+		private final List<JsonPointer> lostNulls;
+
+		Result(JsonMergePatch patch, List<JsonPointer> lostNulls) {
+			this.patch = patch;
+			this.lostNulls = lostNulls;
+		}
+
+		public JsonMergePatch getPatch() {
+			return patch;
+		}
+
+		/**
+		 * Tells whether applying the patch to the source yields the target
+		 */
+		public boolean isExact() {
+			return lostNulls.isEmpty();
+		}
+
+		/**
+		 * Returns the pointers of the target's {@code null} members, which
+		 * the patch removes (or does not add) instead
+		 */
+		public List<JsonPointer> getLostNulls() {
+			return lostNulls;
+		}
+	}
+
+	private JsonMergeDiff() {
+	}
+
+	public static Result diff(JsonElement source, JsonElement target) {
+		if (source == null)
+			throw new IllegalArgumentException("source may not be NULL");
+		if (target == null)
+			throw new IllegalArgumentException("target may not be NULL");
+
+		final List<JsonPointer> lostNulls = new ArrayList<>();
+
+		JsonElement patch;
+		if (source.isJsonObject() && target.isJsonObject()) {
+			patch = diffObjects(JsonPointer.EMPTY, (JsonObject)source, (JsonObject)target, lostNulls);
+			if (patch == null)
+				patch = new JsonObject();
+		}
+		else {
+			patch = replacement(JsonPointer.EMPTY, target, lostNulls);
+		}
+
+		return new Result(JsonMergePatch.fromJson(patch), lostNulls);
+	}
+
+	/*
+	 * Returns the patch of an object, or null if both objects are equal
+	 */
+	private static JsonObject diffObjects(JsonPointer pointer, JsonObject source, JsonObject target,
+			List<JsonPointer> lostNulls)
+	{
+		JsonObject patch = null;
+
+		for (Map.Entry<String, JsonElement> entry : source.entrySet()) {
+			if (!target.has(entry.getKey())) {
+				if (patch == null)
+					patch = new JsonObject();
+				patch.add(entry.getKey(), JsonNull.INSTANCE);
+			}
+		}
+
+		for (Map.Entry<String, JsonElement> entry : target.entrySet()) {
+			final String name = entry.getKey();
+			final JsonElement targetValue = entry.getValue();
+			final JsonElement sourceValue = source.get(name);
+
+			JsonElement value;
+			if (sourceValue != null && sourceValue.isJsonObject() && targetValue.isJsonObject())
+				value = diffObjects(pointer.append(name), (JsonObject)sourceValue, (JsonObject)targetValue, lostNulls);
+			else if (sourceValue != null && JsonUtil.jsonEquals(sourceValue, targetValue))
+				value = null;
+			else
+				value = replacement(pointer.append(name), targetValue, lostNulls);
+
+			if (value != null) {
+				if (patch == null)
+					patch = new JsonObject();
+				patch.add(name, value);
+			}
+		}
+
+		return patch;
+	}
+
+	/*
+	 * Returns the patch replacing a value with a copy of 'target'.  Its null
+	 * members are lost, as applying the patch merges it into an empty object.
+	 */
+	private static JsonElement replacement(JsonPointer pointer, JsonElement target, List<JsonPointer> lostNulls) {
+		if (target.isJsonNull() && !pointer.isEmpty())
+			lostNulls.add(pointer);
+		else if (target.isJsonObject())
+			collectNulls(pointer, (JsonObject)target, lostNulls);
+
+		return JsonUtil.deepCopy(target);
+	}
+
+	private static void collectNulls(JsonPointer pointer, JsonObject object, List<JsonPointer> lostNulls) {
+		for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+			final JsonElement value = entry.getValue();
+			if (value.isJsonNull())
+				lostNulls.add(pointer.append(entry.getKey()));
+			else if (value.isJsonObject())
+				collectNulls(pointer.append(entry.getKey()), (JsonObject)value, lostNulls);
+		}
+	}
+
+}
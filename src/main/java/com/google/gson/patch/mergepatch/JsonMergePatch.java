@@ -1,11 +1,18 @@
 package com.google.gson.patch.mergepatch;
 
+import java.io.IOException;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import com.google.gson.patch.JsonPatchException;
 import com.google.gson.patch.JsonUtil;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 
 /**
@@ -48,6 +55,22 @@ public class JsonMergePatch
 	public static JsonMergePatch fromJson(JsonElement patch) {
 		return new JsonMergePatch(patch);
 	}
+	
+	/**
+	 * Returns the patch itself, not a copy. It must not be modified: the
+	 * patch keeps using it, and documents read it before applying it.
+	 */
+	public JsonElement toJson() {
+		return patch;
+	}
+
+	/**
+	 * Prepares the patch to be applied to many values (see {@link
+	 * CompiledMergePatch})
+	 */
+	public CompiledMergePatch compile() {
+		return CompiledMergePatch.compile(patch);
+	}
 
     /**
      * Apply the patch to a given JSON value
@@ -94,8 +117,9 @@ public class JsonMergePatch
     		//otherwise, modify existing:
     		else {
     			JsonElement oldValue = inputObj.get(key);
+    			//a new object is patched like an empty one, without nulls
     			if (oldValue == null)
-    				inputObj.add(key, JsonUtil.deepCopy(newValue));
+    				inputObj.add(key, apply(JsonNull.INSTANCE, newValue));
     			else {
     				JsonElement modifiedValue = apply(oldValue, newValue);
     				if (modifiedValue != oldValue) {
@@ -108,5 +132,232 @@ public class JsonMergePatch
     	
     	return inputObj;
     }
-    
+
+    /**
+     * Composes two merge patches into one, which has the same effect as
+     * applying {@code first} and then {@code second} (see {@link
+     * #compose(JsonElement, JsonElement)})
+     *
+     * @param first the patch applied first
+     * @param second the patch applied next
+     * @return the composed patch, or null if no merge patch has that effect
+     */
+    public static JsonMergePatch compose(final JsonMergePatch first, final JsonMergePatch second) {
+    	if (first == null)
+    		throw new IllegalArgumentException("first may not be NULL");
+    	if (second == null)
+    		throw new IllegalArgumentException("second may not be NULL");
+
+    	JsonElement composed = compose(first.patch, second.patch);
+    	return composed == null ? null : new JsonMergePatch(composed);
+    }
+
+    /**
+     * Composes two merge patches into one, without the value they apply to
+     *
+     * <p>Objects in both patches are composed member by member: members of
+     * the second patch win, including nulls, and any other value of the
+     * second patch replaces what the first one has at the same place.</p>
+     *
+     * <p>A merge patch cannot replace an object with another object, it can
+     * only merge into it.  So when the first patch removes a member or sets
+     * it to something else than an object, and the second one then patches
+     * that member with an object, the result depends on the value patched:
+     * no single merge patch has the same effect, and this method returns
+     * null.  The same holds for the whole value, when the first patch is not
+     * an object and the second one is.</p>
+     *
+     * @param first the patch applied first
+     * @param second the patch applied next
+     * @return the composed patch, which shares nothing with the arguments,
+     *     or null if no merge patch has the same effect
+     */
+    public static JsonElement compose(final JsonElement first, final JsonElement second) {
+    	if (first == null)
+    		throw new IllegalArgumentException("first may not be NULL");
+    	if (second == null)
+    		throw new IllegalArgumentException("second may not be NULL");
+
+    	if (!second.isJsonObject())
+    		return JsonUtil.deepCopy(second);
+    	if (!first.isJsonObject())
+    		return null;
+
+    	JsonObject composed = (JsonObject)JsonUtil.deepCopy(first);
+    	return composeInto(composed, (JsonObject)second) ? composed : null;
+    }
+
+    /*
+     * Composes the second patch into a copy of the first one; returns false
+     * if no merge patch has the effect of both
+     */
+    private static boolean composeInto(final JsonObject composed, final JsonObject second) {
+    	for (Map.Entry<String, JsonElement> entry : second.entrySet()) {
+    		JsonElement earlier = composed.get(entry.getKey());
+    		JsonElement later = entry.getValue();
+
+    		//untouched by the first patch, or replaced => the second one wins
+    		if (earlier == null || !later.isJsonObject())
+    			composed.add(entry.getKey(), JsonUtil.deepCopy(later));
+    		//removed or replaced, then merged into
+    		else if (!earlier.isJsonObject())
+    			return false;
+    		else if (!composeInto((JsonObject)earlier, (JsonObject)later))
+    			return false;
+    	}
+    	return true;
+    }
+
+    /**
+     * Apply the patch to a value read from {@code input}, writing the
+     * patched value to {@code output} (see {@link #apply(JsonReader,
+     * JsonElement, JsonWriter)})
+     *
+     * @param input where to read the value to patch
+     * @param output where to write the patched value
+     * @throws IOException if reading or writing fails
+     */
+    public void apply(final JsonReader input, final JsonWriter output) throws IOException {
+    	apply(input, this.patch, output);
+    }
+
+    /**
+     * Reads one value from {@code input} and writes it, patched, to {@code
+     * output}, without building the value as a tree
+     *
+     * <p>Only the patch is held in memory.  Members the patch does not
+     * mention are copied token by token, removed and replaced members are
+     * skipped, and objects are only descended into where the patch holds an
+     * object.  The members are written in the same order as {@link
+     * #apply(JsonElement, JsonElement)} leaves them; nulls are written
+     * according to the settings of the writer, which is neither flushed nor
+     * closed.</p>
+     *
+     * @param input where to read the value to patch
+     * @param patch the merge patch
+     * @param output where to write the patched value
+     * @throws IOException if reading or writing fails
+     */
+    public static void apply(final JsonReader input, final JsonElement patch, final JsonWriter output)
+    		throws IOException {
+    	if (input == null)
+    		throw new IllegalArgumentException("input may not be NULL");
+    	if (patch == null)
+    		throw new IllegalArgumentException("patch may not be NULL");
+    	if (output == null)
+    		throw new IllegalArgumentException("output may not be NULL");
+
+    	if (patch.isJsonObject() && input.peek() == JsonToken.BEGIN_OBJECT) {
+    		applyToObject(input, (JsonObject)patch, output);
+    	}
+    	else {
+    		input.skipValue();
+    		write(patch, output);
+    	}
+    }
+
+    private static void applyToObject(final JsonReader input, final JsonObject patch,
+    		final JsonWriter output) throws IOException {
+    	//names of the members patched in place
+    	Set<String> patched = null;
+
+    	input.beginObject();
+    	output.beginObject();
+    	while (input.hasNext()) {
+    		String name = input.nextName();
+    		JsonElement value = patch.get(name);
+
+    		//not in the patch => unchanged
+    		if (value == null) {
+    			output.name(name);
+    			copy(input, output);
+    		}
+    		//object patching an object => patched in place
+    		else if (value.isJsonObject() && input.peek() == JsonToken.BEGIN_OBJECT) {
+    			output.name(name);
+    			applyToObject(input, (JsonObject)value, output);
+    			patched = add(patched, name);
+    		}
+    		//removed, or replaced at the end like apply() does
+    		else {
+    			input.skipValue();
+    		}
+    	}
+    	input.endObject();
+
+    	for (Map.Entry<String, JsonElement> entry : patch.entrySet()) {
+    		String name = entry.getKey();
+    		if (entry.getValue().isJsonNull() || (patched != null && patched.contains(name)))
+    			continue;
+
+    		output.name(name);
+    		write(entry.getValue(), output);
+    	}
+    	output.endObject();
+    }
+
+    private static Set<String> add(final Set<String> set, final String name) {
+    	Set<String> ret = (set == null) ? new HashSet<String>() : set;
+    	ret.add(name);
+    	return ret;
+    }
+
+    /*
+     * Writes a value of the patch as it replaces or adds a value: objects
+     * without their null members
+     */
+    private static void write(final JsonElement value, final JsonWriter output) throws IOException {
+    	JsonUtil.write(value.isJsonObject() ? apply(new JsonObject(), value) : value, output);
+    }
+
+    /*
+     * Copies one value, token by token
+     */
+    private static void copy(final JsonReader input, final JsonWriter output) throws IOException {
+    	int depth = 0;
+    	do {
+    		switch (input.peek()) {
+    		case BEGIN_ARRAY:
+    			input.beginArray();
+    			output.beginArray();
+    			depth++;
+    			break;
+    		case END_ARRAY:
+    			input.endArray();
+    			output.endArray();
+    			depth--;
+    			break;
+    		case BEGIN_OBJECT:
+    			input.beginObject();
+    			output.beginObject();
+    			depth++;
+    			break;
+    		case END_OBJECT:
+    			input.endObject();
+    			output.endObject();
+    			depth--;
+    			break;
+    		case NAME:
+    			output.name(input.nextName());
+    			break;
+    		case STRING:
+    			output.value(input.nextString());
+    			break;
+    		case NUMBER:
+    			//as written, so that no precision is lost
+    			output.jsonValue(input.nextString());
+    			break;
+    		case BOOLEAN:
+    			output.value(input.nextBoolean());
+    			break;
+    		case NULL:
+    			input.nextNull();
+    			output.nullValue();
+    			break;
+    		default:
+    			throw new IllegalStateException("Unexpected token: " + input.peek());
+    		}
+    	} while (depth > 0);
+    }
+
 }
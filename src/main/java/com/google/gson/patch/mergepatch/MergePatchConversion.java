@@ -0,0 +1,106 @@
+package com.google.gson.patch.mergepatch;
+
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.AddOperation;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchException;
+import com.google.gson.patch.JsonUtil;
+import com.google.gson.patch.RemoveOperation;
+import com.google.gson.patch.ReplaceOperation;
+import com.google.gson.pointer.JsonPointer;
+
+/**
+ * Converts between {@link JsonPatch JSON Patches} and {@link JsonMergePatch
+ * merge patches} that have the same effect on a given source value
+ *
+ * <p>Neither format can be converted without the value it applies to: a
+ * merge patch silently ignores the removal of a missing member, where a
+ * JSON Patch fails, and merges into objects, where a JSON Patch has to
+ * tell adding from replacing; a JSON Patch may change single array
+ * elements, which a merge patch can only replace as a whole array.  Given
+ * the source, a merge patch always has an equivalent JSON Patch, and a JSON
+ * Patch has an equivalent merge patch unless it sets a member to {@code
+ * null}.</p>
+ */
+public final class MergePatchConversion
+{
+
+	private MergePatchConversion() {
+	}
+
+	/**
+	 * Returns the JSON Patch that turns the source into what the merge patch
+	 * turns it into: removals of existing members, and additions or
+	 * replacements of the values set, in patch order.
+	 *
+	 * @param patch the merge patch
+	 * @param source the value the patch applies to; it is not modified
+	 * @return the equivalent JSON Patch
+	 */
+	public static JsonPatch toJsonPatch(JsonMergePatch patch, JsonElement source) {
+		if (patch == null)
+			throw new IllegalArgumentException("patch may not be NULL");
+		if (source == null)
+			throw new IllegalArgumentException("source may not be NULL");
+
+		JsonPatch ret = new JsonPatch();
+		JsonElement merge = patch.toJson();
+		if (merge.isJsonObject() && source.isJsonObject())
+			convert(JsonPointer.EMPTY, (JsonObject)merge, (JsonObject)source, ret);
+		else
+			ret.add(new ReplaceOperation(JsonPointer.EMPTY, replacement(merge)));
+		return ret;
+	}
+
+	private static void convert(JsonPointer pointer, JsonObject merge, JsonObject source, JsonPatch ret) {
+		for (Map.Entry<String, JsonElement> entry : merge.entrySet()) {
+			JsonPointer path = pointer.append(entry.getKey());
+			JsonElement value = entry.getValue();
+			JsonElement old = source.get(entry.getKey());
+
+			if (value.isJsonNull()) {
+				if (old != null)
+					ret.add(new RemoveOperation(path));
+			}
+			else if (value.isJsonObject() && old != null && old.isJsonObject())
+				convert(path, (JsonObject)value, (JsonObject)old, ret);
+			else if (old == null)
+				ret.add(new AddOperation(path, replacement(value)));
+			else
+				ret.add(new ReplaceOperation(path, replacement(value)));
+		}
+	}
+
+	/*
+	 * What a merge patch value turns a missing value or a non-object into
+	 */
+	private static JsonElement replacement(JsonElement value) {
+		return value.isJsonObject() ? JsonMergePatch.apply(JsonNull.INSTANCE, value) : JsonUtil.deepCopy(value);
+	}
+
+	/**
+	 * Returns the merge patch that turns the source into what the JSON Patch
+	 * turns it into, if there is one (see {@link JsonMergeDiff}).
+	 *
+	 * @param patch the JSON Patch
+	 * @param source the value the patch applies to; it is not modified
+	 * @return the equivalent merge patch, or null if the patch sets a member
+	 *     to {@code null}, which a merge patch cannot do
+	 * @throws JsonPatchException the patch does not apply to the source
+	 */
+	public static JsonMergePatch toMergePatch(JsonPatch patch, JsonElement source) throws JsonPatchException {
+		if (patch == null)
+			throw new IllegalArgumentException("patch may not be NULL");
+		if (source == null)
+			throw new IllegalArgumentException("source may not be NULL");
+
+		JsonElement target = patch.apply(JsonUtil.deepCopy(source));
+		JsonMergeDiff.Result result = JsonMergeDiff.diff(source, target);
+		return result.isExact() ? result.getPatch() : null;
+	}
+
+}
@@ -0,0 +1,226 @@
+package com.google.gson.patch.mergepatch;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+import com.google.gson.patch.CopyOperation;
+import com.google.gson.patch.DualPathOperation;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchException;
+import com.google.gson.patch.JsonPatchOperation;
+import com.google.gson.patch.JsonUtil;
+import com.google.gson.patch.PathValueOperation;
+import com.google.gson.patch.diff.JsonDiff;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Picks the cheaper encoding of a change, as a {@link JsonPatch} or as a
+ * {@link JsonMergePatch}
+ *
+ * <p>Both encodings are estimated by their serialized size in UTF-8 bytes
+ * plus {@link #getCostWeight() a weight} times their apply cost, counted in
+ * JSON values visited: the reference tokens of every path, plus the values
+ * written.  For a JSON Patch, that is the tokens of the paths (and of the
+ * {@code from} paths) of the operations, plus the values they carry or
+ * copy; for a merge patch, every value of the patch, each one being a
+ * member looked up or a value written.  The encoding with the lower
+ * estimate wins; a tie goes to the JSON Patch.  A merge patch is only
+ * considered when it is exact (see {@link MergePatchConversion}).</p>
+ *
+ * <p>The result is an {@link EncodedPatch}, which records the encoding so
+ * that the receiver can apply it.</p>
+ */
+public final class PatchEncodingChooser
+{
+
+	public static final double DEFAULT_COST_WEIGHT = 1.0;
+
+	// -------------------------------------------------------------- Properties
+
+	private double costWeight = DEFAULT_COST_WEIGHT;
+
+	// --------------------------------------------------------------- Accessors
+
+	/**
+	 * Returns how many bytes of patch one JSON value visited when applying
+	 * it is worth; 0 chooses by size alone
+	 */
+	public double getCostWeight() {
+		return costWeight;
+	}
+	public void setCostWeight(double costWeight) {
+		if (!(costWeight >= 0))
+			throw new IllegalArgumentException("costWeight may not be negative");
+
+		this.costWeight = costWeight;
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	/**
+	 * Diffs two values both ways and picks the cheaper patch.
+	 */
+	public EncodedPatch choose(JsonElement source, JsonElement target) {
+		if (source == null)
+			throw new IllegalArgumentException("source may not be NULL");
+		if (target == null)
+			throw new IllegalArgumentException("target may not be NULL");
+
+		JsonMergeDiff.Result merge = JsonMergeDiff.diff(source, target);
+		return choose(JsonDiff.diff(source, target), merge.isExact() ? merge.getPatch() : null, source);
+	}
+
+	/**
+	 * Picks the cheaper encoding of a JSON Patch meant for the source.
+	 *
+	 * @throws JsonPatchException the patch does not apply to the source
+	 */
+	public EncodedPatch choose(JsonPatch patch, JsonElement source) throws JsonPatchException {
+		if (patch == null)
+			throw new IllegalArgumentException("patch may not be NULL");
+
+		return choose(patch, MergePatchConversion.toMergePatch(patch, source), source);
+	}
+
+	/**
+	 * Picks the cheaper encoding of a merge patch meant for the source.
+	 */
+	public EncodedPatch choose(JsonMergePatch patch, JsonElement source) {
+		if (patch == null)
+			throw new IllegalArgumentException("patch may not be NULL");
+
+		return choose(MergePatchConversion.toJsonPatch(patch, source), patch, source);
+	}
+
+	private EncodedPatch choose(JsonPatch jsonPatch, JsonMergePatch mergePatch, JsonElement source) {
+		if (mergePatch == null)
+			return new EncodedPatch(jsonPatch);
+
+		double jsonEstimate = estimateSize(jsonPatch.toJson()) + costWeight * estimateCost(jsonPatch, source);
+		double mergeEstimate = estimateSize(mergePatch.toJson()) + costWeight * estimateCost(mergePatch);
+		return mergeEstimate < jsonEstimate ? new EncodedPatch(mergePatch) : new EncodedPatch(jsonPatch);
+	}
+
+	/**
+	 * Returns the size of a patch serialized as compact JSON, in UTF-8
+	 * bytes; the text is counted, not built.
+	 */
+	public static long estimateSize(JsonElement patch) {
+		if (patch == null)
+			throw new IllegalArgumentException("patch may not be NULL");
+
+		ByteCounter counter = new ByteCounter();
+		JsonWriter writer = new JsonWriter(counter);
+		//merge patches may be primitives
+		writer.setLenient(true);
+		try {
+			JsonUtil.write(patch, writer);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return counter.bytes;
+	}
+
+	/**
+	 * Returns the apply cost of a JSON Patch: the reference tokens of its
+	 * paths, plus the values it adds, or copies from the source.
+	 */
+	public static long estimateCost(JsonPatch patch, JsonElement source) {
+		if (patch == null)
+			throw new IllegalArgumentException("patch may not be NULL");
+
+		long cost = 0;
+		for (JsonPatchOperation op : patch.getOperations()) {
+			cost += op.getPath().size();
+			if (op instanceof DualPathOperation)
+				cost += ((DualPathOperation)op).getFrom().size();
+			if (op instanceof PathValueOperation && ((PathValueOperation)op).getValue() != null)
+				cost += values(((PathValueOperation)op).getValue());
+			if (op instanceof CopyOperation && source != null) {
+				JsonElement copied = ((CopyOperation)op).getFrom().resolve(source);
+				cost += copied == null ? 1 : values(copied);
+			}
+		}
+		return cost;
+	}
+
+	/**
+	 * Returns the apply cost of a merge patch: the values it holds.
+	 */
+	public static long estimateCost(JsonMergePatch patch) {
+		if (patch == null)
+			throw new IllegalArgumentException("patch may not be NULL");
+
+		return values(patch.toJson());
+	}
+
+	/*
+	 * Counts the values of a tree, containers included
+	 */
+	private static long values(JsonElement root) {
+		long count = 0;
+		ArrayDeque<JsonElement> stack = new ArrayDeque<>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			JsonElement element = stack.pop();
+			count++;
+			if (element.isJsonObject()) {
+				for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet())
+					stack.push(entry.getValue());
+			}
+			else if (element.isJsonArray()) {
+				for (JsonElement child : element.getAsJsonArray())
+					stack.push(child);
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * Counts the UTF-8 bytes of the characters written
+	 */
+	private static final class ByteCounter extends Writer
+	{
+		long bytes;
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			for (int i = off; i < off + len; i++)
+				count(cbuf[i]);
+		}
+
+		@Override
+		public void write(String str, int off, int len) {
+			for (int i = off; i < off + len; i++)
+				count(str.charAt(i));
+		}
+
+		@Override
+		public void write(int c) {
+			count((char)c);
+		}
+
+		private void count(char c) {
+			if (c < 0x80)
+				bytes += 1;
+			else if (c < 0x800 || Character.isSurrogate(c))
+				bytes += 2;
+			else
+				bytes += 3;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+}
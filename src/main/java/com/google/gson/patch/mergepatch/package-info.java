@@ -42,5 +42,12 @@
  * function is replicated in the javadoc for {@link
  * com.github.fge.jsonpatch.mergepatch.JsonMergePatch}, so you are encouraged to
  * read the javadoc for this class, and the RFC itself.</p>
+ *
+ * <p>Given the value a patch applies to, {@link
+ * com.google.gson.patch.mergepatch.MergePatchConversion} converts between
+ * both kinds of patches where no information is lost, and {@link
+ * com.google.gson.patch.mergepatch.PatchEncodingChooser} picks the cheaper
+ * one to ship, recording the choice in an {@link
+ * com.google.gson.patch.mergepatch.EncodedPatch}.</p>
  */
 package com.google.gson.patch.mergepatch;
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.google.gson.pointer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -12,17 +13,35 @@ import com.google.gson.JsonElement;
  * 
  * Code based on Jackson implementation of JsonPointer & TreePointer at:
  * https://github.com/fge/jackson-coreutils/blob/master/src/main/java/com/github/fge/jackson/jsonpointer/JsonPointer.java
+ * 
+ * Pointers made by append() only link to their parent, so that walking a
+ * document one level at a time does not copy the path at every level.  Their
+ * token list is built the first time it is needed (to resolve, compare, or
+ * print them), in time proportional to their size.
  */
 public class JsonPointer implements Iterable<ReferenceToken> {
 
 	public static final JsonPointer EMPTY = new JsonPointer(Collections.emptyList());
 	
-	List<ReferenceToken> tokens;
+	/* null until needed, for pointers made by append() */
+	private List<ReferenceToken> tokens;
+	/* set for pointers made by append() */
+	private final JsonPointer parent;
+	private final ReferenceToken last;
+	private final int size;
 	
 	// ------------------------------------------------------------ Constructors
 	
 	public JsonPointer(List<ReferenceToken> tokens) {
 		this.tokens = tokens;
+		this.parent = null;
+		this.last = null;
+		this.size = tokens.size();
+	}
+	private JsonPointer(JsonPointer parent, ReferenceToken last) {
+		this.parent = parent;
+		this.last = last;
+		this.size = parent.size + 1;
 	}
 	public JsonPointer(String path) throws JsonPointerException {
 		this(fromString(path));
@@ -31,29 +50,33 @@ public class JsonPointer implements Iterable<ReferenceToken> {
 	// ---------------------------------------------------------- Implementation
 	
 	public ReferenceToken getToken(int index) {
-		return tokens.get(index);
+		return tokens().get(index);
+	}
+	public int size() {
+		return size;
 	}
 	public ReferenceToken getLastToken() {
-		return (tokens.isEmpty()) ?
-				null : tokens.get(tokens.size()-1);
+		if (last != null)
+			return last;
+		return (size == 0) ?
+				null : tokens.get(size-1);
 	}
 	
 	/**
 	 * Returns the parent path
 	 */
 	public final JsonPointer parent() {
-		if (tokens.isEmpty())
+		if (parent != null)
+			return parent;
+		if (size == 0)
 			return null;
 		
-		List<ReferenceToken> newTokens = tokens.subList(0, tokens.size()-1);
+		List<ReferenceToken> newTokens = tokens.subList(0, size-1);
 		return new JsonPointer(newTokens);
 	}
 	
 	public final JsonPointer append(ReferenceToken token) {
-		List<ReferenceToken> newTokens = new ArrayList<>(tokens.size()+1);
-		newTokens.addAll(tokens);
-		newTokens.add(token);
-		return new JsonPointer(newTokens);
+		return new JsonPointer(this, token);
 	}
 	public final JsonPointer append(String token) {
 		return append(ReferenceToken.fromRaw(token));
@@ -74,7 +97,7 @@ public class JsonPointer implements Iterable<ReferenceToken> {
     public final JsonElement resolve(final JsonElement ctx)
     {
         JsonElement ret = ctx;
-        for (final ReferenceToken token : tokens) {
+        for (final ReferenceToken token : tokens()) {
             if (ret == null)
                 break;
             ret = token.resolve(ret);
@@ -90,18 +113,41 @@ public class JsonPointer implements Iterable<ReferenceToken> {
 	 */
 	public final boolean isEmpty()
 	{
-		return tokens.isEmpty();
+		return size == 0;
 	}
 
 	public final Iterator<ReferenceToken> iterator()
 	{
-		return tokens.iterator();
+		return tokens().iterator();
+	}
+
+	/*
+	 * Returns the tokens, collecting them from the parents the first time
+	 */
+	private List<ReferenceToken> tokens()
+	{
+		List<ReferenceToken> ret = tokens;
+		if (ret != null)
+			return ret;
+		
+		final ReferenceToken[] array = new ReferenceToken[size];
+		JsonPointer pointer = this;
+		for (; pointer.tokens == null; pointer = pointer.parent)
+			array[pointer.size-1] = pointer.last;
+		for (int i=0; i<pointer.size; i++)
+			array[i] = pointer.tokens.get(i);
+		
+		//Arrays.asList() holds the array in a final field, so the list can
+		//be shared between threads:
+		ret = Arrays.asList(array);
+		tokens = ret;
+		return ret;
 	}
 
 	@Override
 	public final int hashCode()
 	{
-		return tokens.hashCode();
+		return tokens().hashCode();
 	}
 
 	@Override
@@ -114,7 +160,7 @@ public class JsonPointer implements Iterable<ReferenceToken> {
 		if (getClass() != obj.getClass())
 			return false;
 		final JsonPointer other = (JsonPointer)obj;
-		return tokens.equals(other.tokens);
+		return size == other.size && tokens().equals(other.tokens());
 	}
 
 	@Override
@@ -125,7 +171,7 @@ public class JsonPointer implements Iterable<ReferenceToken> {
 		 * This works fine: a TokenResolver's .toString() always returns the
 		 * cooked representation of its underlying ReferenceToken.
 		 */
-		for (final ReferenceToken token: tokens)
+		for (final ReferenceToken token: tokens())
 			sb.append('/').append(token.toString());
 
 		return sb.toString();
@@ -0,0 +1,99 @@
+package com.google.gson.pointer;
+
+/**
+ * A JSON Pointer in which a {@code *} reference token matches any single
+ * token, such as {@code /orders/*} for every element of the {@code orders}
+ * array.
+ *
+ * <p>A member that is actually named {@code *} is matched by the wildcard
+ * too.</p>
+ */
+public final class JsonPointerPattern
+{
+
+	public static final String WILDCARD = "*";
+
+	private final JsonPointer pattern;
+
+	// ------------------------------------------------------------ Constructors
+
+	public JsonPointerPattern(JsonPointer pattern) {
+		if (pattern == null)
+			throw new IllegalArgumentException("pattern may not be NULL");
+
+		this.pattern = pattern;
+	}
+	public JsonPointerPattern(String pattern) throws JsonPointerException {
+		this(new JsonPointer(pattern));
+	}
+
+	// --------------------------------------------------------------- Accessors
+
+	/**
+	 * Returns the pattern as a pointer, wildcards included
+	 */
+	public JsonPointer getPointer() {
+		return pattern;
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	/**
+	 * Tells whether the pointer matches this pattern
+	 */
+	public boolean matches(JsonPointer pointer) {
+		return pointer.size() == pattern.size() && matchesPrefix(pointer, pointer.size());
+	}
+
+	/**
+	 * Tells whether every child of the given container matches this pattern,
+	 * that is whether the pattern is {@code parent} followed by a wildcard.
+	 */
+	public boolean matchesChildrenOf(JsonPointer parent) {
+		int size = parent.size();
+		return pattern.size() == size + 1
+				&& isWildcard(pattern.getToken(size))
+				&& matchesPrefix(parent, size);
+	}
+
+	/**
+	 * Tells whether this pattern may match pointers below the given one,
+	 * that is whether the pointer matches the beginning of the pattern
+	 */
+	public boolean matchesDescendantsOf(JsonPointer pointer) {
+		return pattern.size() > pointer.size() && matchesPrefix(pointer, pointer.size());
+	}
+
+	private boolean matchesPrefix(JsonPointer pointer, int length) {
+		for (int i = 0; i < length; i++) {
+			ReferenceToken expected = pattern.getToken(i);
+			if (!isWildcard(expected) && !expected.equals(pointer.getToken(i)))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isWildcard(ReferenceToken token) {
+		return WILDCARD.equals(token.getRaw());
+	}
+
+	@Override
+	public int hashCode() {
+		return pattern.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof JsonPointerPattern))
+			return false;
+		return pattern.equals(((JsonPointerPattern)obj).pattern);
+	}
+
+	@Override
+	public String toString() {
+		return pattern.toString();
+	}
+
+}
@@ -0,0 +1,11 @@
+package com.google.gson.patch;
+
+import java.io.IOException;
+
+public final class AppendIfAbsentOperationTest extends JsonPatchOperationTest
+{
+	public AppendIfAbsentOperationTest() throws IOException
+	{
+		super("append-if-absent");
+	}
+}
@@ -0,0 +1,11 @@
+package com.google.gson.patch;
+
+import java.io.IOException;
+
+public final class ConditionalSetOperationTest extends JsonPatchOperationTest
+{
+	public ConditionalSetOperationTest() throws IOException
+	{
+		super("set-if");
+	}
+}
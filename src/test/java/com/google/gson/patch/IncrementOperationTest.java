@@ -0,0 +1,11 @@
+package com.google.gson.patch;
+
+import java.io.IOException;
+
+public final class IncrementOperationTest extends JsonPatchOperationTest
+{
+	public IncrementOperationTest() throws IOException
+	{
+		super("increment");
+	}
+}
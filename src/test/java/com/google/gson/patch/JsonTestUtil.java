@@ -0,0 +1,113 @@
+package com.google.gson.patch;
+
+import java.util.Random;
+
+import org.junit.Assert;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.patch.diff.DiffOptions;
+import com.google.gson.patch.diff.JsonDiff;
+import com.google.gson.patch.mergepatch.JsonMergePatch;
+
+/**
+ * Helpers shared by the tests
+ */
+public final class JsonTestUtil {
+
+	private JsonTestUtil() {
+	}
+
+	public static JsonElement parse(String json) {
+		return new JsonParser().parse(json);
+	}
+
+	/**
+	 * Returns a random document nested at most {@code depth} levels: small
+	 * numbers and strings, and arrays and objects of up to five children,
+	 * with keys {@code k0} to {@code k7}.
+	 */
+	public static JsonElement randomDocument(Random random, int depth) {
+		int kind = depth == 0 ? random.nextInt(2) : random.nextInt(4);
+		switch (kind) {
+		case 0:
+			return new JsonPrimitive(random.nextInt(4));
+		case 1:
+			return new JsonPrimitive("s" + random.nextInt(3));
+		case 2:
+			JsonArray array = new JsonArray();
+			for (int i=random.nextInt(6); i>0; i--)
+				array.add(randomDocument(random, depth - 1));
+			return array;
+		default:
+			JsonObject object = new JsonObject();
+			for (int i=random.nextInt(6); i>0; i--)
+				object.add("k" + random.nextInt(8), randomDocument(random, depth - 1));
+			return object;
+		}
+	}
+
+	/**
+	 * Returns a random merge patch: mostly objects with keys {@code k0} to
+	 * {@code k2}, nested at most {@code depth} levels, with {@code null}
+	 * members if {@code nulls} is set.
+	 */
+	public static JsonElement randomMergePatch(Random random, int depth, boolean nulls) {
+		int kind = random.nextInt(depth > 0 ? 10 : 3);
+		if (kind == 0)
+			return nulls ? JsonNull.INSTANCE : new JsonPrimitive(0);
+		if (kind < 3)
+			return new JsonPrimitive(random.nextInt(3));
+		if (kind == 3) {
+			JsonArray array = new JsonArray();
+			array.add(random.nextInt(3));
+			return array;
+		}
+
+		JsonObject object = new JsonObject();
+		for (int i=random.nextInt(4); i>0; i--)
+			object.add("k" + random.nextInt(3), randomMergePatch(random, depth - 1, nulls));
+		return object;
+	}
+
+	/**
+	 * Asserts that the patch turns a copy of the source into the target.
+	 */
+	public static void assertApplies(JsonPatch patch, JsonElement source, JsonElement target) {
+		JsonElement actual;
+		try {
+			actual = patch.apply(JsonUtil.deepCopy(source));
+		}
+		catch (JsonPatchException e) {
+			throw new AssertionError("patch: " + patch.toJson(), e);
+		}
+		if (!JsonUtil.jsonEquals(target, actual))
+			Assert.fail("source: " + source + "\ntarget: " + target + "\npatch: " + patch.toJson()
+					+ "\nactual: " + actual);
+	}
+
+	/**
+	 * Asserts that the merge patch turns a copy of the source into the
+	 * target.
+	 */
+	public static void assertApplies(JsonMergePatch patch, JsonElement source, JsonElement target) {
+		JsonElement actual = JsonMergePatch.apply(JsonUtil.deepCopy(source), patch.toJson());
+		if (!JsonUtil.jsonEquals(target, actual))
+			Assert.fail("source: " + source + "\ntarget: " + target + "\npatch: " + patch.toJson()
+					+ "\nactual: " + actual);
+	}
+
+	/**
+	 * Diffs the source and the target, and asserts that the patch applies.
+	 */
+	public static JsonPatch assertDiffApplies(JsonElement source, JsonElement target, DiffOptions options) {
+		JsonPatch patch = JsonDiff.diff(source, target, options);
+		assertApplies(patch, source, target);
+		return patch;
+	}
+
+}
@@ -1,5 +1,9 @@
 package com.google.gson.patch;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
 import org.junit.Test;
 
 import com.google.gson.JsonArray;
@@ -7,6 +11,8 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.patch.JsonUtil;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import org.junit.Assert;
 
@@ -47,4 +53,38 @@ public class JsonUtilTest {
 		Assert.assertTrue(JsonUtil.jsonEquals(p1, p2));
 	}
 	
+	@Test
+	public void testHashConsistentWithEquals() {
+		JsonParser parser = new JsonParser();
+		String [][] equal = {
+				{"{\"a\":1,\"b\":[true,null]}", "{\"b\":[true,null],\"a\":1.0}"},
+				{"0.0", "-0.0"},
+				{"[false]", "[false]"}
+		};
+		for (String [] pair : equal) {
+			JsonElement e1 = parser.parse(pair[0]);
+			JsonElement e2 = parser.parse(pair[1]);
+			Assert.assertTrue(JsonUtil.jsonEquals(e1, e2));
+			Assert.assertEquals(JsonUtil.jsonHash(e1), JsonUtil.jsonHash(e2));
+		}
+		
+		Assert.assertNotEquals(JsonUtil.jsonHash(parser.parse("[1,2]")), JsonUtil.jsonHash(parser.parse("[2,1]")));
+		Assert.assertNotEquals(JsonUtil.jsonHash(parser.parse("[]")), JsonUtil.jsonHash(parser.parse("{}")));
+	}
+	
+	@Test
+	public void testParseAndWrite() throws IOException {
+		String JSON = "{\"a\":[1.50,null],\"b\":null,\"c\":\"<&>\"}";
+		JsonReader reader = new JsonReader(new StringReader("[" + JSON + ",2]"));
+		reader.beginArray();
+		JsonElement element = JsonUtil.parse(reader);
+		Assert.assertEquals(new JsonParser().parse(JSON), element);
+		Assert.assertEquals(2, JsonUtil.parse(reader).getAsInt());
+		reader.endArray();
+		
+		StringWriter out = new StringWriter();
+		JsonUtil.write(element, new JsonWriter(out));
+		Assert.assertEquals(JSON, out.toString());
+	}
+	
 }
@@ -0,0 +1,11 @@
+package com.google.gson.patch;
+
+import java.io.IOException;
+
+public final class MaxOperationTest extends JsonPatchOperationTest
+{
+	public MaxOperationTest() throws IOException
+	{
+		super("max");
+	}
+}
@@ -0,0 +1,11 @@
+package com.google.gson.patch;
+
+import java.io.IOException;
+
+public final class MinOperationTest extends JsonPatchOperationTest
+{
+	public MinOperationTest() throws IOException
+	{
+		super("min");
+	}
+}
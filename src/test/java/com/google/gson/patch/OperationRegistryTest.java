@@ -0,0 +1,96 @@
+package com.google.gson.patch;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.pointer.JsonPointer;
+
+import static com.google.gson.patch.JsonTestUtil.parse;
+
+public final class OperationRegistryTest
+{
+
+	/*
+	 * Multiplies the number at the path by the value
+	 */
+	private static final class MultiplyOperation extends PathValueOperation
+	{
+		MultiplyOperation(JsonPointer path, JsonElement value) {
+			super("x-multiply", path, value);
+		}
+
+		@Override
+		public JsonElement apply(JsonElement node) throws JsonPatchException {
+			JsonElement old = path.resolve(node);
+			if (old == null || !old.isJsonPrimitive() || !old.getAsJsonPrimitive().isNumber())
+				throw new JsonPatchException("No number at path: '" + path + "'");
+
+			JsonPrimitive product = new JsonPrimitive(old.getAsBigDecimal().multiply(value.getAsBigDecimal()));
+			return new ReplaceOperation(path, product).apply(node);
+		}
+	}
+
+	@Test
+	public void registeredOperationsRoundTrip() throws IOException, JsonPatchException
+	{
+		JsonPatchOperation.register("x-multiply",
+				obj -> new MultiplyOperation(new JsonPointer(obj.get("path").getAsString()), obj.get("value")));
+
+		JsonElement json = parse("[{\"op\":\"x-multiply\",\"path\":\"/a/1\",\"value\":3},"
+				+ "{\"op\":\"add\",\"path\":\"/b\",\"value\":true}]");
+		JsonPatch patch = JsonPatch.fromJson(json);
+		Assert.assertTrue(patch.getOperations().get(0) instanceof MultiplyOperation);
+		Assert.assertEquals(json, patch.toJson());
+		Assert.assertEquals(json, JsonPatch.fromJson(patch.toJson()).toJson());
+
+		JsonElement actual = patch.apply(parse("{\"a\":[1,2.5]}"));
+		Assert.assertTrue(actual.toString(), JsonUtil.jsonEquals(parse("{\"a\":[1,7.5],\"b\":true}"), actual));
+
+		PatchResult failed = patch.tryApply(parse("{\"a\":[1,\"x\"]}"));
+		Assert.assertFalse(failed.isSuccess());
+		Assert.assertEquals(PatchErrorCode.OPERATION_FAILED, failed.getErrorCode());
+	}
+
+	@Test
+	public void registeringAgainReplacesTheFactory() throws IOException, JsonPatchException
+	{
+		JsonPatchOperation.register("x-replaced", obj -> new RemoveOperation(new JsonPointer(obj.get("path").getAsString())));
+		JsonPatchOperation.register("x-replaced", obj -> new AddOperation(new JsonPointer(obj.get("path").getAsString()), obj.get("value")));
+
+		JsonPatchOperation op = JsonPatchOperation.fromJson(parse("{\"op\":\"x-replaced\",\"path\":\"/a\",\"value\":1}"));
+		Assert.assertTrue(op instanceof AddOperation);
+		Assert.assertEquals(parse("{\"a\":1}"), op.apply(parse("{}")));
+	}
+
+	@Test
+	public void nullRegistrationsAreRejected() throws IOException
+	{
+		try {
+			JsonPatchOperation.register(null, obj -> null);
+			Assert.fail("null op was registered");
+		}
+		catch (IllegalArgumentException e) {
+			//expected
+		}
+		try {
+			JsonPatchOperation.register("x-null", null);
+			Assert.fail("null factory was registered");
+		}
+		catch (IllegalArgumentException e) {
+			//expected
+		}
+
+		try {
+			JsonPatchOperation.fromJson(parse("{\"op\":\"x-null\",\"path\":\"/a\"}"));
+			Assert.fail("unregistered op was parsed");
+		}
+		catch (IOException e) {
+			Assert.assertEquals("Invalid 'op' type: 'x-null'", e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.google.gson.patch;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.JsonPointerException;
+
+import static com.google.gson.patch.JsonTestUtil.parse;
+
+public final class PatchResultTest
+{
+
+	@Test
+	public void tryApplyAgreesWithApplyOnTestSuite() throws IOException
+	{
+		for (JsonElement test : JsonLoader.fromResource("/jsonpatch/testsuite.json").getAsJsonArray()) {
+			JsonObject testObj = test.getAsJsonObject();
+			if (!testObj.has("patch"))
+				continue;
+
+			JsonPatch patch = JsonPatch.fromJson(testObj.get("patch"));
+			JsonElement source = testObj.get("doc");
+
+			String expected;
+			try {
+				expected = String.valueOf(patch.apply(JsonUtil.deepCopy(source)));
+			}
+			catch(JsonPatchException e) {
+				expected = null;
+			}
+
+			PatchResult result = patch.tryApply(JsonUtil.deepCopy(source));
+			if (expected == null) {
+				Assert.assertFalse(testObj.toString(), result.isSuccess());
+				Assert.assertNotNull(result.getMessage());
+			}
+			else {
+				Assert.assertTrue(testObj + ": " + result, result.isSuccess());
+				Assert.assertEquals(expected, String.valueOf(result.getResult()));
+			}
+		}
+	}
+
+	@Test
+	public void failureReportsIndexCodeAndPointer() throws IOException, JsonPointerException
+	{
+		JsonPatch patch = JsonPatch.fromJson(parse("["
+				+ "{\"op\":\"replace\",\"path\":\"/a\",\"value\":2},"
+				+ "{\"op\":\"test\",\"path\":\"/b\",\"value\":1},"
+				+ "{\"op\":\"remove\",\"path\":\"/a\"}]"));
+
+		PatchResult result = patch.tryApply(parse("{\"a\":1,\"b\":2}"));
+		Assert.assertFalse(result.isSuccess());
+		Assert.assertNull(result.getResult());
+		Assert.assertEquals(1, result.getFailedIndex());
+		Assert.assertEquals(PatchErrorCode.TEST_FAILED, result.getErrorCode());
+		Assert.assertEquals(new JsonPointer("/b"), result.getPointer());
+		Assert.assertEquals("Operation 1: Test operation failed for path '/b'", result.getMessage());
+
+		result = JsonPatch.fromJson(parse("[{\"op\":\"move\",\"from\":\"/x\",\"path\":\"/y\"}]"))
+				.tryApply(parse("{}"));
+		Assert.assertEquals(PatchErrorCode.NO_SUCH_PATH, result.getErrorCode());
+		Assert.assertEquals(new JsonPointer("/x"), result.getPointer());
+
+		result = JsonPatch.fromJson(parse("[{\"op\":\"remove\",\"path\":\"/2\"}]"))
+				.tryApply(parse("[1,2]"));
+		Assert.assertEquals(PatchErrorCode.NO_SUCH_PATH, result.getErrorCode());
+
+		result = JsonPatch.fromJson(parse("[{\"op\":\"increment\",\"path\":\"/n\",\"value\":1}]"))
+				.tryApply(parse("{\"n\":1}"));
+		Assert.assertTrue(result.isSuccess());
+		Assert.assertEquals(-1, result.getFailedIndex());
+		Assert.assertEquals("{\"n\":2}", result.getResult().toString());
+	}
+
+}
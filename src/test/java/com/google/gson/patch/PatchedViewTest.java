@@ -0,0 +1,126 @@
+package com.google.gson.patch;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.JsonPointerException;
+
+import static com.google.gson.patch.JsonTestUtil.parse;
+
+public final class PatchedViewTest
+{
+
+	@Test
+	public void viewMatchesApplyOnTestSuite() throws IOException
+	{
+		for (JsonElement test : JsonLoader.fromResource("/jsonpatch/testsuite.json").getAsJsonArray()) {
+			JsonObject testObj = test.getAsJsonObject();
+			if (!testObj.has("patch"))
+				continue;
+
+			JsonPatch patch = JsonPatch.fromJson(testObj.get("patch"));
+			JsonElement source = testObj.get("doc");
+			String before = source.toString();
+
+			JsonElement expected;
+			try {
+				expected = patch.apply(JsonUtil.deepCopy(source));
+			}
+			catch(JsonPatchException e) {
+				expected = null;
+			}
+
+			try {
+				JsonElement actual = PatchedView.of(source, patch).materialize();
+				Assert.assertNotNull("view should have failed: " + testObj, expected);
+				Assert.assertEquals(testObj.toString(), String.valueOf(expected), String.valueOf(actual));
+			}
+			catch(JsonPatchException e) {
+				Assert.assertNull("view should have succeeded: " + testObj, expected);
+			}
+
+			Assert.assertEquals(before, source.toString());
+		}
+	}
+
+	@Test
+	public void untouchedSubtreesAreShared() throws IOException, JsonPatchException, JsonPointerException
+	{
+		JsonElement base = parse("{\"a\":{\"x\":1},\"b\":{\"y\":[1,2,3]},\"c\":[{\"z\":1},{\"z\":2}]}");
+		JsonPatch patch = JsonPatch.fromJson(parse("["
+				+ "{\"op\":\"replace\",\"path\":\"/b/y/1\",\"value\":20},"
+				+ "{\"op\":\"add\",\"path\":\"/c/0/w\",\"value\":true},"
+				+ "{\"op\":\"move\",\"from\":\"/c/1\",\"path\":\"/d\"}]"));
+		String before = base.toString();
+
+		PatchedView view = PatchedView.of(base, patch);
+		Assert.assertEquals(before, base.toString());
+
+		JsonObject baseObj = base.getAsJsonObject();
+		Assert.assertSame(baseObj.get("a"), view.get(new JsonPointer("/a")));
+		Assert.assertSame(baseObj.getAsJsonArray("c").get(1), view.get(new JsonPointer("/d")));
+		Assert.assertEquals(20, view.get(new JsonPointer("/b/y/1")).getAsInt());
+		Assert.assertEquals("{\"z\":1,\"w\":true}", view.get(new JsonPointer("/c/0")).toString());
+		Assert.assertNull(view.get(new JsonPointer("/c/1")));
+
+		Assert.assertEquals(patch.apply(JsonUtil.deepCopy(base)).toString(), view.materialize().toString());
+	}
+
+	@Test
+	public void atomicUpdatesDoNotModifyBase() throws IOException, JsonPatchException, JsonPointerException
+	{
+		JsonElement base = parse("{\"n\":1,\"tags\":[\"a\"],\"s\":\"open\"}");
+		JsonPatch patch = JsonPatch.fromJson(parse("["
+				+ "{\"op\":\"increment\",\"path\":\"/n\",\"value\":2},"
+				+ "{\"op\":\"append-if-absent\",\"path\":\"/tags\",\"value\":\"b\"},"
+				+ "{\"op\":\"set-if\",\"path\":\"/s\",\"expect\":\"open\",\"value\":\"closed\"},"
+				+ "{\"op\":\"max\",\"path\":\"/m\",\"value\":5}]"));
+		String before = base.toString();
+
+		PatchedView view = PatchedView.of(base, patch);
+		Assert.assertEquals(before, base.toString());
+		Assert.assertEquals("{\"n\":3,\"tags\":[\"a\",\"b\"],\"s\":\"closed\",\"m\":5}", view.materialize().toString());
+		Assert.assertEquals(patch.apply(JsonUtil.deepCopy(base)).toString(), view.materialize().toString());
+	}
+
+	@Test
+	public void viewReportsTheErrorsOfApply() throws IOException
+	{
+		JsonElement base = parse("{\"a\":[1,2],\"n\":[3]}");
+		String[] patches = {
+			"[{\"op\":\"add\",\"path\":\"/a/+1\",\"value\":0}]",
+			"[{\"op\":\"remove\",\"path\":\"/a/+1\"}]",
+			"[{\"op\":\"replace\",\"path\":\"/a/01x\",\"value\":0}]",
+			"[{\"op\":\"add\",\"path\":\"/a/3\",\"value\":0}]",
+			"[{\"op\":\"remove\",\"path\":\"/x/y\"}]",
+			"[{\"op\":\"max\",\"path\":\"/n/0/z\",\"value\":1}]",
+			"[{\"op\":\"increment\",\"path\":\"/n/5\",\"value\":1}]"
+		};
+
+		for (String json : patches) {
+			JsonPatch patch = JsonPatch.fromJson(parse(json));
+			String expected = null;
+			try {
+				patch.apply(JsonUtil.deepCopy(base));
+			}
+			catch(JsonPatchException e) {
+				expected = e.getMessage();
+			}
+
+			try {
+				PatchedView.of(base, patch);
+				Assert.fail("view should have failed: " + json);
+			}
+			catch(JsonPatchException e) {
+				Assert.assertNotNull("apply should have failed: " + json, expected);
+				Assert.assertEquals(json, expected, e.getMessage());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+package com.google.gson.patch.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.patch.JsonLoader;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.PathValueOperation;
+import com.google.gson.patch.ReplaceOperation;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.JsonPointerException;
+
+public final class BinaryPatchCodecTest
+{
+
+	private static List<JsonPatch> loadPatches() throws IOException {
+		List<JsonPatch> patches = new ArrayList<>();
+		for (JsonElement test : JsonLoader.fromResource("/jsonpatch/testsuite.json").getAsJsonArray()) {
+			JsonObject testObj = test.getAsJsonObject();
+			if (testObj.has("patch") && !testObj.has("error"))
+				patches.add(JsonPatch.fromJson(testObj.get("patch")));
+		}
+		return patches;
+	}
+
+	@Test
+	public void patchesRoundTripExactly() throws IOException
+	{
+		List<JsonPatch> patches = loadPatches();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BinaryPatchWriter writer = new BinaryPatchWriter(bytes);
+		int textSize = 0;
+		for (JsonPatch patch : patches) {
+			writer.write(patch);
+			textSize += patch.toJson().toString().getBytes(StandardCharsets.UTF_8).length;
+		}
+		writer.close();
+
+		BinaryPatchReader reader = new BinaryPatchReader(new ByteArrayInputStream(bytes.toByteArray()));
+		for (JsonPatch expected : patches) {
+			JsonPatch actual = reader.read();
+			Assert.assertNotNull(actual);
+			Assert.assertEquals(expected.toJson().toString(), actual.toJson().toString());
+		}
+		Assert.assertNull(reader.read());
+		reader.close();
+
+		Assert.assertTrue("binary size " + bytes.size() + " >= text size " + textSize,
+				bytes.size() < textSize / 2);
+	}
+
+	@Test
+	public void repeatedPointersUseDictionary() throws IOException
+	{
+		JsonPatch patch = new JsonPatch();
+		for (int i=0; i<100; i++) {
+			patch.add(JsonPatch.fromJson(new JsonParser().parse(
+					"[{\"op\":\"replace\",\"path\":\"/customers/orders/" + i + "/status\",\"value\":\"shipped\"}]"))
+					.getOperations().get(0));
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BinaryPatchWriter writer = new BinaryPatchWriter(bytes);
+		writer.write(patch);
+		int firstSize = bytes.size();
+		writer.write(patch);
+		int secondSize = bytes.size() - firstSize;
+		writer.close();
+
+		BinaryPatchReader reader = new BinaryPatchReader(new ByteArrayInputStream(bytes.toByteArray()));
+		Assert.assertEquals(patch.toJson(), reader.read().toJson());
+		Assert.assertEquals(patch.toJson(), reader.read().toJson());
+		reader.close();
+
+		//the second copy refers to known pointers only (op code, id, count 0, value):
+		Assert.assertTrue(secondSize < firstSize);
+		Assert.assertTrue(secondSize < patch.toJson().toString().length() / 4);
+	}
+
+	@Test
+	public void extensionOperationsRoundTrip() throws IOException
+	{
+		JsonPatch patch = JsonPatch.fromJson(new JsonParser().parse("["
+				+ "{\"op\":\"increment\",\"path\":\"/count\",\"value\":1},"
+				+ "{\"op\":\"append-if-absent\",\"path\":\"/tags\",\"value\":\"x\"},"
+				+ "{\"op\":\"set-if\",\"path\":\"/state\",\"value\":\"closed\",\"expect\":\"open\"}]"));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BinaryPatchWriter writer = new BinaryPatchWriter(bytes);
+		writer.write(patch);
+		writer.close();
+
+		BinaryPatchReader reader = new BinaryPatchReader(new ByteArrayInputStream(bytes.toByteArray()));
+		Assert.assertEquals(patch.toJson(), reader.read().toJson());
+		reader.close();
+	}
+
+	@Test
+	public void numbersKeepTheirText() throws IOException, JsonPointerException
+	{
+		JsonPatch patch = JsonPatch.fromJson(new JsonParser().parse(
+				"[{\"op\":\"add\",\"path\":\"/a\",\"value\":[1.50,-0.0,1e400,12345678901234567890,-7]}]"));
+		patch.add(new ReplaceOperation(new JsonPointer("/b"), new JsonPrimitive(Double.NaN)));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BinaryPatchWriter writer = new BinaryPatchWriter(bytes);
+		writer.write(patch);
+		writer.close();
+
+		BinaryPatchReader reader = new BinaryPatchReader(new ByteArrayInputStream(bytes.toByteArray()));
+		JsonPatch actual = reader.read();
+		reader.close();
+		Assert.assertEquals("[1.50,-0.0,1e400,12345678901234567890,-7]",
+				((PathValueOperation)actual.getOperations().get(0)).getValue().toString());
+		Assert.assertTrue(Double.isNaN(((PathValueOperation)actual.getOperations().get(1)).getValue().getAsDouble()));
+	}
+
+}
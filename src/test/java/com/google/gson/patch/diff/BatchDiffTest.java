@@ -0,0 +1,82 @@
+package com.google.gson.patch.diff;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchException;
+import com.google.gson.patch.JsonUtil;
+
+public final class BatchDiffTest
+{
+
+	private static JsonObject document(int id, int version) {
+		JsonObject document = new JsonObject();
+		document.addProperty("id", id);
+		document.addProperty("version", version);
+		return document;
+	}
+
+	@Test
+	public void everyPairIsDiffedAndCounted() throws InterruptedException, JsonPatchException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			BatchDiff batch = new BatchDiff(new DiffOptions(), executor, 16);
+			Map<Integer, JsonPatch> patches = new ConcurrentHashMap<>();
+
+			Stream<BatchDiff.Pair<Integer>> pairs = IntStream.range(0, 1000).mapToObj(
+					i -> new BatchDiff.Pair<>(i, document(i, 1), document(i, i % 3 == 0 ? 1 : 2)));
+			batch.diff(pairs, patches::put);
+
+			Assert.assertEquals(1000, patches.size());
+			Assert.assertEquals(1000, batch.getPairsCompared());
+			Assert.assertEquals(334, batch.getPairsEqual());
+			Assert.assertEquals(666, batch.getOperationsEmitted());
+
+			for (Map.Entry<Integer, JsonPatch> entry : patches.entrySet()) {
+				int i = entry.getKey();
+				JsonElement actual = entry.getValue().apply(document(i, 1));
+				Assert.assertTrue(JsonUtil.jsonEquals(document(i, i % 3 == 0 ? 1 : 2), actual));
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void callbackFailureStopsTheBatch() throws InterruptedException
+	{
+		BatchDiff batch = new BatchDiff(new DiffOptions(), Runnable::run);
+		List<Integer> seen = new ArrayList<>();
+		List<BatchDiff.Pair<Integer>> pairs = new ArrayList<>();
+		for (int i=0; i<10; i++)
+			pairs.add(new BatchDiff.Pair<>(i, document(i, 1), document(i, 2)));
+
+		try {
+			batch.diff(pairs.iterator(), (key, patch) -> {
+				seen.add(key);
+				if (key == 3)
+					throw new IllegalStateException("boom");
+			});
+			Assert.fail("exception expected");
+		}
+		catch (IllegalStateException e) {
+			Assert.assertEquals("boom", e.getMessage());
+		}
+		Assert.assertEquals(4, seen.size());
+	}
+
+}
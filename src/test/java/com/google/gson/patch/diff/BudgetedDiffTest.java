@@ -0,0 +1,66 @@
+package com.google.gson.patch.diff;
+
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.patch.JsonPatchException;
+import com.google.gson.pointer.JsonPointer;
+
+import static com.google.gson.patch.JsonTestUtil.assertApplies;
+import static com.google.gson.patch.JsonTestUtil.parse;
+
+public final class BudgetedDiffTest
+{
+
+	private static final JsonElement SOURCE = parse(
+			"{\"a\":{\"x\":1,\"y\":{\"z\":1}},\"b\":{\"x\":1},\"c\":[1,2,3]}");
+	private static final JsonElement TARGET = parse(
+			"{\"a\":{\"x\":2,\"y\":{\"z\":2}},\"b\":{\"x\":2},\"c\":[1,2,4]}");
+
+	private static DiffResult assertDiffApplies(DiffOptions options) {
+		DiffResult result = JsonDiff.diffResult(SOURCE, TARGET, options);
+		assertApplies(result.getPatch(), SOURCE, TARGET);
+		return result;
+	}
+
+	@Test
+	public void unlimitedDiffIsNotDegraded() throws JsonPatchException
+	{
+		DiffResult result = assertDiffApplies(new DiffOptions());
+		Assert.assertFalse(result.isDegraded());
+		Assert.assertEquals(JsonDiff.diff(SOURCE, TARGET).toJson(), result.getPatch().toJson());
+	}
+
+	@Test
+	public void noNodeBudgetReplacesTheRoot() throws JsonPatchException
+	{
+		DiffOptions options = new DiffOptions();
+		options.setMaxNodes(0);
+		DiffResult result = assertDiffApplies(options);
+		Assert.assertEquals(Collections.singletonList(JsonPointer.EMPTY), result.getDegraded());
+		Assert.assertEquals(1, result.getPatch().getOperations().size());
+	}
+
+	@Test
+	public void operationBudgetDegradesRemainingSubtrees() throws JsonPatchException
+	{
+		DiffOptions options = new DiffOptions();
+		options.setMaxOperations(0);
+		DiffResult result = assertDiffApplies(options);
+		// the first operation spends the budget: its siblings are replaced
+		Assert.assertTrue(result.getDegraded().size() >= 2);
+		Assert.assertEquals(result.getDegraded().size() + 1, result.getPatch().getOperations().size());
+	}
+
+	@Test
+	public void spentTimeBudgetDegrades() throws JsonPatchException
+	{
+		DiffOptions options = new DiffOptions();
+		options.setTimeBudgetMillis(0);
+		Assert.assertTrue(assertDiffApplies(options).isDegraded());
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.google.gson.patch.diff;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.JsonElement;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchException;
+import com.google.gson.patch.JsonUtil;
+
+/**
+ * Measures {@link JsonDiff} on generated document pairs: time, allocated
+ * bytes, operations, serialized patch size, and whether each patch turns
+ * the source into the target
+ *
+ * <p>Run {@link #main(String[])} for a report at a realistic scale, e.g.
+ * {@code java ... DiffHarness 42 200 20000 50}: seed, pairs, document size,
+ * mutations per pair.  Allocations are only measured on JVMs that report
+ * them per thread.</p>
+ */
+final class DiffHarness
+{
+
+	static final class Report
+	{
+		int pairs;
+		int correct;
+		long nanos;
+		long allocatedBytes;
+		long operations;
+		long patchBytes;
+		final List<Integer> failures = new ArrayList<>();
+
+		@Override
+		public String toString() {
+			return String.format("pairs=%d correct=%d time=%.1fms alloc=%s operations=%d patchBytes=%d",
+					pairs, correct, nanos / 1e6,
+					allocatedBytes < 0 ? "n/a" : (allocatedBytes / 1024) + "KB",
+					operations, patchBytes);
+		}
+	}
+
+	private DiffHarness() {
+	}
+
+	static Report run(DocumentPairGenerator generator, int pairs, DiffOptions options) {
+		Report report = new Report();
+		for (int i = 0; i < pairs; i++) {
+			BatchDiff.Pair<Integer> pair = generator.next(i);
+			JsonElement source = pair.getSource();
+			JsonElement target = pair.getTarget();
+
+			long allocated = allocatedBytes();
+			long start = System.nanoTime();
+			JsonPatch patch = JsonDiff.diff(source, target, options);
+			report.nanos += System.nanoTime() - start;
+			report.allocatedBytes = allocated < 0 || report.allocatedBytes < 0
+					? -1 : report.allocatedBytes + allocatedBytes() - allocated;
+
+			report.pairs++;
+			report.operations += patch.getOperations().size();
+			report.patchBytes += patch.toJson().toString().getBytes(StandardCharsets.UTF_8).length;
+			if (applies(patch, source, target))
+				report.correct++;
+			else
+				report.failures.add(i);
+		}
+		return report;
+	}
+
+	private static boolean applies(JsonPatch patch, JsonElement source, JsonElement target) {
+		try {
+			return JsonUtil.jsonEquals(target, patch.apply(JsonUtil.deepCopy(source)));
+		}
+		catch (JsonPatchException e) {
+			return false;
+		}
+	}
+
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	public static void main(String[] args) {
+		long seed = args.length > 0 ? Long.parseLong(args[0]) : 42;
+		int pairs = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int size = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+		int mutations = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+		DiffOptions sequence = new DiffOptions();
+		sequence.setArrayStrategy(DiffOptions.ArrayStrategy.SEQUENCE);
+
+		for (DocumentPairGenerator.Mutation mutation : DocumentPairGenerator.Mutation.values()) {
+			for (int strategy = 0; strategy < 2; strategy++) {
+				DocumentPairGenerator generator = generator(seed, size, mutations);
+				for (DocumentPairGenerator.Mutation other : DocumentPairGenerator.Mutation.values())
+					generator.setWeight(other, other == mutation ? 1 : 0);
+				Report report = run(generator, pairs, strategy == 0 ? new DiffOptions() : sequence);
+				System.out.println(mutation + (strategy == 0 ? " index    " : " sequence ") + report);
+			}
+		}
+		System.out.println("MIXED index    " + run(generator(seed, size, mutations), pairs, new DiffOptions()));
+		System.out.println("MIXED sequence " + run(generator(seed, size, mutations), pairs, sequence));
+	}
+
+	private static DocumentPairGenerator generator(long seed, int size, int mutations) {
+		DocumentPairGenerator generator = new DocumentPairGenerator(seed);
+		generator.setSize(size);
+		generator.setMutations(mutations);
+		return generator;
+	}
+
+}
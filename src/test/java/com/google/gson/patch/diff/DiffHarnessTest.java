@@ -0,0 +1,60 @@
+package com.google.gson.patch.diff;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.pointer.JsonPointerException;
+
+public final class DiffHarnessTest
+{
+
+	private static DocumentPairGenerator generator(long seed) {
+		DocumentPairGenerator generator = new DocumentPairGenerator(seed);
+		generator.setSize(300);
+		generator.setMutations(8);
+		return generator;
+	}
+
+	private static void assertAllCorrect(DiffHarness.Report report) {
+		Assert.assertTrue(report.toString() + " failed: " + report.failures, report.failures.isEmpty());
+	}
+
+	@Test
+	public void generatedPairsAreReproducible()
+	{
+		BatchDiff.Pair<Integer> first = generator(5).next(0);
+		BatchDiff.Pair<Integer> second = generator(5).next(0);
+		Assert.assertEquals(first.getSource(), second.getSource());
+		Assert.assertEquals(first.getTarget(), second.getTarget());
+		Assert.assertNotEquals(first.getSource(), first.getTarget());
+	}
+
+	@Test
+	public void everyMutationIsDiffedCorrectly()
+	{
+		DiffOptions sequence = new DiffOptions();
+		sequence.setArrayStrategy(DiffOptions.ArrayStrategy.SEQUENCE);
+
+		for (DocumentPairGenerator.Mutation mutation : DocumentPairGenerator.Mutation.values()) {
+			for (DiffOptions options : new DiffOptions[] { new DiffOptions(), sequence }) {
+				DocumentPairGenerator generator = generator(mutation.ordinal());
+				for (DocumentPairGenerator.Mutation other : DocumentPairGenerator.Mutation.values())
+					generator.setWeight(other, other == mutation ? 1 : 0);
+				assertAllCorrect(DiffHarness.run(generator, 20, options));
+			}
+		}
+	}
+
+	@Test
+	public void keyedArraysAreDiffedCorrectly() throws JsonPointerException
+	{
+		DiffOptions options = new DiffOptions();
+		options.setArrayKey("/*/*", "/id");
+		options.setArrayKey("/*/*/*", "/id");
+
+		DocumentPairGenerator generator = generator(9);
+		generator.setMaxDepth(2);
+		assertAllCorrect(DiffHarness.run(generator, 50, options));
+	}
+
+}
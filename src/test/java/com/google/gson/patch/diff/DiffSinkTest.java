@@ -0,0 +1,103 @@
+package com.google.gson.patch.diff;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchOperation;
+import com.google.gson.stream.JsonWriter;
+
+import static com.google.gson.patch.JsonTestUtil.parse;
+import static com.google.gson.patch.JsonTestUtil.randomDocument;
+
+public final class DiffSinkTest
+{
+
+	private static void assertSameAsPatch(JsonElement source, JsonElement target, DiffOptions options)
+			throws IOException
+	{
+		JsonPatch patch = JsonDiff.diff(source, target, options);
+
+		StringWriter out = new StringWriter();
+		JsonDiff.diff(source, target, options, new JsonWriter(out));
+		Assert.assertEquals("source: " + source + "\ntarget: " + target,
+				patch.toJson(), parse(out.toString()));
+	}
+
+	@Test
+	public void writtenPatchIsTheDiff() throws IOException
+	{
+		assertSameAsPatch(parse("{\"a\":1,\"b\":[1,2,3],\"c\":{\"d\":true}}"),
+				parse("{\"b\":[3,1],\"c\":{\"d\":true},\"e\":1}"), new DiffOptions());
+		assertSameAsPatch(parse("{\"a\":{\"x\":[1]},\"b\":2}"), parse("{\"c\":{\"x\":[1]},\"b\":3}"),
+				new DiffOptions());
+		assertSameAsPatch(parse("1"), parse("1"), new DiffOptions());
+		assertSameAsPatch(parse("[]"), parse("{}"), new DiffOptions());
+	}
+
+	@Test
+	public void randomDiffsAreWrittenUnchanged() throws IOException
+	{
+		Random random = new Random(7);
+		DiffOptions sequence = new DiffOptions();
+		sequence.setArrayStrategy(DiffOptions.ArrayStrategy.SEQUENCE);
+		for (int round=0; round<300; round++) {
+			JsonElement source = randomDocument(random, 3);
+			JsonElement target = randomDocument(random, 3);
+			assertSameAsPatch(source, target, new DiffOptions());
+			assertSameAsPatch(source, target, sequence);
+		}
+	}
+
+	@Test
+	public void removalsThatCannotMoveAreNotHeldBack() throws IOException
+	{
+		JsonObject source = new JsonObject();
+		JsonObject target = new JsonObject();
+		for (int i=0; i<100; i++) {
+			source.addProperty("removed" + i, i);
+			target.addProperty("added" + i, -i - 1);
+		}
+
+		List<Integer> seenAtRemoval = new ArrayList<>();
+		List<JsonPatchOperation> operations = new ArrayList<>();
+		JsonDiff.diff(source, target, new DiffOptions(), op -> {
+			operations.add(op);
+			if ("remove".equals(op.getOp()))
+				seenAtRemoval.add(operations.size());
+		});
+
+		Assert.assertEquals(200, operations.size());
+		for (int i=0; i<seenAtRemoval.size(); i++)
+			Assert.assertEquals(i + 1, (int)seenAtRemoval.get(i));
+	}
+
+	@Test
+	public void removalIsHeldBackUntilItBecomesAMove() throws IOException
+	{
+		List<JsonPatchOperation> operations = new ArrayList<>();
+		JsonDiff.diff(parse("{\"a\":{\"x\":1},\"b\":2}"), parse("{\"b\":3,\"c\":{\"x\":1}}"),
+				new DiffOptions(), operations::add);
+
+		Assert.assertEquals(2, operations.size());
+		Assert.assertEquals("move", operations.get(0).getOp());
+		Assert.assertEquals("replace", operations.get(1).getOp());
+	}
+
+	@Test(expected = IOException.class)
+	public void sinkFailureIsRethrown() throws IOException
+	{
+		JsonDiff.diff(parse("{\"a\":1}"), parse("{\"a\":2}"), new DiffOptions(), op -> {
+			throw new IOException("full");
+		});
+	}
+
+}
@@ -0,0 +1,211 @@
+package com.google.gson.patch.diff;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.patch.JsonUtil;
+
+/**
+ * Generates pairs of documents for diff tests and measurements
+ *
+ * <p>The source is a random document of about {@link #setSize(int) size}
+ * values; the target is a copy of it with {@link #setMutations(int)
+ * mutations} applied, picked according to their weights.  Array elements
+ * are objects with a unique {@code id} member (so that arrays can be keyed
+ * at {@code /id}) or numbers.  The same seed and settings always generate
+ * the same pairs.</p>
+ */
+final class DocumentPairGenerator
+{
+
+	enum Mutation {
+		/* adds an object member or inserts an array element */
+		INSERT,
+		/* removes a member or an element */
+		DELETE,
+		/* moves an array element elsewhere in its array */
+		REORDER,
+		/* renames an object member */
+		RENAME,
+		/* changes a number or a string */
+		CHANGE
+	}
+
+	private final Random random;
+	private int size = 1000;
+	private int maxDepth = 6;
+	private int maxWidth = 8;
+	private int arrayLength = 20;
+	private int mutations = 10;
+	private final int[] weights = { 1, 1, 1, 1, 1 };
+
+	private int budget;
+	private int nextId;
+
+	DocumentPairGenerator(long seed) {
+		this.random = new Random(seed);
+	}
+
+	// --------------------------------------------------------------- Accessors
+
+	void setSize(int size) {
+		this.size = size;
+	}
+	void setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+	void setMaxWidth(int maxWidth) {
+		this.maxWidth = maxWidth;
+	}
+	void setArrayLength(int arrayLength) {
+		this.arrayLength = arrayLength;
+	}
+	void setMutations(int mutations) {
+		this.mutations = mutations;
+	}
+	void setWeight(Mutation mutation, int weight) {
+		weights[mutation.ordinal()] = weight;
+	}
+
+	// ---------------------------------------------------------- Implementation
+
+	BatchDiff.Pair<Integer> next(int key) {
+		budget = size;
+		JsonObject source = new JsonObject();
+		while (budget > 0)
+			source.add("f" + source.size(), value(1));
+
+		JsonElement target = JsonUtil.deepCopy(source);
+		for (int i = 0; i < mutations; i++)
+			mutate(target);
+		return new BatchDiff.Pair<>(key, source, target);
+	}
+
+	private JsonElement value(int depth) {
+		budget--;
+		int kind = depth >= maxDepth || budget <= 0 ? 0 : random.nextInt(4);
+		switch (kind) {
+		case 0:
+			return primitive();
+		case 1:
+		case 2:
+			JsonObject object = new JsonObject();
+			for (int i = 1 + random.nextInt(maxWidth); i > 0 && budget > 0; i--)
+				object.add("f" + object.size(), value(depth + 1));
+			return object;
+		default:
+			JsonArray array = new JsonArray();
+			boolean entities = random.nextBoolean();
+			for (int i = random.nextInt(arrayLength + 1); i > 0 && budget > 0; i--)
+				array.add(entities ? entity(depth + 1) : primitive());
+			return array;
+		}
+	}
+
+	private JsonObject entity(int depth) {
+		JsonObject entity = new JsonObject();
+		entity.addProperty("id", nextId++);
+		for (int i = random.nextInt(maxWidth); i > 0 && budget > 0; i--)
+			entity.add("f" + i, value(depth + 1));
+		return entity;
+	}
+
+	private JsonPrimitive primitive() {
+		return random.nextBoolean()
+				? new JsonPrimitive(random.nextInt(100))
+				: new JsonPrimitive("s" + random.nextInt(100));
+	}
+
+	private void mutate(JsonElement document) {
+		List<JsonElement> containers = new ArrayList<>();
+		collect(document, containers);
+
+		int total = 0;
+		for (int weight : weights)
+			total += weight;
+		int pick = random.nextInt(total);
+		Mutation mutation = Mutation.values()[0];
+		for (Mutation candidate : Mutation.values()) {
+			mutation = candidate;
+			pick -= weights[candidate.ordinal()];
+			if (pick < 0)
+				break;
+		}
+
+		JsonElement container = containers.get(random.nextInt(containers.size()));
+		int count = container.isJsonArray() ? container.getAsJsonArray().size() : container.getAsJsonObject().size();
+		budget = 3;
+		switch (mutation) {
+		case INSERT:
+			if (container.isJsonArray())
+				JsonUtil.add(container.getAsJsonArray(), random.nextBoolean() ? entity(maxDepth) : primitive(),
+						random.nextInt(count + 1));
+			else
+				container.getAsJsonObject().add("n" + nextId++, value(maxDepth - 1));
+			break;
+		case DELETE:
+			if (count == 0)
+				break;
+			if (container.isJsonArray())
+				container.getAsJsonArray().remove(random.nextInt(count));
+			else
+				container.getAsJsonObject().remove(member(container.getAsJsonObject()));
+			break;
+		case REORDER:
+			if (container.isJsonArray() && count > 1) {
+				JsonElement element = container.getAsJsonArray().remove(random.nextInt(count));
+				JsonUtil.add(container.getAsJsonArray(), element, random.nextInt(count));
+			}
+			break;
+		case RENAME:
+			if (container.isJsonObject() && count > 0) {
+				String name = member(container.getAsJsonObject());
+				container.getAsJsonObject().add("r" + nextId++, container.getAsJsonObject().remove(name));
+			}
+			break;
+		default:
+			if (count == 0)
+				break;
+			if (container.isJsonArray()) {
+				int index = random.nextInt(count);
+				if (container.getAsJsonArray().get(index).isJsonPrimitive())
+					container.getAsJsonArray().set(index, primitive());
+			}
+			else {
+				String name = member(container.getAsJsonObject());
+				if (container.getAsJsonObject().get(name).isJsonPrimitive()
+						&& !"id".equals(name))
+					container.getAsJsonObject().add(name, primitive());
+			}
+		}
+	}
+
+	private String member(JsonObject object) {
+		int index = random.nextInt(object.size());
+		for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+			if (index-- == 0)
+				return entry.getKey();
+		}
+		throw new IllegalStateException();
+	}
+
+	private static void collect(JsonElement element, List<JsonElement> containers) {
+		if (element.isJsonObject()) {
+			containers.add(element);
+			for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet())
+				collect(entry.getValue(), containers);
+		}
+		else if (element.isJsonArray()) {
+			containers.add(element);
+			for (JsonElement child : element.getAsJsonArray())
+				collect(child, containers);
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.google.gson.patch.diff;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.pointer.JsonPointerException;
+
+public final class IgnoredPathsDiffTest
+{
+
+	private static final JsonElement SOURCE = new JsonParser().parse(
+			"{\"meta\":{\"updatedAt\":1,\"owner\":\"a\"},\"audit\":{\"by\":\"x\",\"at\":1},"
+			+ "\"cache\":[1,2],\"items\":[{\"id\":1,\"cache\":1}],\"v\":1}");
+	private static final JsonElement TARGET = new JsonParser().parse(
+			"{\"meta\":{\"updatedAt\":2,\"owner\":\"b\"},\"audit\":{\"by\":\"y\",\"at\":2},"
+			+ "\"items\":[{\"id\":1,\"cache\":2}],\"v\":1}");
+
+	private static DiffOptions ignoring() throws JsonPointerException {
+		DiffOptions options = new DiffOptions();
+		options.addIgnored("/meta/updatedAt");
+		options.addIgnored("/audit/*");
+		options.addIgnored("/cache");
+		options.addIgnored("/items/*/cache");
+		return options;
+	}
+
+	@Test
+	public void ignoredValuesAreNotDiffed() throws JsonPointerException
+	{
+		JsonPatch patch = JsonDiff.diff(SOURCE, TARGET, ignoring());
+		Assert.assertEquals("[{\"op\":\"replace\",\"path\":\"/meta/owner\",\"value\":\"b\"}]", patch.toJson().toString());
+	}
+
+	@Test
+	public void ignoredValuesAreNotDiffedInParallel() throws JsonPointerException
+	{
+		DiffOptions options = ignoring();
+		options.setForkJoinPool(ForkJoinPool.commonPool());
+		options.setParallelThreshold(1);
+		options.setArrayStrategy(DiffOptions.ArrayStrategy.SEQUENCE);
+
+		JsonPatch patch = JsonDiff.diff(SOURCE, TARGET, options);
+		Assert.assertEquals("[{\"op\":\"replace\",\"path\":\"/meta/owner\",\"value\":\"b\"}]", patch.toJson().toString());
+	}
+
+	@Test
+	public void ignoredValuesAreNotCopySources() throws JsonPointerException
+	{
+		JsonElement source = new JsonParser().parse("{\"cache\":{\"a\":1}}");
+		JsonElement target = new JsonParser().parse("{\"cache\":{\"a\":1},\"b\":{\"a\":1}}");
+
+		JsonPatch patch = JsonDiff.diff(source, target, ignoring());
+		Assert.assertEquals("[{\"op\":\"add\",\"path\":\"/b\",\"value\":{\"a\":1}}]", patch.toJson().toString());
+	}
+
+}
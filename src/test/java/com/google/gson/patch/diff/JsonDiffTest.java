@@ -14,6 +14,8 @@ import com.google.gson.patch.JsonUtil;
 
 import org.junit.Assert;
 
+import static com.google.gson.patch.JsonTestUtil.assertApplies;
+
 public final class JsonDiffTest
 {
     
@@ -67,4 +69,128 @@ public final class JsonDiffTest
     	}
     	
     }
+
+    @Test(timeout = 10000)
+    public void manyMovesAndCopiesUseHashedLookups() throws JsonPatchException
+    {
+    	//every member is renamed (a move) and gets a copy of an unchanged value:
+    	JsonObject first = new JsonObject();
+    	JsonObject second = new JsonObject();
+    	for (int i=0; i<20000; i++) {
+    		JsonArray moved = new JsonArray();
+    		moved.add(i);
+    		first.add("old" + i, moved);
+    		second.add("new" + i, moved);
+    		
+    		JsonObject kept = new JsonObject();
+    		kept.addProperty("id", i);
+    		first.add("kept" + i, kept);
+    		second.add("kept" + i, kept);
+    		second.add("copy" + i, kept);
+    	}
+
+    	JsonPatch patch = JsonDiff.diff(first, second);
+    	Assert.assertEquals(40000, patch.getOperations().size());
+    	Assert.assertTrue(JsonUtil.jsonEquals(second, patch.apply(JsonUtil.deepCopy(first))));
+    }
+
+    @Test(timeout = 10000)
+    public void deepDocumentsAreComparedOnce() throws JsonPatchException
+    {
+    	JsonObject first = new JsonObject();
+    	JsonObject second = new JsonObject();
+    	JsonObject firstLevel = first;
+    	JsonObject secondLevel = second;
+    	for (int i=0; i<500; i++) {
+    		for (int j=0; j<10; j++) {
+    			firstLevel.addProperty("p" + j, j);
+    			secondLevel.addProperty("p" + j, j);
+    		}
+    		JsonObject firstChild = new JsonObject();
+    		JsonObject secondChild = new JsonObject();
+    		firstLevel.add("child", firstChild);
+    		secondLevel.add("child", secondChild);
+    		firstLevel = firstChild;
+    		secondLevel = secondChild;
+    	}
+    	firstLevel.addProperty("leaf", 1);
+    	secondLevel.addProperty("leaf", 2);
+
+    	JsonPatch patch = JsonDiff.diff(first, second);
+    	Assert.assertEquals(1, patch.getOperations().size());
+    	Assert.assertTrue(JsonUtil.jsonEquals(second, patch.apply(JsonUtil.deepCopy(first))));
+    }
+
+    /*
+     * Objects and arrays nested deeper than a small call stack would allow,
+     * with the leaf at the bottom
+     */
+    private static JsonObject deepValue(int leaf)
+    {
+    	JsonObject root = new JsonObject();
+    	JsonObject level = root;
+    	for (int i=0; i<5000; i++) {
+    		JsonArray array = new JsonArray();
+    		JsonObject child = new JsonObject();
+    		array.add(child);
+    		level.add("a", array);
+    		level = child;
+    	}
+    	level.addProperty("leaf", leaf);
+    	return root;
+    }
+
+    private static void onSmallStack(final Runnable test) throws Throwable
+    {
+    	final Throwable[] failure = new Throwable[1];
+    	final Thread thread = new Thread(null, () -> {
+    		try {
+    			test.run();
+    		}
+    		catch (Throwable e) {
+    			failure[0] = e;
+    		}
+    	}, "small-stack", 256 * 1024);
+    	thread.start();
+    	thread.join();
+    	if (failure[0] != null)
+    		throw failure[0];
+    }
+
+    @Test(timeout = 10000)
+    public void veryDeepDocumentsDoNotOverflowTheStack() throws Throwable
+    {
+    	onSmallStack(() -> {
+    		JsonPatch patch = JsonDiff.diff(deepValue(1), deepValue(2));
+    		Assert.assertEquals(1, patch.getOperations().size());
+    		JsonObject op = patch.getOperations().get(0).toJson().getAsJsonObject();
+    		Assert.assertEquals("replace", op.get("op").getAsString());
+    		Assert.assertTrue(op.get("path").getAsString().endsWith("/a/0/leaf"));
+    		Assert.assertEquals(2, op.get("value").getAsInt());
+    	});
+    }
+
+    @Test(timeout = 10000)
+    public void veryDeepSubtreesAreAddedReplacedAndRemoved() throws Throwable
+    {
+    	onSmallStack(() -> {
+    		JsonObject empty = new JsonObject();
+    		JsonObject deep = new JsonObject();
+    		deep.add("x", deepValue(1));
+    		JsonObject shallow = new JsonObject();
+    		shallow.addProperty("x", 1);
+
+    		JsonPatch patch = JsonDiff.diff(empty, deep);
+    		Assert.assertEquals("add", patch.getOperations().get(0).getOp());
+    		assertApplies(patch, empty, deep);
+
+    		patch = JsonDiff.diff(shallow, deep);
+    		Assert.assertEquals("replace", patch.getOperations().get(0).getOp());
+    		assertApplies(patch, shallow, deep);
+
+    		patch = JsonDiff.diff(deep, empty);
+    		Assert.assertEquals("remove", patch.getOperations().get(0).getOp());
+    		assertApplies(patch, deep, empty);
+    	});
+    }
 }
@@ -0,0 +1,113 @@
+package com.google.gson.patch.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchException;
+import com.google.gson.patch.JsonPatchOperation;
+import com.google.gson.pointer.JsonPointerException;
+
+import static com.google.gson.patch.JsonTestUtil.assertDiffApplies;
+import static com.google.gson.patch.JsonTestUtil.parse;
+
+public final class KeyedArrayDiffTest
+{
+
+	private static DiffOptions keyedOptions() throws JsonPointerException {
+		DiffOptions options = new DiffOptions();
+		options.setArrayKey("/orders/*", "/id");
+		return options;
+	}
+
+	private static JsonObject order(int id, String state) {
+		JsonObject order = new JsonObject();
+		order.addProperty("id", id);
+		order.addProperty("state", state);
+		return order;
+	}
+
+	private static JsonObject orders(List<JsonObject> orders) {
+		JsonArray array = new JsonArray();
+		for (JsonObject order : orders)
+			array.add(order);
+		JsonObject document = new JsonObject();
+		document.add("orders", array);
+		return document;
+	}
+
+	@Test
+	public void reorderIsOneMove() throws JsonPatchException, JsonPointerException
+	{
+		List<JsonObject> source = new ArrayList<>();
+		for (int i=0; i<10000; i++)
+			source.add(order(i, "new"));
+		List<JsonObject> target = new ArrayList<>(source);
+		target.add(2, target.remove(5));
+
+		JsonPatch patch = assertDiffApplies(orders(source), orders(target), keyedOptions());
+		Assert.assertEquals("[{\"op\":\"move\",\"path\":\"/orders/2\",\"from\":\"/orders/5\"}]",
+				patch.toJson().toString());
+	}
+
+	@Test
+	public void matchedElementsAreDiffedByField() throws JsonPatchException, JsonPointerException
+	{
+		JsonElement source = parse("{\"orders\":[{\"id\":1,\"state\":\"new\"},{\"id\":2,\"state\":\"new\"},{\"id\":3}]}");
+		JsonElement target = parse("{\"orders\":[{\"id\":3},{\"id\":4},{\"id\":1,\"state\":\"paid\"}]}");
+
+		JsonPatch patch = assertDiffApplies(source, target, keyedOptions());
+		List<String> ops = new ArrayList<>();
+		for (JsonPatchOperation op : patch.getOperations())
+			ops.add(op.getOp() + " " + op.getPath());
+		Assert.assertEquals("[remove /orders/1, move /orders/0, add /orders/1, replace /orders/2/state]", ops.toString());
+	}
+
+	@Test
+	public void unkeyedArraysAreUnaffected() throws JsonPatchException, JsonPointerException
+	{
+		JsonElement source = parse("{\"other\":[{\"id\":1},{\"id\":2}]}");
+		JsonElement target = parse("{\"other\":[{\"id\":2},{\"id\":1}]}");
+
+		JsonPatch patch = assertDiffApplies(source, target, keyedOptions());
+		Assert.assertEquals(2, patch.getOperations().size());
+		Assert.assertEquals("replace", patch.getOperations().get(0).getOp());
+	}
+
+	@Test
+	public void randomEditsApply() throws JsonPatchException, JsonPointerException
+	{
+		Random random = new Random(7);
+		for (int round=0; round<500; round++) {
+			List<JsonObject> source = new ArrayList<>();
+			int size = random.nextInt(20);
+			for (int i=0; i<size; i++)
+				source.add(order(random.nextInt(30), "s" + random.nextInt(2)));
+
+			List<JsonObject> target = new ArrayList<>();
+			for (JsonObject order : source) {
+				int action = random.nextInt(5);
+				if (action == 0)
+					continue;
+				if (action == 1)
+					target.add(order(random.nextInt(30), "t"));
+				target.add(action == 2 ? order(order.get("id").getAsInt(), "changed") : order);
+			}
+			if (random.nextBoolean())
+				Collections.shuffle(target, random);
+			if (random.nextInt(4) == 0)
+				target.add(parse("{\"unkeyed\":true}").getAsJsonObject());
+
+			assertDiffApplies(orders(source), orders(target), keyedOptions());
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.google.gson.patch.diff;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchException;
+import com.google.gson.patch.JsonUtil;
+
+public final class ParallelDiffTest
+{
+
+	private static ForkJoinPool pool;
+
+	@BeforeClass
+	public static void createPool() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterClass
+	public static void shutdownPool() {
+		pool.shutdown();
+	}
+
+	private static DiffOptions parallel(DiffOptions options) {
+		options.setForkJoinPool(pool);
+		options.setParallelThreshold(8);
+		return options;
+	}
+
+	private static JsonObject section(Random random, int id) {
+		JsonObject section = new JsonObject();
+		section.addProperty("id", id);
+		section.addProperty("name", "section " + random.nextInt(3));
+		JsonArray values = new JsonArray();
+		for (int i=0; i<20; i++)
+			values.add(random.nextInt(4));
+		section.add("values", values);
+		return section;
+	}
+
+	private static JsonObject document(Random random, int sections) {
+		JsonObject document = new JsonObject();
+		for (int i=0; i<sections; i++) {
+			if (random.nextInt(10) > 0)
+				document.add("s" + i, section(random, i));
+		}
+		return document;
+	}
+
+	private static void assertSameAsSequential(JsonElement source, JsonElement target, DiffOptions options)
+			throws JsonPatchException
+	{
+		JsonPatch expected = JsonDiff.diff(source, target, options);
+		JsonPatch actual = JsonDiff.diff(source, target, parallel(options));
+		Assert.assertEquals(expected.toJson(), actual.toJson());
+		Assert.assertTrue(JsonUtil.jsonEquals(target, actual.apply(JsonUtil.deepCopy(source))));
+	}
+
+	@Test
+	public void parallelDiffEqualsSequentialDiff() throws JsonPatchException
+	{
+		Random random = new Random(3);
+		for (int round=0; round<20; round++) {
+			JsonObject source = document(random, 200);
+			JsonObject target = document(random, 200);
+			// sections moved and copied across partitions:
+			target.add("moved", source.get("s1"));
+			target.add("copied", source.get("s150"));
+
+			assertSameAsSequential(source, target, new DiffOptions());
+
+			DiffOptions sequence = new DiffOptions();
+			sequence.setArrayStrategy(DiffOptions.ArrayStrategy.SEQUENCE);
+			assertSameAsSequential(source, target, sequence);
+		}
+	}
+
+	@Test
+	public void longArraysAreSplit() throws JsonPatchException
+	{
+		Random random = new Random(5);
+		JsonArray source = new JsonArray();
+		JsonArray target = new JsonArray();
+		for (int i=0; i<1000; i++) {
+			source.add(section(random, i));
+			target.add(random.nextBoolean() ? source.get(i) : section(random, i));
+		}
+
+		assertSameAsSequential(source, target, new DiffOptions());
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.google.gson.patch.diff;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchException;
+
+import static com.google.gson.patch.JsonTestUtil.assertDiffApplies;
+import static com.google.gson.patch.JsonTestUtil.parse;
+
+public final class SequenceArrayDiffTest
+{
+
+	private static DiffOptions sequenceOptions() {
+		DiffOptions options = new DiffOptions();
+		options.setArrayStrategy(DiffOptions.ArrayStrategy.SEQUENCE);
+		return options;
+	}
+
+	@Test
+	public void insertAtFrontIsOneAdd() throws JsonPatchException
+	{
+		JsonArray source = new JsonArray();
+		for (int i=0; i<10000; i++)
+			source.add(i);
+		JsonArray target = new JsonArray();
+		target.add(-1);
+		target.addAll(source);
+
+		JsonPatch patch = assertDiffApplies(source, target, sequenceOptions());
+		Assert.assertEquals("[{\"op\":\"add\",\"path\":\"/0\",\"value\":-1}]", patch.toJson().toString());
+	}
+
+	@Test
+	public void equalElementsAreMovedAndNeighboursDiffed() throws JsonPatchException
+	{
+		JsonElement source = parse("[{\"id\":1,\"v\":\"a\"},{\"id\":2},{\"id\":3},{\"id\":4}]");
+		JsonElement target = parse("[{\"id\":4},{\"id\":1,\"v\":\"b\"},{\"id\":2},{\"id\":3}]");
+
+		JsonPatch patch = assertDiffApplies(source, target, sequenceOptions());
+		Assert.assertEquals(2, patch.getOperations().size());
+		Assert.assertEquals("move", patch.getOperations().get(0).getOp());
+	}
+
+	@Test
+	public void editLimitFallsBackToReplace() throws JsonPatchException
+	{
+		JsonObject source = new JsonObject();
+		JsonObject target = new JsonObject();
+		JsonArray sourceArray = new JsonArray();
+		JsonArray targetArray = new JsonArray();
+		for (int i=0; i<100; i++) {
+			sourceArray.add(i);
+			targetArray.add("x" + i);
+		}
+		source.add("a", sourceArray);
+		target.add("a", targetArray);
+
+		DiffOptions options = sequenceOptions();
+		options.setSequenceEditLimit(10);
+		JsonPatch patch = assertDiffApplies(source, target, options);
+		Assert.assertEquals(1, patch.getOperations().size());
+		Assert.assertEquals("replace", patch.getOperations().get(0).getOp());
+		Assert.assertEquals("/a", patch.getOperations().get(0).getPath().toString());
+	}
+
+	@Test
+	public void randomEditsApply() throws JsonPatchException
+	{
+		Random random = new Random(42);
+		for (int round=0; round<500; round++) {
+			JsonArray source = new JsonArray();
+			int size = random.nextInt(20);
+			for (int i=0; i<size; i++)
+				source.add(randomElement(random));
+
+			JsonArray target = new JsonArray();
+			for (JsonElement element : source) {
+				int action = random.nextInt(6);
+				if (action == 0)
+					continue;
+				if (action == 1)
+					target.add(randomElement(random));
+				target.add(action == 2 ? randomElement(random) : element);
+			}
+			if (target.size() > 1 && random.nextBoolean()) {
+				JsonElement first = target.remove(0);
+				target.add(first);
+			}
+
+			JsonObject sourceDoc = new JsonObject();
+			sourceDoc.add("list", source);
+			sourceDoc.add("copy", parse("{\"id\":1}"));
+			JsonObject targetDoc = new JsonObject();
+			targetDoc.add("list", target);
+			targetDoc.add("copy", parse("{\"id\":1}"));
+
+			assertDiffApplies(sourceDoc, targetDoc, sequenceOptions());
+		}
+	}
+
+	private static JsonElement randomElement(Random random) {
+		switch (random.nextInt(3)) {
+		case 0:
+			return parse(Integer.toString(random.nextInt(5)));
+		case 1:
+			return parse("{\"id\":" + random.nextInt(5) + ",\"tags\":[" + random.nextInt(3) + "]}");
+		default:
+			return parse("[" + random.nextInt(3) + "," + random.nextInt(3) + "]");
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.google.gson.patch.diff;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchException;
+import com.google.gson.patch.JsonPatchOperation;
+import com.google.gson.stream.JsonReader;
+
+import static com.google.gson.patch.JsonTestUtil.assertApplies;
+import static com.google.gson.patch.JsonTestUtil.parse;
+import static com.google.gson.patch.JsonTestUtil.randomDocument;
+
+public final class StreamingJsonDiffTest
+{
+
+	private static JsonPatch diff(StreamingJsonDiff differ, String source, String target) throws IOException {
+		final List<JsonPatchOperation> operations = new ArrayList<>();
+		differ.diff(new JsonReader(new StringReader(source)), new JsonReader(new StringReader(target)),
+				operations::add);
+		return new JsonPatch(operations);
+	}
+
+	private static JsonPatch assertDiffApplies(StreamingJsonDiff differ, String source, String target)
+			throws IOException
+	{
+		JsonPatch patch = diff(differ, source, target);
+		assertApplies(patch, parse(source), parse(target));
+		return patch;
+	}
+
+	@Test
+	public void changesAreDiffedInPlace() throws IOException, JsonPatchException
+	{
+		JsonPatch patch = assertDiffApplies(new StreamingJsonDiff(),
+				"{\"a\":{\"b\":1,\"c\":[1,2,3]},\"d\":true}",
+				"{\"a\":{\"b\":2,\"c\":[1,2,3]},\"d\":true}");
+		Assert.assertEquals("[{\"op\":\"replace\",\"path\":\"/a/b\",\"value\":2}]", patch.toJson().toString());
+	}
+
+	@Test
+	public void outOfOrderMembersAreMatched() throws IOException, JsonPatchException
+	{
+		JsonPatch patch = assertDiffApplies(new StreamingJsonDiff(),
+				"{\"a\":{\"x\":1},\"b\":{\"y\":1},\"c\":3}",
+				"{\"c\":3,\"b\":{\"y\":2},\"a\":{\"x\":1}}");
+		Assert.assertEquals("[{\"op\":\"replace\",\"path\":\"/b/y\",\"value\":2}]", patch.toJson().toString());
+	}
+
+	@Test
+	public void overTheCapMembersAreReplaced() throws IOException, JsonPatchException
+	{
+		StreamingJsonDiff differ = new StreamingJsonDiff();
+		differ.setMaxBufferedNodes(0);
+		JsonPatch patch = assertDiffApplies(differ,
+				"{\"a\":{\"x\":1},\"b\":2}",
+				"{\"b\":2,\"a\":{\"x\":1}}");
+		Assert.assertEquals(3, patch.getOperations().size());
+	}
+
+	@Test
+	public void insertedAndRemovedElementsAreAligned() throws IOException, JsonPatchException
+	{
+		StringBuilder source = new StringBuilder("[");
+		StringBuilder target = new StringBuilder("[0,");
+		for (int i=1; i<1000; i++) {
+			source.append(i == 1 ? "" : ",").append("{\"id\":").append(i).append('}');
+			if (i != 500)
+				target.append(i == 1 ? "" : ",").append("{\"id\":").append(i).append('}');
+		}
+		source.append(']');
+		target.append(']');
+
+		JsonPatch patch = assertDiffApplies(new StreamingJsonDiff(), source.toString(), target.toString());
+		Assert.assertEquals("[{\"op\":\"add\",\"path\":\"/0\",\"value\":0},{\"op\":\"remove\",\"path\":\"/500\"}]",
+				patch.toJson().toString());
+	}
+
+	@Test
+	public void randomDocumentsApply() throws IOException, JsonPatchException
+	{
+		Random random = new Random(11);
+		for (int round=0; round<300; round++) {
+			StreamingJsonDiff differ = new StreamingJsonDiff();
+			differ.setMaxBufferedNodes(random.nextInt(20));
+			differ.setArrayWindow(1 + random.nextInt(4));
+
+			JsonElement source = randomDocument(random, 3);
+			JsonElement target = mutate(random, source, 3);
+			assertDiffApplies(differ, source.toString(), target.toString());
+		}
+	}
+
+	private static JsonElement mutate(Random random, JsonElement value, int depth) {
+		if (random.nextInt(8) == 0)
+			return randomDocument(random, depth);
+
+		if (value.isJsonArray()) {
+			JsonArray array = new JsonArray();
+			for (JsonElement element : value.getAsJsonArray()) {
+				int action = random.nextInt(5);
+				if (action == 0)
+					continue;
+				if (action == 1)
+					array.add(randomDocument(random, depth - 1));
+				array.add(mutate(random, element, depth - 1));
+			}
+			return array;
+		}
+		if (value.isJsonObject()) {
+			List<Map.Entry<String, JsonElement>> entries = new ArrayList<>(value.getAsJsonObject().entrySet());
+			Collections.shuffle(entries, random);
+			JsonObject object = new JsonObject();
+			for (Map.Entry<String, JsonElement> entry : entries) {
+				if (random.nextInt(5) > 0)
+					object.add(entry.getKey(), mutate(random, entry.getValue(), depth - 1));
+			}
+			if (random.nextBoolean())
+				object.add("n" + random.nextInt(3), randomDocument(random, depth - 1));
+			return object;
+		}
+		return value;
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.google.gson.patch.diff;
+
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.JsonPointerException;
+
+import static com.google.gson.patch.JsonTestUtil.parse;
+
+public final class ThreeWayMergeTest
+{
+
+	private static ThreeWayMerge.Result merge(String base, String ours, String theirs) {
+		return ThreeWayMerge.merge(parse(base), parse(ours), parse(theirs));
+	}
+
+	@Test
+	public void independentMemberChangesAreCombined()
+	{
+		ThreeWayMerge.Result result = merge("{\"a\":1,\"b\":{\"c\":2,\"d\":3},\"e\":4}",
+				"{\"a\":10,\"b\":{\"c\":2,\"d\":3}}",
+				"{\"a\":1,\"b\":{\"c\":2,\"d\":30},\"e\":4,\"f\":5}");
+
+		Assert.assertFalse(result.hasConflicts());
+		Assert.assertEquals(parse("{\"a\":10,\"b\":{\"c\":2,\"d\":30},\"f\":5}"), result.getMerged());
+	}
+
+	@Test
+	public void conflictingChangesKeepOursAndAreReported() throws JsonPointerException
+	{
+		ThreeWayMerge.Result result = merge("{\"a\":{\"b\":1},\"c\":1}",
+				"{\"a\":{\"b\":2},\"c\":1}", "{\"a\":{\"b\":3}}");
+
+		Assert.assertEquals(parse("{\"a\":{\"b\":2}}"), result.getMerged());
+		Assert.assertEquals(Collections.singletonList(new JsonPointer("/a/b")), result.getConflicts());
+	}
+
+	@Test
+	public void changeAgainstRemovalIsAConflict() throws JsonPointerException
+	{
+		ThreeWayMerge.Result result = merge("{\"a\":1,\"b\":1}", "{\"a\":2,\"b\":1}", "{}");
+
+		Assert.assertEquals(parse("{\"a\":2}"), result.getMerged());
+		Assert.assertEquals(Collections.singletonList(new JsonPointer("/a")), result.getConflicts());
+
+		result = merge("{\"a\":1,\"b\":1}", "{\"b\":1}", "{\"a\":2,\"b\":1}");
+
+		Assert.assertEquals(parse("{\"b\":1,\"a\":2}"), result.getMerged());
+		Assert.assertEquals(Collections.singletonList(new JsonPointer("/a")), result.getConflicts());
+	}
+
+	@Test
+	public void keyedChangeAgainstRemovalIsAConflict() throws JsonPointerException
+	{
+		DiffOptions options = new DiffOptions();
+		options.setArrayKey("/*", "/id");
+		JsonElement base = parse("[{\"id\":1,\"v\":1},{\"id\":2,\"v\":1},{\"id\":3,\"v\":1}]");
+		JsonElement changed = parse("[{\"id\":1,\"v\":1},{\"id\":2,\"v\":2},{\"id\":3,\"v\":1}]");
+		JsonElement removed = parse("[{\"id\":1,\"v\":1},{\"id\":3,\"v\":1}]");
+
+		ThreeWayMerge.Result result = ThreeWayMerge.merge(base, changed, removed, options);
+		Assert.assertEquals(changed, result.getMerged());
+		Assert.assertEquals(Collections.singletonList(new JsonPointer("/1")), result.getConflicts());
+
+		result = ThreeWayMerge.merge(base, removed, changed, options);
+		Assert.assertEquals(changed, result.getMerged());
+		Assert.assertEquals(Collections.singletonList(new JsonPointer("/1")), result.getConflicts());
+	}
+
+	@Test
+	public void sequenceEditsOnBothSidesAreCombined()
+	{
+		ThreeWayMerge.Result result = merge("[1,2,3,4,5]", "[0,1,2,3,4,5]", "[1,2,4,5,6]");
+
+		Assert.assertFalse(result.hasConflicts());
+		Assert.assertEquals(parse("[0,1,2,4,5,6]"), result.getMerged());
+	}
+
+	@Test
+	public void elementsChangedOnBothSidesAreMergedInPlace()
+	{
+		ThreeWayMerge.Result result = merge("[{\"x\":1,\"y\":1},2]",
+				"[{\"x\":2,\"y\":1},2]", "[{\"x\":1,\"y\":2},2,3]");
+
+		Assert.assertFalse(result.hasConflicts());
+		Assert.assertEquals(parse("[{\"x\":2,\"y\":2},2,3]"), result.getMerged());
+	}
+
+	@Test
+	public void overlappingSequenceEditsConflict() throws JsonPointerException
+	{
+		ThreeWayMerge.Result result = merge("[1,2,3]", "[1,4,5,3]", "[1,6,3]");
+
+		Assert.assertEquals(parse("[1,4,5,3]"), result.getMerged());
+		Assert.assertEquals(Collections.singletonList(new JsonPointer("/1")), result.getConflicts());
+	}
+
+	@Test
+	public void keyedArraysAreAlignedByKey() throws JsonPointerException
+	{
+		DiffOptions options = new DiffOptions();
+		options.setArrayKey("/items/*", "/id");
+
+		JsonElement base = parse("{\"items\":[{\"id\":1,\"v\":1},{\"id\":2,\"v\":1},{\"id\":3,\"v\":1}]}");
+		JsonElement ours = parse("{\"items\":[{\"id\":3,\"v\":1},{\"id\":1,\"v\":2},{\"id\":2,\"v\":1}]}");
+		JsonElement theirs = parse("{\"items\":[{\"id\":1,\"v\":1},{\"id\":4,\"v\":1},{\"id\":3,\"v\":3}]}");
+		ThreeWayMerge.Result result = ThreeWayMerge.merge(base, ours, theirs, options);
+
+		Assert.assertFalse(result.hasConflicts());
+		Assert.assertEquals(parse("{\"items\":[{\"id\":3,\"v\":3},{\"id\":1,\"v\":2},{\"id\":4,\"v\":1}]}"),
+				result.getMerged());
+	}
+
+	@Test
+	public void mergedDocumentSharesNothingWithTheInputs()
+	{
+		JsonElement theirs = parse("{\"a\":{\"b\":1}}");
+		JsonElement merged = ThreeWayMerge.merge(parse("{}"), parse("{}"), theirs).getMerged();
+
+		merged.getAsJsonObject().getAsJsonObject("a").addProperty("b", 2);
+		Assert.assertEquals(parse("{\"a\":{\"b\":1}}"), theirs);
+	}
+
+}
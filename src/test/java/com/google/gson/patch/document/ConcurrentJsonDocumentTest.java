@@ -0,0 +1,145 @@
+package com.google.gson.patch.document;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchException;
+import com.google.gson.patch.JsonUtil;
+import com.google.gson.patch.mergepatch.JsonMergePatch;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.JsonPointerException;
+
+import static com.google.gson.patch.JsonTestUtil.parse;
+
+public final class ConcurrentJsonDocumentTest
+{
+
+	private static JsonPatch patch(String json) throws IOException {
+		return JsonPatch.fromJson(parse(json));
+	}
+
+	@Test
+	public void patchesAreApplied() throws IOException, JsonPatchException, JsonPointerException
+	{
+		ConcurrentJsonDocument doc = new ConcurrentJsonDocument(parse("{\"a\":{\"x\":1},\"b\":{\"y\":2}}"));
+
+		doc.apply(patch("[{\"op\":\"replace\",\"path\":\"/a/x\",\"value\":5}]"));
+		doc.apply(patch("[{\"op\":\"add\",\"path\":\"/c\",\"value\":[]}]"));
+		doc.apply(patch("[{\"op\":\"move\",\"from\":\"/b/y\",\"path\":\"/a/y\"}]"));
+
+		Assert.assertTrue(JsonUtil.jsonEquals(
+				parse("{\"a\":{\"x\":5,\"y\":2},\"b\":{},\"c\":[]}"), doc.get()));
+		Assert.assertTrue(JsonUtil.jsonEquals(parse("5"), doc.get(new JsonPointer("/a/x"))));
+		Assert.assertEquals(3, doc.getVersion());
+	}
+
+	@Test
+	public void failedPatchLeavesDocumentUnchanged() throws IOException
+	{
+		JsonElement original = parse("{\"a\":{\"x\":1},\"b\":{\"y\":2}}");
+		ConcurrentJsonDocument doc = new ConcurrentJsonDocument(original);
+
+		try {
+			doc.apply(patch("[{\"op\":\"replace\",\"path\":\"/a/x\",\"value\":5},"
+					+ "{\"op\":\"test\",\"path\":\"/b/y\",\"value\":3}]"));
+			Assert.fail("No exception thrown!");
+		}
+		catch (JsonPatchException e) {
+			//expected
+		}
+
+		Assert.assertTrue(JsonUtil.jsonEquals(original, doc.get()));
+		Assert.assertEquals(0, doc.getVersion());
+	}
+
+	@Test
+	public void mergePatchesAreApplied() throws JsonPatchException
+	{
+		ConcurrentJsonDocument doc = new ConcurrentJsonDocument(parse("{\"a\":{\"x\":1},\"b\":2}"));
+
+		doc.apply(JsonMergePatch.fromJson(parse("{\"a\":{\"y\":2}}")));
+		doc.apply(JsonMergePatch.fromJson(parse("{\"b\":null,\"c\":3}")));
+
+		Assert.assertTrue(JsonUtil.jsonEquals(parse("{\"a\":{\"x\":1,\"y\":2},\"c\":3}"), doc.get()));
+	}
+
+	@Test
+	public void patchesOnlyCopyTheWrittenPaths() throws IOException, JsonPatchException, JsonPointerException
+	{
+		ConcurrentJsonDocument doc = new ConcurrentJsonDocument(
+				parse("{\"a\":{\"x\":{\"big\":[1,2,3]},\"y\":{\"z\":1,\"tags\":[\"t\"]}},\"b\":{\"n\":1}}"));
+		JsonPointer x = new JsonPointer("/a/x");
+		JsonElement untouched = doc.get(x);
+		JsonElement y = doc.get(new JsonPointer("/a/y"));
+		JsonElement a = doc.get(new JsonPointer("/a"));
+		JsonElement before = JsonUtil.deepCopy(a);
+
+		doc.apply(patch("[{\"op\":\"replace\",\"path\":\"/a/y/z\",\"value\":2},"
+				+ "{\"op\":\"append-if-absent\",\"path\":\"/a/y/tags\",\"value\":\"u\"},"
+				+ "{\"op\":\"increment\",\"path\":\"/b/n\",\"value\":1}]"));
+		doc.apply(patch("[{\"op\":\"move\",\"from\":\"/a/y/tags\",\"path\":\"/c\"}]"));
+		doc.apply(JsonMergePatch.fromJson(parse("{\"a\":{\"y\":{\"w\":3}}}")));
+
+		Assert.assertSame(untouched, doc.get(x));
+		Assert.assertTrue(JsonUtil.jsonEquals(before, a));
+		Assert.assertTrue(JsonUtil.jsonEquals(parse("{\"z\":1,\"tags\":[\"t\"]}"), y));
+		Assert.assertTrue(JsonUtil.jsonEquals(
+				parse("{\"a\":{\"x\":{\"big\":[1,2,3]},\"y\":{\"z\":2,\"w\":3}},\"b\":{\"n\":2},\"c\":[\"t\",\"u\"]}"),
+				doc.get()));
+	}
+
+	@Test
+	public void disjointPatchesRunConcurrently() throws Exception
+	{
+		final int threads = 8;
+		final int iterations = 200;
+
+		StringBuilder json = new StringBuilder("{");
+		for (int t=0; t<threads; t++)
+			json.append(t == 0 ? "" : ",").append("\"m").append(t).append("\":{\"count\":0}");
+		json.append("}");
+
+		final ConcurrentJsonDocument doc = new ConcurrentJsonDocument(parse(json.toString()));
+		final List<Throwable> errors = new ArrayList<>();
+
+		List<Thread> workers = new ArrayList<>();
+		for (int t=0; t<threads; t++) {
+			final String member = "m" + t;
+			workers.add(new Thread() {
+				public void run() {
+					try {
+						JsonPointer pointer = new JsonPointer("/" + member + "/count");
+						for (int i=0; i<iterations; i++) {
+							int current = doc.get(pointer).getAsInt();
+							doc.apply(patch("[{\"op\":\"test\",\"path\":\"" + pointer + "\",\"value\":" + current + "},"
+									+ "{\"op\":\"replace\",\"path\":\"" + pointer + "\",\"value\":" + (current + 1) + "}]"));
+							doc.get();
+						}
+					}
+					catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			});
+		}
+
+		for (Thread worker : workers)
+			worker.start();
+		for (Thread worker : workers)
+			worker.join();
+
+		Assert.assertTrue("Errors: " + errors, errors.isEmpty());
+		for (int t=0; t<threads; t++)
+			Assert.assertEquals(iterations, doc.get(new JsonPointer("/m" + t + "/count")).getAsInt());
+		Assert.assertEquals(threads * iterations, doc.getVersion());
+	}
+
+}
@@ -0,0 +1,162 @@
+package com.google.gson.patch.document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchException;
+import com.google.gson.patch.JsonUtil;
+import com.google.gson.patch.mergepatch.JsonMergePatch;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.JsonPointerException;
+
+import static com.google.gson.patch.JsonTestUtil.parse;
+import static com.google.gson.patch.JsonTestUtil.randomDocument;
+
+public final class TrackingJsonDocumentTest
+{
+
+	@Test
+	public void repeatedWritesAreCoalesced() throws JsonPatchException, JsonPointerException
+	{
+		TrackingJsonDocument doc = new TrackingJsonDocument(parse("{\"a\":{\"x\":1},\"b\":2}"));
+
+		doc.set(new JsonPointer("/a/x"), new JsonPrimitive(2));
+		doc.set(new JsonPointer("/a/x"), new JsonPrimitive(3));
+		doc.set(new JsonPointer("/c"), new JsonPrimitive(4));
+		doc.remove(new JsonPointer("/c"));
+		doc.set(new JsonPointer("/b"), new JsonPrimitive(5));
+		Assert.assertTrue(doc.isDirty());
+
+		JsonPatch patch = doc.checkpoint();
+		Assert.assertEquals(parse("[{\"op\":\"replace\",\"path\":\"/a/x\",\"value\":3},"
+				+ "{\"op\":\"replace\",\"path\":\"/b\",\"value\":5}]"), patch.toJson());
+		Assert.assertFalse(doc.isDirty());
+		Assert.assertEquals(0, doc.checkpoint().getOperations().size());
+	}
+
+	@Test
+	public void changesBelowAReplacedValueAreDropped() throws JsonPatchException, JsonPointerException
+	{
+		TrackingJsonDocument doc = new TrackingJsonDocument(parse("{\"a\":{\"x\":1,\"y\":[1,2]}}"));
+
+		doc.set(new JsonPointer("/a/x"), new JsonPrimitive(2));
+		doc.insert(new JsonPointer("/a/y/0"), new JsonPrimitive(0));
+		doc.set(new JsonPointer("/a"), parse("{\"z\":true}"));
+		doc.set(new JsonPointer("/a/w"), new JsonPrimitive(1));
+
+		Assert.assertEquals(parse("[{\"op\":\"replace\",\"path\":\"/a\",\"value\":{\"z\":true,\"w\":1}}]"),
+				doc.checkpoint().toJson());
+	}
+
+	@Test
+	public void arrayChangesAreKeptInOrder() throws JsonPatchException, JsonPointerException
+	{
+		TrackingJsonDocument doc = new TrackingJsonDocument(parse("{\"a\":[1,2,3]}"));
+
+		doc.insert(new JsonPointer("/a/0"), new JsonPrimitive(0));
+		doc.set(new JsonPointer("/a/0"), new JsonPrimitive(-1));
+		doc.remove(new JsonPointer("/a/3"));
+		doc.insert(new JsonPointer("/a/-"), parse("{\"b\":1}"));
+		doc.set(new JsonPointer("/a/3/b"), new JsonPrimitive(2));
+
+		Assert.assertEquals(parse("[{\"op\":\"add\",\"path\":\"/a/0\",\"value\":-1},"
+				+ "{\"op\":\"remove\",\"path\":\"/a/3\"},"
+				+ "{\"op\":\"add\",\"path\":\"/a/-\",\"value\":{\"b\":1}},"
+				+ "{\"op\":\"add\",\"path\":\"/a/3/b\",\"value\":2}]"), doc.checkpoint().toJson());
+		Assert.assertEquals(parse("{\"a\":[-1,1,2,{\"b\":2}]}"), doc.get());
+	}
+
+	@Test
+	public void failedChangeIsNotTracked() throws JsonPointerException
+	{
+		TrackingJsonDocument doc = new TrackingJsonDocument(parse("{\"a\":[1]}"));
+		try {
+			doc.remove(new JsonPointer("/b"));
+			Assert.fail();
+		}
+		catch (JsonPatchException e) {
+			// expected
+		}
+		try {
+			doc.insert(new JsonPointer("/b"), new JsonPrimitive(1));
+			Assert.fail();
+		}
+		catch (JsonPatchException e) {
+			// expected
+		}
+		Assert.assertFalse(doc.isDirty());
+	}
+
+	@Test
+	public void randomChangesReplay() throws JsonPatchException
+	{
+		Random random = new Random(11);
+		for (int round=0; round<300; round++) {
+			JsonElement original = parse("{\"a\":{\"x\":1,\"y\":{\"z\":[1,{\"w\":2}]}},\"b\":[[1],{\"c\":3}],\"d\":\"e\"}");
+			TrackingJsonDocument doc = new TrackingJsonDocument(JsonUtil.deepCopy(original));
+
+			for (int checkpoint=0; checkpoint<3; checkpoint++) {
+				for (int i=random.nextInt(8); i>0; i--)
+					randomChange(random, doc);
+
+				JsonElement current = JsonUtil.deepCopy(doc.get());
+				if (random.nextBoolean()) {
+					JsonPatch patch = doc.checkpoint();
+					Assert.assertEquals("patch: " + patch.toJson(), current, patch.apply(original));
+				}
+				else {
+					JsonElement patch = doc.checkpointMergePatch().toJson();
+					Assert.assertEquals("merge patch: " + patch, current, JsonMergePatch.apply(original, patch));
+				}
+				original = current;
+			}
+		}
+	}
+
+	private static void randomChange(Random random, TrackingJsonDocument doc) throws JsonPatchException {
+		List<JsonPointer> containers = new ArrayList<>();
+		List<JsonPointer> values = new ArrayList<>();
+		walk(JsonPointer.EMPTY, doc.get(), containers, values);
+
+		int action = random.nextInt(4);
+		if (containers.isEmpty())
+			doc.set(JsonPointer.EMPTY, parse("{\"k0\":[]}"));
+		else if (action == 0 || values.size() < 2) {
+			JsonPointer parent = containers.get(random.nextInt(containers.size()));
+			JsonElement container = doc.get(parent);
+			if (container.isJsonArray())
+				doc.insert(parent.append(random.nextInt(container.getAsJsonArray().size() + 1)), randomDocument(random, 1));
+			else
+				doc.set(parent.append("k" + random.nextInt(3)), randomDocument(random, 1));
+		}
+		else if (action == 1)
+			doc.remove(values.get(1 + random.nextInt(values.size() - 1)));
+		else
+			doc.set(values.get(random.nextInt(values.size())), randomDocument(random, 1));
+	}
+
+	private static void walk(JsonPointer pointer, JsonElement element, List<JsonPointer> containers,
+			List<JsonPointer> values)
+	{
+		values.add(pointer);
+		if (element.isJsonObject()) {
+			containers.add(pointer);
+			for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet())
+				walk(pointer.append(entry.getKey()), entry.getValue(), containers, values);
+		}
+		else if (element.isJsonArray()) {
+			containers.add(pointer);
+			for (int i=0; i<element.getAsJsonArray().size(); i++)
+				walk(pointer.append(i), element.getAsJsonArray().get(i), containers, values);
+		}
+	}
+
+}
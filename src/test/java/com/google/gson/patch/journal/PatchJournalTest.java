@@ -0,0 +1,141 @@
+package com.google.gson.patch.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.gson.JsonElement;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonUtil;
+
+import static com.google.gson.patch.JsonTestUtil.parse;
+
+public final class PatchJournalTest
+{
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static JsonPatch patch(String json) throws IOException {
+		return JsonPatch.fromJson(parse(json));
+	}
+
+	private static void appendHistory(PatchJournal journal) throws IOException {
+		journal.append("a", patch("[{\"op\":\"add\",\"path\":\"\",\"value\":{\"n\":0}}]"));
+		journal.append("b", patch("[{\"op\":\"add\",\"path\":\"\",\"value\":[]}]"));
+		for (int i=1; i<=20; i++) {
+			journal.append("a", patch("[{\"op\":\"replace\",\"path\":\"/n\",\"value\":" + i + "}]"));
+			journal.append("b", patch("[{\"op\":\"add\",\"path\":\"/-\",\"value\":" + i + "}]"));
+		}
+	}
+
+	private static void assertHistory(Map<String, JsonElement> documents) {
+		Assert.assertEquals(2, documents.size());
+		Assert.assertTrue(JsonUtil.jsonEquals(parse("{\"n\":20}"), documents.get("a")));
+		Assert.assertEquals(20, documents.get("b").getAsJsonArray().size());
+	}
+
+	@Test
+	public void recoverReplaysAcrossSegments() throws IOException
+	{
+		File dir = folder.newFolder();
+
+		PatchJournal journal = new PatchJournal(dir, 256);
+		appendHistory(journal);
+		journal.sync();
+		Assert.assertEquals(42, journal.getDurableSequence());
+		journal.close();
+
+		Assert.assertTrue(dir.list().length > 1);
+
+		PatchJournal reopened = new PatchJournal(dir, 256);
+		Assert.assertEquals(42, reopened.getLastSequence());
+		assertHistory(reopened.recover());
+		reopened.close();
+	}
+
+	@Test
+	public void compactionWritesSnapshot() throws IOException
+	{
+		File dir = folder.newFolder();
+
+		PatchJournal journal = new PatchJournal(dir, 256);
+		appendHistory(journal);
+		journal.compact();
+		Assert.assertEquals(42, journal.getSnapshotSequence());
+
+		journal.append("c", patch("[{\"op\":\"add\",\"path\":\"\",\"value\":true}]"));
+		journal.close();
+
+		PatchJournal reopened = new PatchJournal(dir, 256);
+		Map<String, JsonElement> documents = reopened.recover();
+		Assert.assertEquals(3, documents.size());
+		Assert.assertTrue(JsonUtil.jsonEquals(parse("{\"n\":20}"), documents.get("a")));
+		Assert.assertTrue(documents.get("c").getAsBoolean());
+		reopened.close();
+	}
+
+	@Test
+	public void tornRecordIsIgnoredAndOverwritten() throws IOException
+	{
+		File dir = folder.newFolder();
+
+		PatchJournal journal = new PatchJournal(dir, 4096);
+		journal.append("a", patch("[{\"op\":\"add\",\"path\":\"\",\"value\":1}]"));
+		journal.append("a", patch("[{\"op\":\"replace\",\"path\":\"\",\"value\":2}]"));
+		journal.close();
+
+		//corrupt the payload of the second record, which starts after the
+		//55 bytes of the first one:
+		try (RandomAccessFile raf = new RandomAccessFile(new File(dir, JournalSegment.fileName(1)), "rw")) {
+			raf.seek(100);
+			raf.write(new byte[] {'x', 'x', 'x', 'x'});
+		}
+
+		PatchJournal reopened = new PatchJournal(dir, 4096);
+		Assert.assertEquals(1, reopened.getLastSequence());
+		Assert.assertEquals(1, reopened.recover().get("a").getAsInt());
+
+		reopened.append("a", patch("[{\"op\":\"replace\",\"path\":\"\",\"value\":3}]"));
+		reopened.close();
+
+		try (PatchJournal recovered = new PatchJournal(dir, 4096)) {
+			Assert.assertEquals(3, recovered.recover().get("a").getAsInt());
+		}
+	}
+
+	@Test
+	public void closedJournalIsReleased() throws IOException
+	{
+		File dir = folder.newFolder();
+
+		PatchJournal journal = new PatchJournal(dir, 256);
+		appendHistory(journal);
+		journal.close();
+		journal.close();
+		Assert.assertEquals(42, journal.getDurableSequence());
+		assertHistory(journal.recover());
+
+		try {
+			journal.sync(43);
+			Assert.fail("synced a closed journal");
+		}
+		catch (IOException e) {
+			//expected
+		}
+		try {
+			journal.compact();
+			Assert.fail("compacted a closed journal");
+		}
+		catch (IOException e) {
+			//expected
+		}
+	}
+
+}
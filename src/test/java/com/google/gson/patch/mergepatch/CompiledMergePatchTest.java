@@ -0,0 +1,64 @@
+package com.google.gson.patch.mergepatch;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.JsonLoader;
+import com.google.gson.patch.JsonUtil;
+
+import static com.google.gson.patch.JsonTestUtil.parse;
+
+public final class CompiledMergePatchTest
+{
+
+	@Test
+	public void planGivesTheSameValueAsApply() throws IOException
+	{
+		for (String resource : new String[] { "/jsonpatch/mergepatch/patch-object.json",
+				"/jsonpatch/mergepatch/patch-nonobject.json" }) {
+			for (JsonElement testElem : JsonLoader.fromResource(resource).getAsJsonArray()) {
+				JsonObject testObj = testElem.getAsJsonObject();
+				JsonElement patch = testObj.get("patch");
+				JsonElement victim = testObj.get("victim");
+
+				JsonElement expected = JsonMergePatch.apply(JsonUtil.deepCopy(victim), patch);
+				JsonElement actual = CompiledMergePatch.compile(patch).apply(JsonUtil.deepCopy(victim));
+				Assert.assertTrue("patch: " + patch + "\nexpected: " + expected + "\nactual: " + actual,
+						JsonUtil.jsonEquals(expected, actual));
+			}
+		}
+	}
+
+	@Test
+	public void replacedMembersKeepTheirPlace()
+	{
+		CompiledMergePatch plan = JsonMergePatch.fromJson(parse("{\"a\":2,\"b\":{\"c\":null,\"d\":[1]},\"e\":null}"))
+				.compile();
+
+		Assert.assertEquals("{\"a\":2,\"x\":0,\"b\":{\"d\":[1]}}",
+				plan.apply(parse("{\"a\":1,\"x\":0,\"b\":5,\"e\":3}")).toString());
+		Assert.assertEquals("{\"b\":{\"f\":1,\"d\":[1]},\"a\":2}",
+				plan.apply(parse("{\"b\":{\"c\":1,\"f\":1}}")).toString());
+	}
+
+	@Test
+	public void patchedValuesShareNothing()
+	{
+		JsonElement patch = parse("{\"a\":{\"b\":[1]},\"c\":{\"d\":{}}}");
+		CompiledMergePatch plan = CompiledMergePatch.compile(patch);
+
+		JsonObject first = plan.apply(new JsonObject()).getAsJsonObject();
+		JsonObject second = plan.apply(parse("{\"c\":1}")).getAsJsonObject();
+		first.getAsJsonObject("a").getAsJsonArray("b").add(2);
+		second.getAsJsonObject("c").getAsJsonObject("d").addProperty("e", 1);
+		patch.getAsJsonObject().add("a", parse("null"));
+
+		Assert.assertEquals(parse("{\"a\":{\"b\":[1]},\"c\":{\"d\":{}}}"), plan.apply(new JsonObject()));
+		Assert.assertEquals(parse("{\"a\":{\"b\":[1]},\"c\":{\"d\":{\"e\":1}}}"), second);
+	}
+
+}
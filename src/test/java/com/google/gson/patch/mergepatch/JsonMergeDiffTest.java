@@ -0,0 +1,68 @@
+package com.google.gson.patch.mergepatch;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.patch.JsonPatchException;
+import com.google.gson.pointer.JsonPointer;
+import com.google.gson.pointer.JsonPointerException;
+
+import static com.google.gson.patch.JsonTestUtil.assertApplies;
+import static com.google.gson.patch.JsonTestUtil.parse;
+
+public final class JsonMergeDiffTest
+{
+
+	private static JsonMergeDiff.Result assertDiffApplies(String source, String target) {
+		JsonMergeDiff.Result result = JsonMergeDiff.diff(parse(source), parse(target));
+		Assert.assertTrue(result.isExact());
+		assertApplies(result.getPatch(), parse(source), parse(target));
+		return result;
+	}
+
+	@Test
+	public void objectsAreDiffedRecursively() throws JsonPatchException
+	{
+		JsonMergeDiff.Result result = assertDiffApplies(
+				"{\"a\":{\"b\":1,\"c\":2},\"d\":[1,2],\"e\":true,\"f\":\"x\"}",
+				"{\"a\":{\"b\":1,\"c\":3},\"d\":[1,2,3],\"e\":true,\"g\":{\"h\":1}}");
+		Assert.assertEquals(parse("{\"f\":null,\"a\":{\"c\":3},\"d\":[1,2,3],\"g\":{\"h\":1}}"),
+				result.getPatch().toJson());
+	}
+
+	@Test
+	public void equalValuesGiveAnEmptyPatch() throws JsonPatchException
+	{
+		Assert.assertEquals(parse("{}"), assertDiffApplies("{\"a\":[1]}", "{\"a\":[1]}").getPatch().toJson());
+	}
+
+	@Test
+	public void nonObjectsAreReplaced() throws JsonPatchException
+	{
+		Assert.assertEquals(parse("[2]"), assertDiffApplies("{\"a\":1}", "[2]").getPatch().toJson());
+		Assert.assertEquals(parse("{\"a\":1}"), assertDiffApplies("[2]", "{\"a\":1}").getPatch().toJson());
+	}
+
+	@Test
+	public void patchDoesNotShareTheTarget() throws JsonPatchException
+	{
+		JsonElement target = parse("{\"a\":{\"b\":[1]},\"c\":[2]}");
+		JsonMergePatch patch = JsonMergeDiff.diff(parse("{\"c\":1}"), target).getPatch();
+		target.getAsJsonObject().getAsJsonObject("a").add("d", target.getAsJsonObject().get("c"));
+		target.getAsJsonObject().getAsJsonArray("c").add(3);
+		Assert.assertEquals(parse("{\"a\":{\"b\":[1]},\"c\":[2]}"), patch.toJson());
+	}
+
+	@Test
+	public void explicitNullsAreReported() throws JsonPointerException
+	{
+		JsonMergeDiff.Result result = JsonMergeDiff.diff(parse("{\"a\":1,\"b\":null}"),
+				parse("{\"a\":null,\"b\":null,\"c\":{\"d\":null,\"e\":[null]}}"));
+		Assert.assertFalse(result.isExact());
+		Assert.assertEquals(Arrays.asList(new JsonPointer("/a"), new JsonPointer("/c/d")), result.getLostNulls());
+	}
+
+}
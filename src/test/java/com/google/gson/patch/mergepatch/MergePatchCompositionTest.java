@@ -0,0 +1,74 @@
+package com.google.gson.patch.mergepatch;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.JsonUtil;
+
+import static com.google.gson.patch.JsonTestUtil.parse;
+import static com.google.gson.patch.JsonTestUtil.randomMergePatch;
+
+public final class MergePatchCompositionTest
+{
+
+	@Test
+	public void laterMembersWinAndObjectsAreMerged()
+	{
+		JsonElement first = parse("{\"a\":{\"b\":1,\"c\":2},\"d\":3,\"e\":null,\"f\":{\"g\":1}}");
+		JsonElement second = parse("{\"a\":{\"c\":null,\"h\":4},\"d\":null,\"e\":5,\"f\":[1]}");
+
+		Assert.assertEquals(parse("{\"a\":{\"b\":1,\"c\":null,\"h\":4},\"d\":null,\"e\":5,\"f\":[1]}"),
+				JsonMergePatch.compose(first, second));
+	}
+
+	@Test
+	public void objectAfterRemovalCannotBeComposed()
+	{
+		Assert.assertNull(JsonMergePatch.compose(parse("{\"a\":null}"), parse("{\"a\":{\"b\":1}}")));
+		Assert.assertNull(JsonMergePatch.compose(parse("{\"a\":1}"), parse("{\"a\":{}}")));
+		Assert.assertNull(JsonMergePatch.compose(parse("[1]"), parse("{\"a\":1}")));
+		Assert.assertEquals(parse("[1]"), JsonMergePatch.compose(parse("{\"a\":1}"), parse("[1]")));
+	}
+
+	@Test
+	public void composedPatchSharesNothingWithTheInputs()
+	{
+		JsonMergePatch first = JsonMergePatch.fromJson(parse("{\"a\":{\"b\":1}}"));
+		JsonMergePatch second = JsonMergePatch.fromJson(parse("{\"c\":{\"d\":1}}"));
+		JsonObject composed = JsonMergePatch.compose(first, second).toJson().getAsJsonObject();
+
+		composed.getAsJsonObject("a").addProperty("b", 2);
+		composed.getAsJsonObject("c").addProperty("d", 2);
+		Assert.assertEquals(parse("{\"a\":{\"b\":1}}"), first.toJson());
+		Assert.assertEquals(parse("{\"c\":{\"d\":1}}"), second.toJson());
+	}
+
+	@Test
+	public void composedPatchHasTheEffectOfBoth()
+	{
+		Random random = new Random(5);
+		int composed = 0;
+		for (int round=0; round<2000; round++) {
+			JsonElement first = randomMergePatch(random, 3, true);
+			JsonElement second = randomMergePatch(random, 3, true);
+			JsonElement patch = JsonMergePatch.compose(first, second);
+			if (patch == null)
+				continue;
+
+			composed++;
+			for (int i=0; i<5; i++) {
+				JsonElement document = randomMergePatch(random, 3, false);
+				JsonElement expected = JsonMergePatch.apply(
+						JsonMergePatch.apply(JsonUtil.deepCopy(document), first), second);
+				Assert.assertTrue("first: " + first + "\nsecond: " + second + "\ndocument: " + document,
+						JsonUtil.jsonEquals(expected, JsonMergePatch.apply(JsonUtil.deepCopy(document), patch)));
+			}
+		}
+		Assert.assertTrue(composed > 1000);
+	}
+
+}
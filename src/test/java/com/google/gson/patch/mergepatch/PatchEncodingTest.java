@@ -0,0 +1,113 @@
+package com.google.gson.patch.mergepatch;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.patch.JsonPatch;
+import com.google.gson.patch.JsonPatchException;
+import com.google.gson.patch.JsonUtil;
+import com.google.gson.patch.diff.JsonDiff;
+
+import static com.google.gson.patch.JsonTestUtil.parse;
+import static com.google.gson.patch.JsonTestUtil.randomMergePatch;
+
+public final class PatchEncodingTest
+{
+
+	@Test
+	public void mergePatchConvertsToAnEquivalentJsonPatch() throws JsonPatchException
+	{
+		JsonElement source = parse("{\"a\":{\"b\":1,\"c\":2},\"d\":[1],\"e\":3}");
+		JsonMergePatch merge = JsonMergePatch.fromJson(parse("{\"a\":{\"b\":null,\"f\":{\"g\":null}},\"d\":{\"h\":1},\"x\":null}"));
+
+		JsonPatch patch = MergePatchConversion.toJsonPatch(merge, source);
+		Assert.assertEquals(parse("[{\"op\":\"remove\",\"path\":\"/a/b\"},"
+				+ "{\"op\":\"add\",\"path\":\"/a/f\",\"value\":{}},"
+				+ "{\"op\":\"replace\",\"path\":\"/d\",\"value\":{\"h\":1}}]"), patch.toJson());
+		Assert.assertEquals(merge.apply(JsonUtil.deepCopy(source)), patch.apply(JsonUtil.deepCopy(source)));
+	}
+
+	@Test
+	public void jsonPatchSettingNullHasNoMergePatch() throws JsonPatchException, IOException
+	{
+		JsonElement source = parse("{\"a\":[1,2,3],\"b\":1}");
+
+		JsonPatch elements = JsonPatch.fromJson(parse("[{\"op\":\"remove\",\"path\":\"/a/0\"},{\"op\":\"remove\",\"path\":\"/b\"}]"));
+		Assert.assertEquals(parse("{\"a\":[2,3],\"b\":null}"),
+				MergePatchConversion.toMergePatch(elements, source).toJson());
+
+		JsonPatch nulls = JsonPatch.fromJson(parse("[{\"op\":\"replace\",\"path\":\"/b\",\"value\":null}]"));
+		Assert.assertNull(MergePatchConversion.toMergePatch(nulls, source));
+	}
+
+	@Test
+	public void conversionsAreExactOnRandomChanges() throws JsonPatchException
+	{
+		Random random = new Random(3);
+		for (int round=0; round<500; round++) {
+			JsonElement source = randomMergePatch(random, 3, false);
+			JsonElement target = randomMergePatch(random, 3, false);
+			JsonMergePatch merge = JsonMergePatch.fromJson(randomMergePatch(random, 3, true));
+
+			JsonElement merged = merge.apply(JsonUtil.deepCopy(source));
+			Assert.assertTrue(JsonUtil.jsonEquals(merged,
+					MergePatchConversion.toJsonPatch(merge, source).apply(JsonUtil.deepCopy(source))));
+
+			JsonMergePatch converted = MergePatchConversion.toMergePatch(JsonDiff.diff(source, target), source);
+			if (converted != null)
+				Assert.assertTrue(JsonUtil.jsonEquals(target, converted.apply(JsonUtil.deepCopy(source))));
+		}
+	}
+
+	@Test
+	public void cheaperEncodingIsChosenAndRecorded() throws JsonPatchException, IOException
+	{
+		PatchEncodingChooser chooser = new PatchEncodingChooser();
+
+		//many member changes: a merge patch spells each path once
+		JsonObject source = new JsonObject();
+		JsonObject target = new JsonObject();
+		for (int i=0; i<20; i++) {
+			source.addProperty("member" + i, i);
+			target.addProperty("member" + i, i + 1);
+		}
+		EncodedPatch members = chooser.choose(source, target);
+		Assert.assertEquals(EncodedPatch.Encoding.MERGE_PATCH, members.getEncoding());
+
+		//one element of a large array: a merge patch would replace the array
+		JsonObject list = new JsonObject();
+		JsonArray array = new JsonArray();
+		for (int i=0; i<100; i++)
+			array.add(i);
+		list.add("list", array);
+		JsonElement changed = JsonUtil.deepCopy(list);
+		changed.getAsJsonObject().getAsJsonArray("list").set(50, new JsonPrimitive(-1));
+		EncodedPatch element = chooser.choose(list, changed);
+		Assert.assertEquals(EncodedPatch.Encoding.JSON_PATCH, element.getEncoding());
+
+		for (EncodedPatch patch : new EncodedPatch[] { members, element }) {
+			JsonObject json = patch.toJson();
+			EncodedPatch received = EncodedPatch.fromJson(parse(json.toString()));
+			Assert.assertEquals(patch.getEncoding().getMediaType(), json.get("encoding").getAsString());
+			Assert.assertEquals(patch.getEncoding(), received.getEncoding());
+		}
+		Assert.assertEquals(target, EncodedPatch.fromJson(members.toJson()).apply(JsonUtil.deepCopy(source)));
+		Assert.assertEquals(changed, EncodedPatch.fromJson(element.toJson()).apply(JsonUtil.deepCopy(list)));
+	}
+
+	@Test
+	public void sizeIsCountedInUtf8Bytes()
+	{
+		Assert.assertEquals(10, PatchEncodingChooser.estimateSize(parse("{\"a\":\"\u00e9\"}")));
+		Assert.assertEquals(4, PatchEncodingChooser.estimateSize(JsonNull.INSTANCE));
+	}
+
+}
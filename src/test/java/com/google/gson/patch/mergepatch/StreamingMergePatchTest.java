@@ -0,0 +1,82 @@
+package com.google.gson.patch.mergepatch;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.patch.JsonLoader;
+import com.google.gson.patch.JsonUtil;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import static com.google.gson.patch.JsonTestUtil.parse;
+
+public final class StreamingMergePatchTest
+{
+
+	private static String streamed(String input, JsonElement patch) throws IOException {
+		StringWriter out = new StringWriter();
+		JsonMergePatch.apply(new JsonReader(new StringReader(input)), patch, new JsonWriter(out));
+		return out.toString();
+	}
+
+	@Test
+	public void streamingGivesTheSameDocumentAsApply() throws IOException
+	{
+		for (String resource : new String[] { "/jsonpatch/mergepatch/patch-object.json",
+				"/jsonpatch/mergepatch/patch-nonobject.json" }) {
+			for (JsonElement testElem : JsonLoader.fromResource(resource).getAsJsonArray()) {
+				JsonObject testObj = testElem.getAsJsonObject();
+				JsonElement patch = testObj.get("patch");
+				JsonElement victim = testObj.get("victim");
+
+				String expected = JsonMergePatch.apply(JsonUtil.deepCopy(victim), patch).toString();
+				Assert.assertEquals("patch: " + patch, expected, streamed(victim.toString(), patch));
+			}
+		}
+	}
+
+	@Test
+	public void membersAreWrittenInTheOrderApplyLeavesThem() throws IOException
+	{
+		String input = "{\"a\":1,\"b\":{\"x\":[1,{\"y\":2}],\"z\":3},\"c\":\"d\",\"e\":5}";
+		JsonElement patch = parse("{\"c\":{\"f\":null,\"g\":1},\"b\":{\"z\":null,\"w\":{\"v\":null}},\"a\":null,\"h\":{\"i\":null}}");
+
+		Assert.assertEquals(JsonMergePatch.apply(parse(input), patch).toString(), streamed(input, patch));
+		Assert.assertEquals("{\"b\":{\"x\":[1,{\"y\":2}],\"w\":{}},\"e\":5,\"c\":{\"g\":1},\"h\":{}}",
+				streamed(input, patch));
+	}
+
+	@Test
+	public void untouchedValuesAreCopiedAsWritten() throws IOException
+	{
+		String input = "{\"big\":12345678901234567890.000,\"s\":\"\\u00e9\",\"n\":null,\"t\":[true,false,[]]}";
+
+		Assert.assertEquals("{\"big\":12345678901234567890.000,\"s\":\"\u00e9\",\"n\":null,\"t\":[true,false,[]],\"u\":1}",
+				streamed(input, parse("{\"u\":1}")));
+		Assert.assertEquals("[1]", streamed(input, parse("[1]")));
+	}
+
+	@Test
+	public void onlyOneValueIsRead() throws IOException
+	{
+		JsonReader reader = new JsonReader(new StringReader("[{\"a\":1},{\"a\":2}]"));
+		StringWriter out = new StringWriter();
+		JsonWriter writer = new JsonWriter(out);
+		JsonMergePatch patch = JsonMergePatch.fromJson(parse("{\"b\":true}"));
+
+		reader.beginArray();
+		writer.beginArray();
+		while (reader.hasNext())
+			patch.apply(reader, writer);
+		reader.endArray();
+		writer.endArray();
+		Assert.assertEquals("[{\"a\":1,\"b\":true},{\"a\":2,\"b\":true}]", out.toString());
+	}
+
+}
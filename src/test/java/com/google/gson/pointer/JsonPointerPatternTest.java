@@ -0,0 +1,42 @@
+package com.google.gson.pointer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class JsonPointerPatternTest
+{
+
+	@Test
+	public void wildcardMatchesAnyToken() throws JsonPointerException
+	{
+		JsonPointerPattern pattern = new JsonPointerPattern("/orders/*/lines/*");
+
+		Assert.assertTrue(pattern.matches(new JsonPointer("/orders/0/lines/3")));
+		Assert.assertTrue(pattern.matches(new JsonPointer("/orders/x/lines/y")));
+		Assert.assertFalse(pattern.matches(new JsonPointer("/orders/0/lines")));
+		Assert.assertFalse(pattern.matches(new JsonPointer("/orders/0/items/3")));
+	}
+
+	@Test
+	public void childrenOfMatchingContainer() throws JsonPointerException
+	{
+		JsonPointerPattern pattern = new JsonPointerPattern("/orders/*/lines/*");
+
+		Assert.assertTrue(pattern.matchesChildrenOf(new JsonPointer("/orders/2/lines")));
+		Assert.assertFalse(pattern.matchesChildrenOf(new JsonPointer("/orders/2")));
+		Assert.assertFalse(new JsonPointerPattern("/orders/0").matchesChildrenOf(new JsonPointer("/orders")));
+		Assert.assertTrue(new JsonPointerPattern("/*").matchesChildrenOf(JsonPointer.EMPTY));
+	}
+
+	@Test
+	public void descendantsOfMatchingPrefix() throws JsonPointerException
+	{
+		JsonPointerPattern pattern = new JsonPointerPattern("/items/*/cache");
+
+		Assert.assertTrue(pattern.matchesDescendantsOf(JsonPointer.EMPTY));
+		Assert.assertTrue(pattern.matchesDescendantsOf(new JsonPointer("/items/4")));
+		Assert.assertFalse(pattern.matchesDescendantsOf(new JsonPointer("/items/4/cache")));
+		Assert.assertFalse(pattern.matchesDescendantsOf(new JsonPointer("/other")));
+	}
+
+}
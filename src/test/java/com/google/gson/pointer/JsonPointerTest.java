@@ -138,4 +138,23 @@ public class JsonPointerTest {
         assertEquals(expected,actual);
     }
 
+    @Test
+    public void appendedPointersActLikeParsedOnes() throws Exception {
+    	JsonElement root = new JsonParser().parse(JSON);
+    	JsonPointer parsed = new JsonPointer("/library/section/0/title/0/book/author/1");
+    	JsonPointer section = new JsonPointer("/library").append("section");
+    	JsonPointer appended = section.append(0).append("title").append(0).append("book").append("author").append(1);
+    	
+    	assertEquals(parsed, appended);
+    	assertEquals(appended, parsed);
+    	assertEquals(parsed.hashCode(), appended.hashCode());
+    	assertEquals(parsed.toString(), appended.toString());
+    	assertEquals(8, appended.size());
+    	assertEquals("author", appended.parent().getLastToken().toString());
+    	assertEquals("title", appended.getToken(3).toString());
+    	assertEquals("Jerry Pournelle", appended.resolve(root).getAsString());
+    	assertEquals(section, parsed.parent().parent().parent().parent().parent().parent());
+    	assertEquals(new JsonPointer("/library/section/1"), section.append(1));
+    }
+
 }